@@ -1,6 +1,9 @@
 import algo.AnalyticManager;
+import algo.RiskWatcher;
+import messaging.BlockingWaitStrategy;
+import messaging.EventBroker;
 import messaging.EventManager;
-import org.quartz.SchedulerException;
+import source.data.LocalOrderBook;
 import source.data.MarketDataManager;
 import source.scheduling.SchedulerManager;
 
@@ -8,12 +11,16 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class Main {
-    public static void main(String[] args) throws SchedulerException {
-        EventManager eventManager = new EventManager();
+    public static void main(String[] args) {
+        // The analytics only ever use the latest book, so books are conflated for the one symbol (id 0)
+        EventManager eventManager = new EventManager(EventBroker.DEFAULT_BUFFER_SIZE, new BlockingWaitStrategy(), 1);
         SchedulerManager schedulerManager = new SchedulerManager(eventManager);
-        MarketDataManager marketDataManager = new MarketDataManager("btcusdt", eventManager);
+        // BTCUSDT trades in 0.01 ticks, i.e. 1000000 at price scale 8
+        MarketDataManager marketDataManager = new MarketDataManager("btcusdt",
+                LocalOrderBook.ladder(8, 8, 1000000L, 4096), eventManager);
         AnalyticManager analyticManager = new AnalyticManager(eventManager, schedulerManager,
                 5, 10);
+        eventManager.addListener(new RiskWatcher());
 
         ExecutorService executorService = Executors.newFixedThreadPool(2);
         executorService.execute(marketDataManager);
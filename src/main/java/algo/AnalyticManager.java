@@ -1,68 +1,260 @@
 package algo;
 
+import messaging.EventCursor;
 import messaging.EventListener;
 import messaging.EventManager;
-import org.quartz.SchedulerException;
+import messaging.EventPoller;
+import messaging.LatencyHistogram;
+import source.data.FixedPoint;
 import source.data.LocalOrderBook;
+import source.data.TradeEvent;
 import source.scheduling.ScheduleEvent;
 import source.scheduling.SchedulerManager;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.function.ToDoubleFunction;
 
+/**
+ * Computes indicators over the order book, declared as an {@link IndicatorGraph}.
+ *
+ * The graph's inputs are prices derived from the book, set on every book that has both sides, values
+ * taken from every aggregated trade, and prices sampled on timers: each sampled input is fed the
+ * weighted price whenever the timer of the same tag fires. The book inputs are the mid, weighted price,
+ * microprice, and the depth-weighted mid and imbalance over the best {@link #DEPTH_LEVELS} levels; the
+ * trade inputs are the trade's price and quantity. Only the inputs some node depends on are computed.
+ * Out of the box, sma1 and sma2 average prices sampled every period1 and period2 half seconds, and vwap
+ * averages trade prices weighted by their quantities; more indicators can be declared on
+ * {@link #getIndicators()} until {@link #run()} compiles the graph.
+ */
 public class AnalyticManager implements EventListener, Runnable {
+    public static final String MID = "mid";
+    public static final String WEIGHTED_PRICE = "weightedPrice";
+    public static final String MICROPRICE = "microprice";
+    public static final String DEPTH_WEIGHTED_MID = "depthWeightedMid";
+    public static final String IMBALANCE = "imbalance";
+    public static final String TRADE_PRICE = "tradePrice";
+    public static final String TRADE_QTY = "tradeQty";
+    /**
+     * Number of levels per side the depth-weighted mid and imbalance are computed over.
+     */
+    public static final int DEPTH_LEVELS = 5;
+
     private EventManager eventManager;
+    private EventCursor<LocalOrderBook> orderBooks;
+    private EventCursor<TradeEvent> trades;
+    private EventCursor<ScheduleEvent> timers;
+    /**
+     * Waits on the order book, trade and timer cursors at once, handing over whichever events are ready.
+     */
+    private final EventPoller poller = new EventPoller();
+    private final LatencyHistogram orderBookLatency;
+    private final LatencyHistogram tradeLatency;
+    private final LatencyHistogram timerLatency;
     private SchedulerManager schedulerManager;
     private int period1;
     private int period2;
-    private SimpleMovingAverage sma1;
-    private SimpleMovingAverage sma2;
+    private final IndicatorGraph indicators = new IndicatorGraph();
+    /**
+     * Inputs fed on every book, with the function computing each from the book.
+     */
+    private final List<Integer> bookInputs = new ArrayList<>();
+    private final List<ToDoubleFunction<LocalOrderBook>> bookPrices = new ArrayList<>();
+    /**
+     * Inputs fed on every trade, with the function computing each from the trade.
+     */
+    private final List<Integer> tradeInputs = new ArrayList<>();
+    private final List<ToDoubleFunction<TradeEvent>> tradeValues = new ArrayList<>();
+    /**
+     * Inputs sampled on timers, by timer tag.
+     */
+    private final Map<String, Integer> sampledInputs = new HashMap<>();
+    /**
+     * Sampling interval of each timer, by tag.
+     */
+    private final Map<String, Integer> sampleIntervals = new LinkedHashMap<>();
 //    private NavigableMap<Long, LocalOrderBook> orderBookCache = new TreeMap<>();
     private LocalOrderBook orderBookCache;
     private long orderBookId = 0L;
 
     public AnalyticManager(EventManager eventManager, SchedulerManager schedulerManager, int period1, int period2) {
         this.eventManager = eventManager;
+        // Opened up front so that nothing published before run() starts is missed
+        this.orderBooks = eventManager.getOrderBookBroker().newCursor();
+        this.trades = eventManager.getAggTradeBroker().newCursor();
+        this.timers = eventManager.getScheduleEventBroker().newCursor();
+        this.orderBookLatency = poller.add(orderBooks, (orderBook, sequence, endOfBatch) -> handleEvent(orderBook));
+        this.tradeLatency = poller.add(trades, (trade, sequence, endOfBatch) -> handleEvent(trade));
+        this.timerLatency = poller.add(timers, (timer, sequence, endOfBatch) -> handleEvent(timer));
         this.schedulerManager = schedulerManager;
         this.period1 = period1;
         this.period2 = period2;
-        this.sma1 = new SimpleMovingAverage(period1);
-        this.sma2 = new SimpleMovingAverage(period2);
+        addBookPrice(MID, Math::mid);
+        addBookPrice(WEIGHTED_PRICE, Math::weightedAverage);
+        addBookPrice(MICROPRICE, Math::microprice);
+        addBookPrice(DEPTH_WEIGHTED_MID, orderBook -> Math.depthWeightedMid(orderBook, DEPTH_LEVELS));
+        addBookPrice(IMBALANCE, orderBook -> Math.imbalance(orderBook, DEPTH_LEVELS));
+        addTradePrice(TRADE_PRICE, trade -> FixedPoint.toDouble(trade.getPrice(), trade.getPriceScale()));
+        addTradePrice(TRADE_QTY, trade -> FixedPoint.toDouble(trade.getQty(), trade.getQtyScale()));
+        addSampledPrice("sample1", period1 * 500);
+        addSampledPrice("sample2", period2 * 500);
+        indicators.addIndicator("sma1", new SimpleMovingAverage(period1), "sample1");
+        indicators.addIndicator("sma2", new SimpleMovingAverage(period2), "sample2");
+        indicators.addIndicator("vwap", new VolumeWeightedAveragePrice(), TRADE_PRICE, TRADE_QTY);
+    }
+
+    /**
+     * Declares an input of the indicator graph that is set on every book with both sides, to the
+     * value the function computes from it. The function runs on the analytics thread for every book,
+     * so it should not allocate. Must be called before {@link #run()}.
+     *
+     * @return the input's node id
+     */
+    public int addBookPrice(String name, ToDoubleFunction<LocalOrderBook> price) {
+        int input = indicators.addInput(name);
+        bookInputs.add(input);
+        bookPrices.add(price);
+        return input;
+    }
+
+    /**
+     * Declares an input of the indicator graph that is set on every aggregated trade, to the value the
+     * function computes from it, such as its price or quantity. The function runs on the analytics
+     * thread for every trade, so it should not allocate. Must be called before {@link #run()}.
+     *
+     * @return the input's node id
+     */
+    public int addTradePrice(String name, ToDoubleFunction<TradeEvent> value) {
+        int input = indicators.addInput(name);
+        tradeInputs.add(input);
+        tradeValues.add(value);
+        return input;
+    }
+
+    /**
+     * Declares an input of the indicator graph, named after a timer tag, that is fed the weighted
+     * price each time the timer fires. Must be called before {@link #run()}.
+     *
+     * @return the input's node id
+     */
+    public int addSampledPrice(String tag, int intervalMillis) {
+        int input = indicators.addInput(tag);
+        sampledInputs.put(tag, input);
+        sampleIntervals.put(tag, intervalMillis);
+        return input;
+    }
+
+    /**
+     * @return the indicator graph, to declare indicators on before {@link #run()}
+     */
+    public IndicatorGraph getIndicators() {
+        return indicators;
     }
 
     @Override
     public void handleEvent(LocalOrderBook orderBook) {
 //        orderBookCache.put(orderBookId, orderBook);
 //        orderBookId++;
+        if (orderBookCache != null) {
+            orderBookCache.release();
+        }
         orderBookCache = orderBook;
+        if (!indicators.isCompiled()) {
+            return;
+        }
+        if (orderBook.getAsks().isEmpty() || orderBook.getBids().isEmpty()) {
+            return;
+        }
+        boolean fed = false;
+        for (int i = 0; i < bookInputs.size(); i++) {
+            int input = bookInputs.get(i);
+            if (indicators.hasDependents(input)) {
+                indicators.set(input, bookPrices.get(i).applyAsDouble(orderBook));
+                fed = true;
+            }
+        }
+        if (fed) {
+            indicators.update();
+        }
     }
 
     @Override
-    public void handleEvent(ScheduleEvent timer) {
-        if (timer.getTag().equals("sma1")) {
-            sma1.addValue(Math.weightedAverage(orderBookCache));
-            System.out.println("sma1: " + sma1.getMovingAverage());
-        } else if (timer.getTag().equals("sma2")) {
-            sma2.addValue(Math.weightedAverage(orderBookCache));
-            System.out.println("sma2: " + sma2.getMovingAverage());
+    public void handleEvent(TradeEvent trade) {
+        if (!indicators.isCompiled()) {
+            return;
+        }
+        boolean fed = false;
+        for (int i = 0; i < tradeInputs.size(); i++) {
+            int input = tradeInputs.get(i);
+            if (indicators.hasDependents(input)) {
+                indicators.set(input, tradeValues.get(i).applyAsDouble(trade));
+                fed = true;
+            }
+        }
+        if (fed) {
+            indicators.update();
         }
     }
 
     @Override
-    public void run() {
-        try {
-            this.schedulerManager.periodicCallBack(period1 * 500, "sma1");
-            this.schedulerManager.periodicCallBack(period2 * 500, "sma2");
-        } catch (SchedulerException ex) {
-            ex.printStackTrace();
+    public void handleEvent(ScheduleEvent timer) {
+        Integer input = sampledInputs.get(timer.getTag());
+        if (orderBookCache == null || input == null || !indicators.isCompiled()) {
+            // Nothing to sample before the first book arrives
+            return;
         }
-        while (true) {
-            try {
-                handleEvent(eventManager.getOrderBookBroker().get());
-                handleEvent(eventManager.getScheduleEventBroker().get());
-            } catch (InterruptedException ex) {
-                ex.printStackTrace();
+        indicators.set(input, Math.weightedAverage(orderBookCache));
+        indicators.update();
+        for (int node = 0; node < indicators.getNodeCount(); node++) {
+            if (!indicators.isInput(node) && indicators.isUpdated(node)) {
+                System.out.println(indicators.getName(node) + ": " + indicators.getValue(node));
             }
         }
+        indicators.clearUpdated();
+    }
+
+    /**
+     * Compiles the indicator graph, starts the sampling timers and handles events until stopped.
+     */
+    @Override
+    public void run() {
+        indicators.compile();
+        for (Map.Entry<String, Integer> sample : sampleIntervals.entrySet()) {
+            schedulerManager.periodicCallBack(sample.getValue(), sample.getKey());
+        }
+        poller.run();
+    }
+
+    /**
+     * Stops {@link #run()} once the events at hand are handled.
+     */
+    public void stop() {
+        poller.halt();
+    }
+
+    /**
+     * @return the latencies from publishing to handling order books
+     */
+    public LatencyHistogram getOrderBookLatency() {
+        return orderBookLatency;
+    }
+
+    /**
+     * @return the latencies from publishing to handling trades
+     */
+    public LatencyHistogram getTradeLatency() {
+        return tradeLatency;
+    }
+
+    /**
+     * @return the latencies from publishing to handling timer events
+     */
+    public LatencyHistogram getTimerLatency() {
+        return timerLatency;
     }
 }
@@ -0,0 +1,77 @@
+package algo;
+
+/**
+ * Wilder's average true range. The true range of a bar is its high minus its low, stretched to the
+ * previous close if the bar gapped away from it. The average starts as the simple average of the
+ * first {@code period} true ranges and is smoothed with Wilder's factor 1 / period after that.
+ *
+ * Fed single values, e.g. prices sampled on a timer, each value is a bar whose high, low and close
+ * are the value, so the true range is the absolute change from the previous value. The first value
+ * has no range and only sets the close to measure from, so the average is ready after period + 1
+ * values, like the {@link RelativeStrengthIndex}.
+ */
+public class AverageTrueRange implements Indicator {
+    private final int period;
+    private double previousClose;
+    private boolean hasPreviousClose;
+    private double average;
+    /**
+     * Number of true ranges averaged.
+     */
+    private long count;
+
+    public AverageTrueRange(int period) {
+        if (period < 1) {
+            throw new IllegalArgumentException("Period must be positive, got " + period);
+        }
+        this.period = period;
+    }
+
+    @Override
+    public void addValue(double value) {
+        if (!hasPreviousClose) {
+            previousClose = value;
+            hasPreviousClose = true;
+            return;
+        }
+        addBar(value, value, value);
+    }
+
+    public void addBar(double high, double low, double close) {
+        double trueRange = high - low;
+        if (hasPreviousClose) {
+            trueRange = java.lang.Math.max(trueRange, java.lang.Math.max(
+                    java.lang.Math.abs(high - previousClose), java.lang.Math.abs(low - previousClose)));
+        }
+        if (count < period) {
+            average += trueRange / period;
+        } else {
+            average += (trueRange - average) / period;
+        }
+        previousClose = close;
+        hasPreviousClose = true;
+        count++;
+    }
+
+    @Override
+    public boolean isReady() {
+        return count >= period;
+    }
+
+    @Override
+    public double getValue() {
+        return isReady() ? average : Double.NaN;
+    }
+
+    @Override
+    public void reset() {
+        previousClose = 0.0;
+        hasPreviousClose = false;
+        average = 0.0;
+        count = 0;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+}
@@ -0,0 +1,62 @@
+package algo;
+
+/**
+ * Bollinger bands: the moving average of the last {@code period} values, and bands k population
+ * standard deviations above and below it.
+ */
+public class BollingerBands implements Indicator {
+    private final RollingVariance variance;
+    private final double k;
+
+    /**
+     * @param k width of the bands, in standard deviations; 2 is customary
+     */
+    public BollingerBands(int period, double k) {
+        this.variance = new RollingVariance(period);
+        this.k = k;
+    }
+
+    @Override
+    public void addValue(double value) {
+        variance.addValue(value);
+    }
+
+    @Override
+    public boolean isReady() {
+        return variance.isReady();
+    }
+
+    /**
+     * @return the middle band
+     */
+    @Override
+    public double getValue() {
+        return variance.getMean();
+    }
+
+    public double getUpper() {
+        return variance.getMean() + k * variance.getStandardDeviation();
+    }
+
+    public double getLower() {
+        return variance.getMean() - k * variance.getStandardDeviation();
+    }
+
+    /**
+     * @return where a value sits relative to the bands: 0 at the lower band, 1 at the upper one, 0.5
+     * if the bands have no width, or NaN until they are ready
+     */
+    public double getPercentB(double value) {
+        if (!isReady()) {
+            return Double.NaN;
+        }
+        double lower = getLower();
+        double width = getUpper() - lower;
+        return width > 0.0 ? (value - lower) / width : 0.5;
+    }
+
+    @Override
+    public void reset() {
+        variance.reset();
+    }
+}
@@ -0,0 +1,33 @@
+package algo;
+
+/**
+ * Running sum with Kahan-Babuska (Neumaier) compensation: the low-order bits each addition rounds
+ * away are accumulated separately and added back on read, so that sums updated millions of times,
+ * with values added and later subtracted again, do not drift.
+ */
+final class CompensatedSum {
+    private double sum;
+    /**
+     * Low-order bits lost from {@link #sum} so far.
+     */
+    private double compensation;
+
+    void add(double value) {
+        double total = sum + value;
+        if (java.lang.Math.abs(sum) >= java.lang.Math.abs(value)) {
+            compensation += (sum - total) + value;
+        } else {
+            compensation += (value - total) + sum;
+        }
+        sum = total;
+    }
+
+    double get() {
+        return sum + compensation;
+    }
+
+    void reset() {
+        sum = 0.0;
+        compensation = 0.0;
+    }
+}
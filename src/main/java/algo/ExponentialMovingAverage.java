@@ -0,0 +1,51 @@
+package algo;
+
+/**
+ * Exponential moving average with smoothing factor 2 / (period + 1). The average is seeded with the
+ * first value, and considered ready once period values were added, by when the seed's weight has
+ * decayed to (1 - alpha)^(period - 1).
+ */
+public class ExponentialMovingAverage implements Indicator {
+    private final int period;
+    private final double alpha;
+    private double average;
+    private long count;
+
+    public ExponentialMovingAverage(int period) {
+        if (period < 1) {
+            throw new IllegalArgumentException("Period must be positive, got " + period);
+        }
+        this.period = period;
+        this.alpha = 2.0 / (period + 1);
+    }
+
+    @Override
+    public void addValue(double value) {
+        average = count == 0 ? value : average + alpha * (value - average);
+        count++;
+    }
+
+    @Override
+    public boolean isReady() {
+        return count >= period;
+    }
+
+    @Override
+    public double getValue() {
+        return isReady() ? average : Double.NaN;
+    }
+
+    @Override
+    public void reset() {
+        average = 0.0;
+        count = 0;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    public double getAlpha() {
+        return alpha;
+    }
+}
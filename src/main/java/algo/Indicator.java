@@ -0,0 +1,36 @@
+package algo;
+
+/**
+ * A streaming indicator over a series of values, such as book-derived prices sampled on a timer or
+ * trade prints. Indicators are updated and read in O(1) and allocate nothing after construction, so
+ * that dozens of them can be updated on every tick. They are not thread safe.
+ */
+public interface Indicator {
+    /**
+     * Adds the next value of the series.
+     */
+    void addValue(double value);
+
+    /**
+     * Adds the next value of the series with its weight, such as a trade price with its quantity.
+     * Indicators that do not weigh their values ignore the weight.
+     */
+    default void addValue(double value, double weight) {
+        addValue(value);
+    }
+
+    /**
+     * @return true once enough values were added for {@link #getValue()} to be meaningful
+     */
+    boolean isReady();
+
+    /**
+     * @return the indicator's current value, or NaN until it is ready
+     */
+    double getValue();
+
+    /**
+     * Forgets every value added, as if newly constructed.
+     */
+    void reset();
+}
@@ -0,0 +1,339 @@
+package algo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Dependency graph of indicators, recomputed incrementally.
+ *
+ * Nodes are declared by name, with their inputs named too, in any order: inputs, whose values the
+ * caller sets, such as a book's mid or weighted price; {@link Indicator}s fed by another node, and
+ * optionally weighted by a third, such as trade prices by their quantities; and functions of two nodes,
+ * such as the spread between two averages. {@link #compile()} resolves the names and orders the nodes
+ * topologically, once. After that, setting an input marks the nodes that depend on it, and
+ * {@link #update()} recomputes just the marked nodes, in topological order, marking their own
+ * dependents as it goes. Marks are bits in topological order, so an update costs one word scan per
+ * 64 nodes plus the nodes actually recomputed, and allocates nothing.
+ *
+ * A node only passes a value on once it has one: an indicator once it is ready, a function once both
+ * its operands have values. The graph is not thread safe.
+ */
+public class IndicatorGraph {
+    private enum Kind {
+        INPUT,
+        INDICATOR,
+        FUNCTION
+    }
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Kind> kinds = new ArrayList<>();
+    private final List<Indicator> indicators = new ArrayList<>();
+    private final List<DoubleBinaryOperator> functions = new ArrayList<>();
+    private final List<String[]> inputNames = new ArrayList<>();
+    private boolean compiled;
+
+    // Compiled state, indexed by topological position
+    /**
+     * Topological position of each node, by id.
+     */
+    private int[] positions;
+    private Kind[] kindAt;
+    private Indicator[] indicatorAt;
+    private DoubleBinaryOperator[] functionAt;
+    /**
+     * Positions of each node's inputs.
+     */
+    private int[][] inputsAt;
+    /**
+     * Positions of the nodes that take each node as an input.
+     */
+    private int[][] dependentsAt;
+    private double[] values;
+    private boolean[] hasValue;
+    private long[] dirty;
+    private long[] updated;
+
+    /**
+     * Declares an input, whose value is set with {@link #set(int, double)}.
+     *
+     * @return the node's id
+     */
+    public int addInput(String name) {
+        return addNode(name, Kind.INPUT, null, null);
+    }
+
+    /**
+     * Declares an indicator fed with every new value of another node.
+     *
+     * @return the node's id
+     */
+    public int addIndicator(String name, Indicator indicator, String input) {
+        return addNode(name, Kind.INDICATOR, indicator, null, input);
+    }
+
+    /**
+     * Declares an indicator fed with every new value of a node, weighted by the value of another; it
+     * is fed once both have values, and once per update however many of the two changed.
+     *
+     * @return the node's id
+     */
+    public int addIndicator(String name, Indicator indicator, String input, String weight) {
+        return addNode(name, Kind.INDICATOR, indicator, null, input, weight);
+    }
+
+    /**
+     * Declares a function of two nodes, recomputed whenever either changes.
+     *
+     * @return the node's id
+     */
+    public int addFunction(String name, DoubleBinaryOperator function, String left, String right) {
+        return addNode(name, Kind.FUNCTION, null, function, left, right);
+    }
+
+    private int addNode(String name, Kind kind, Indicator indicator, DoubleBinaryOperator function,
+                        String... inputs) {
+        if (compiled) {
+            throw new IllegalStateException("Graph is already compiled");
+        }
+        if (ids.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate node " + name);
+        }
+        int id = names.size();
+        ids.put(name, id);
+        names.add(name);
+        kinds.add(kind);
+        indicators.add(indicator);
+        functions.add(function);
+        inputNames.add(inputs);
+        return id;
+    }
+
+    /**
+     * Resolves the nodes' inputs and orders the nodes so that every node comes after its inputs.
+     * Nodes cannot be added afterwards.
+     *
+     * @throws IllegalStateException if an input is undeclared or the inputs form a cycle
+     */
+    public void compile() {
+        if (compiled) {
+            return;
+        }
+        int nodeCount = names.size();
+        int[][] inputIds = new int[nodeCount][];
+        int[] pendingInputs = new int[nodeCount];
+        List<List<Integer>> dependentIds = new ArrayList<>();
+        for (int id = 0; id < nodeCount; id++) {
+            dependentIds.add(new ArrayList<>());
+        }
+        for (int id = 0; id < nodeCount; id++) {
+            String[] inputs = inputNames.get(id);
+            inputIds[id] = new int[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                Integer input = ids.get(inputs[i]);
+                if (input == null) {
+                    throw new IllegalStateException(names.get(id) + " depends on undeclared node " + inputs[i]);
+                }
+                inputIds[id][i] = input;
+                dependentIds.get(input).add(id);
+            }
+            pendingInputs[id] = inputs.length;
+        }
+
+        // Kahn's algorithm, taking ready nodes in declaration order
+        int[] order = new int[nodeCount];
+        int ordered = 0;
+        for (int id = 0; id < nodeCount; id++) {
+            if (pendingInputs[id] == 0) {
+                order[ordered++] = id;
+            }
+        }
+        for (int next = 0; next < ordered; next++) {
+            for (int dependent : dependentIds.get(order[next])) {
+                // A node taking the same input twice counts it twice
+                if (--pendingInputs[dependent] == 0) {
+                    order[ordered++] = dependent;
+                }
+            }
+        }
+        if (ordered < nodeCount) {
+            List<String> cyclic = new ArrayList<>();
+            for (int id = 0; id < nodeCount; id++) {
+                if (pendingInputs[id] > 0) {
+                    cyclic.add(names.get(id));
+                }
+            }
+            throw new IllegalStateException("Indicators depend on each other in a cycle: " + cyclic);
+        }
+
+        positions = new int[nodeCount];
+        for (int position = 0; position < nodeCount; position++) {
+            positions[order[position]] = position;
+        }
+        kindAt = new Kind[nodeCount];
+        indicatorAt = new Indicator[nodeCount];
+        functionAt = new DoubleBinaryOperator[nodeCount];
+        inputsAt = new int[nodeCount][];
+        dependentsAt = new int[nodeCount][];
+        for (int id = 0; id < nodeCount; id++) {
+            int position = positions[id];
+            kindAt[position] = kinds.get(id);
+            indicatorAt[position] = indicators.get(id);
+            functionAt[position] = functions.get(id);
+            inputsAt[position] = new int[inputIds[id].length];
+            for (int i = 0; i < inputIds[id].length; i++) {
+                inputsAt[position][i] = positions[inputIds[id][i]];
+            }
+            List<Integer> dependents = dependentIds.get(id);
+            dependentsAt[position] = new int[dependents.size()];
+            for (int i = 0; i < dependents.size(); i++) {
+                dependentsAt[position][i] = positions[dependents.get(i)];
+            }
+        }
+        values = new double[nodeCount];
+        hasValue = new boolean[nodeCount];
+        dirty = new long[(nodeCount + 63) >>> 6];
+        updated = new long[dirty.length];
+        compiled = true;
+    }
+
+    /**
+     * Sets an input's value, to be propagated by the next {@link #update()}.
+     */
+    public void set(int input, double value) {
+        int position = positions[input];
+        if (kindAt[position] != Kind.INPUT) {
+            throw new IllegalArgumentException(names.get(input) + " is not an input");
+        }
+        values[position] = value;
+        hasValue[position] = true;
+        mark(updated, position);
+        markDependents(position);
+    }
+
+    /**
+     * Recomputes the nodes whose inputs changed since the last update.
+     *
+     * @return the number of nodes recomputed
+     */
+    public int update() {
+        int recomputed = 0;
+        for (int word = 0; word < dirty.length; word++) {
+            // Dependents always come later, so bits set during the scan are still ahead of it
+            while (dirty[word] != 0L) {
+                int position = (word << 6) + Long.numberOfTrailingZeros(dirty[word]);
+                dirty[word] &= dirty[word] - 1;
+                recomputed++;
+                if (recompute(position)) {
+                    mark(updated, position);
+                    markDependents(position);
+                }
+            }
+        }
+        return recomputed;
+    }
+
+    /**
+     * @return true if the node has a new value
+     */
+    private boolean recompute(int position) {
+        int[] inputs = inputsAt[position];
+        if (kindAt[position] == Kind.INDICATOR) {
+            Indicator indicator = indicatorAt[position];
+            if (inputs.length == 1) {
+                indicator.addValue(values[inputs[0]]);
+            } else if (hasValue[inputs[0]] && hasValue[inputs[1]]) {
+                indicator.addValue(values[inputs[0]], values[inputs[1]]);
+            } else {
+                return false;
+            }
+            hasValue[position] = indicator.isReady();
+            values[position] = indicator.getValue();
+        } else {
+            if (!hasValue[inputs[0]] || !hasValue[inputs[1]]) {
+                return false;
+            }
+            values[position] = functionAt[position].applyAsDouble(values[inputs[0]], values[inputs[1]]);
+            hasValue[position] = true;
+        }
+        return hasValue[position];
+    }
+
+    private void markDependents(int position) {
+        for (int dependent : dependentsAt[position]) {
+            mark(dirty, dependent);
+        }
+    }
+
+    private static void mark(long[] bits, int position) {
+        bits[position >>> 6] |= 1L << position;
+    }
+
+    /**
+     * @return true if the node got a new value since {@link #clearUpdated()} was last called
+     */
+    public boolean isUpdated(int node) {
+        int position = positions[node];
+        return (updated[position >>> 6] & (1L << position)) != 0L;
+    }
+
+    /**
+     * Forgets which nodes were updated, see {@link #isUpdated(int)}.
+     */
+    public void clearUpdated() {
+        Arrays.fill(updated, 0L);
+    }
+
+    /**
+     * @return the node's value; meaningful only if {@link #hasValue(int)}
+     */
+    public double getValue(int node) {
+        return values[positions[node]];
+    }
+
+    public boolean hasValue(int node) {
+        return hasValue[positions[node]];
+    }
+
+    /**
+     * @return the node's id, or -1 if there is no such node
+     */
+    public int getId(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String getName(int node) {
+        return names.get(node);
+    }
+
+    /**
+     * @return true if some node takes this node as an input
+     */
+    public boolean hasDependents(int node) {
+        return dependentsAt[positions[node]].length > 0;
+    }
+
+    public boolean isInput(int node) {
+        return kinds.get(node) == Kind.INPUT;
+    }
+
+    /**
+     * @return the indicator of an indicator node, or null for other nodes
+     */
+    public Indicator getIndicator(int node) {
+        return indicators.get(node);
+    }
+
+    public int getNodeCount() {
+        return names.size();
+    }
+
+    public boolean isCompiled() {
+        return compiled;
+    }
+}
@@ -1,45 +1,212 @@
 package algo;
 
+import source.data.FixedPoint;
 import source.data.LocalOrderBook;
+import source.data.PriceLevels;
 
-import java.math.BigDecimal;
-import java.util.Map;
 
 public class Math {
+    /**
+     * Quantity-weighted average of the best ask and best bid prices.
+     *
+     * Reads the top of book through the book's seqlock, retrying if the gateway updated it mid-read,
+     * so it is safe on a live book shared with the gateway thread and allocates nothing.
+     */
     public static double weightedAverage(LocalOrderBook orderBook) {
-        //pass in the arrays instead of the local orderbook
-        double[] weightedAsk = weightedAsk(orderBook);
-        double[] weightedBid = weightedBid(orderBook);
-        double totalQuantity = weightedAsk[1] + weightedBid[1];
+        long askPrice;
+        long askQty;
+        long bidPrice;
+        long bidQty;
+        long stamp;
+        do {
+            stamp = orderBook.tryOptimisticRead();
+            askPrice = orderBook.getBestAskPrice();
+            askQty = orderBook.getBestAskQty();
+            bidPrice = orderBook.getBestBidPrice();
+            bidQty = orderBook.getBestBidQty();
+        } while (!orderBook.validate(stamp));
+
+        double askQuantity = FixedPoint.toDouble(askQty, orderBook.getQtyScale());
+        double bidQuantity = FixedPoint.toDouble(bidQty, orderBook.getQtyScale());
+        double totalQuantity = askQuantity + bidQuantity;
         // need to be more defensive in case length is < 2
-        double totalPrice = weightedAsk[0] * weightedAsk[1]
-                + weightedBid[0] * weightedBid[1];
+        double totalPrice = FixedPoint.toDouble(askPrice, orderBook.getPriceScale()) * askQuantity
+                + FixedPoint.toDouble(bidPrice, orderBook.getPriceScale()) * bidQuantity;
         return totalPrice / totalQuantity;
     }
 
-    public static double[] weightedAsk(LocalOrderBook orderBook) {
-        Map.Entry<BigDecimal, BigDecimal> bestAsk = orderBook.getBestAsk();
-//        Map.Entry<BigDecimal, BigDecimal> secondAsk = orderBook.getSecondBestAsk();
-//        Map.Entry<BigDecimal, BigDecimal> thirdAsk = orderBook.getThirdBestAsk();
-//        double totalQuantity = bestAsk.getValue().doubleValue()
-//                + secondAsk.getValue().doubleValue() + thirdAsk.getValue().doubleValue();
-//        double totalAskPrice = bestAsk.getKey().doubleValue() * bestAsk.getValue().doubleValue()
-//                + secondAsk.getKey().doubleValue() * secondAsk.getValue().doubleValue()
-//                + thirdAsk.getKey().doubleValue() * thirdAsk.getValue().doubleValue();
-//        return new double[]{totalAskPrice / totalQuantity, totalQuantity};
-        return new double[]{bestAsk.getKey().doubleValue(), bestAsk.getValue().doubleValue()};
-    }
-
-    public static double[] weightedBid(LocalOrderBook orderBook) {
-        Map.Entry<BigDecimal, BigDecimal> bestBid = orderBook.getBestBid();
-//        Map.Entry<BigDecimal, BigDecimal> secondBid = orderBook.getSecondBestBid();
-//        Map.Entry<BigDecimal, BigDecimal> thirdBid = orderBook.getThirdBestBid();
-//        double totalQuantity = bestBid.getValue().doubleValue()
-//                + secondBid.getValue().doubleValue() + thirdBid.getValue().doubleValue();
-//        double totalBidPrice = bestBid.getKey().doubleValue() * bestBid.getValue().doubleValue()
-//                + secondBid.getKey().doubleValue() * secondBid.getValue().doubleValue()
-//                + thirdBid.getKey().doubleValue() * thirdBid.getValue().doubleValue();
-//        return new double[]{totalBidPrice / totalQuantity, totalQuantity};
-        return new double[]{bestBid.getKey().doubleValue(), bestBid.getValue().doubleValue()};
+    /**
+     * Mid price of the best ask and best bid, read consistently through the book's seqlock.
+     */
+    public static double mid(LocalOrderBook orderBook) {
+        long askPrice;
+        long bidPrice;
+        long stamp;
+        do {
+            stamp = orderBook.tryOptimisticRead();
+            askPrice = orderBook.getBestAskPrice();
+            bidPrice = orderBook.getBestBidPrice();
+        } while (!orderBook.validate(stamp));
+        return (FixedPoint.toDouble(askPrice, orderBook.getPriceScale())
+                + FixedPoint.toDouble(bidPrice, orderBook.getPriceScale())) / 2.0;
+    }
+
+    /**
+     * Microprice: the best ask and best bid weighted by the quantity on the opposite side, so that the
+     * price leans towards the side more likely to be taken out next.
+     */
+    public static double microprice(LocalOrderBook orderBook) {
+        long askPrice;
+        long askQty;
+        long bidPrice;
+        long bidQty;
+        long stamp;
+        do {
+            stamp = orderBook.tryOptimisticRead();
+            askPrice = orderBook.getBestAskPrice();
+            askQty = orderBook.getBestAskQty();
+            bidPrice = orderBook.getBestBidPrice();
+            bidQty = orderBook.getBestBidQty();
+        } while (!orderBook.validate(stamp));
+
+        double weightedPrice = (double) askPrice * bidQty + (double) bidPrice * askQty;
+        return weightedPrice / ((double) askQty + bidQty) / FixedPoint.powerOfTen(orderBook.getPriceScale());
+    }
+
+    /**
+     * @return the volume-weighted average price of the best {@code levels} ask levels, NaN if there
+     * are no asks
+     */
+    public static double askVwap(LocalOrderBook orderBook, int levels) {
+        return vwap(orderBook, asks(orderBook, levels), levels);
+    }
+
+    /**
+     * @return the volume-weighted average price of the best {@code levels} bid levels, NaN if there
+     * are no bids
+     */
+    public static double bidVwap(LocalOrderBook orderBook, int levels) {
+        return vwap(orderBook, bids(orderBook, levels), levels);
+    }
+
+    private static double vwap(LocalOrderBook orderBook, PriceLevels side, int levels) {
+        double notional;
+        double qty;
+        long stamp;
+        do {
+            stamp = orderBook.tryOptimisticRead();
+            notional = 0.0;
+            qty = 0.0;
+            try {
+                for (int level = 0, count = java.lang.Math.min(levels, side.size()); level < count; level++) {
+                    long levelQty = side.getQty(level);
+                    notional += (double) side.getPrice(level) * levelQty;
+                    qty += levelQty;
+                }
+            } catch (IndexOutOfBoundsException ex) {
+                checkTorn(orderBook, stamp, ex);
+            }
+        } while (!orderBook.validate(stamp));
+        return notional / qty / FixedPoint.powerOfTen(orderBook.getPriceScale());
+    }
+
+    /**
+     * Depth-weighted mid: the volume-weighted average prices of the best {@code levels} levels of
+     * each side, each weighted by the notional resting on the opposite side. With one level and
+     * weights in quantity rather than notional this is the {@link #microprice(LocalOrderBook)}.
+     *
+     * @return the mid, NaN if either side is empty
+     */
+    public static double depthWeightedMid(LocalOrderBook orderBook, int levels) {
+        PriceLevels asks = asks(orderBook, levels);
+        PriceLevels bids = bids(orderBook, levels);
+        double askNotional;
+        double askQty;
+        double bidNotional;
+        double bidQty;
+        long stamp;
+        do {
+            stamp = orderBook.tryOptimisticRead();
+            askNotional = 0.0;
+            askQty = 0.0;
+            bidNotional = 0.0;
+            bidQty = 0.0;
+            try {
+                for (int level = 0, count = java.lang.Math.min(levels, asks.size()); level < count; level++) {
+                    long levelQty = asks.getQty(level);
+                    askNotional += (double) asks.getPrice(level) * levelQty;
+                    askQty += levelQty;
+                }
+                for (int level = 0, count = java.lang.Math.min(levels, bids.size()); level < count; level++) {
+                    long levelQty = bids.getQty(level);
+                    bidNotional += (double) bids.getPrice(level) * levelQty;
+                    bidQty += levelQty;
+                }
+            } catch (IndexOutOfBoundsException ex) {
+                checkTorn(orderBook, stamp, ex);
+            }
+        } while (!orderBook.validate(stamp));
+
+        if (askQty == 0.0 || bidQty == 0.0) {
+            return Double.NaN;
+        }
+        // Each side's VWAP times the opposite notional, over the total notional
+        double weightedPrice = askNotional / askQty * bidNotional + bidNotional / bidQty * askNotional;
+        return weightedPrice / (askNotional + bidNotional) / FixedPoint.powerOfTen(orderBook.getPriceScale());
+    }
+
+    /**
+     * Book imbalance over the best {@code levels} levels of each side: (bid qty - ask qty) / (bid qty
+     * + ask qty), from -1 when only asks rest to 1 when only bids do.
+     *
+     * @return the imbalance, NaN if the book is empty
+     */
+    public static double imbalance(LocalOrderBook orderBook, int levels) {
+        PriceLevels asks = asks(orderBook, levels);
+        PriceLevels bids = bids(orderBook, levels);
+        double askQty;
+        double bidQty;
+        long stamp;
+        do {
+            stamp = orderBook.tryOptimisticRead();
+            askQty = 0.0;
+            bidQty = 0.0;
+            try {
+                for (int level = 0, count = java.lang.Math.min(levels, asks.size()); level < count; level++) {
+                    askQty += asks.getQty(level);
+                }
+                for (int level = 0, count = java.lang.Math.min(levels, bids.size()); level < count; level++) {
+                    bidQty += bids.getQty(level);
+                }
+            } catch (IndexOutOfBoundsException ex) {
+                checkTorn(orderBook, stamp, ex);
+            }
+        } while (!orderBook.validate(stamp));
+        return (bidQty - askQty) / (bidQty + askQty);
+    }
+
+    /**
+     * @return the cached top ask levels if they are deep enough, else the whole side
+     */
+    private static PriceLevels asks(LocalOrderBook orderBook, int levels) {
+        return levels <= LocalOrderBook.TOP_LEVELS ? orderBook.getTopAsks() : orderBook.getAsks();
+    }
+
+    /**
+     * @return the cached top bid levels if they are deep enough, else the whole side
+     */
+    private static PriceLevels bids(LocalOrderBook orderBook, int levels) {
+        return levels <= LocalOrderBook.TOP_LEVELS ? orderBook.getTopBids() : orderBook.getBids();
+    }
+
+    /**
+     * Levels beyond the book's cached top levels are read from the side itself, so a read racing the
+     * writer can index past a side that is shrinking under it. That read fails validation and is
+     * retried; on a consistent read the exception is a genuine bug and is rethrown.
+     */
+    private static void checkTorn(LocalOrderBook orderBook, long stamp, IndexOutOfBoundsException ex) {
+        if (orderBook.validate(stamp)) {
+            throw ex;
+        }
     }
 }
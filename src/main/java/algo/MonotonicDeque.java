@@ -0,0 +1,71 @@
+package algo;
+
+/**
+ * Sliding-window extremum by a monotonic deque: the deque holds the values of the window that could
+ * still become its extremum, in order of arrival and with the extremum at the head. A new value
+ * evicts every value behind it that it beats, as those can never be the extremum again, and the head
+ * is dropped once it leaves the window. Each value is pushed and popped at most once, so updates are
+ * amortised O(1) and reads O(1).
+ *
+ * The deque is a circular pair of primitive arrays of window size: value and sequence number.
+ */
+final class MonotonicDeque {
+    private final int period;
+    private final boolean maximum;
+    private final double[] values;
+    private final long[] sequences;
+    private int head;
+    private int size;
+    private long count;
+
+    /**
+     * @param maximum true to track the window's maximum, false its minimum
+     */
+    MonotonicDeque(int period, boolean maximum) {
+        if (period < 1) {
+            throw new IllegalArgumentException("Period must be positive, got " + period);
+        }
+        this.period = period;
+        this.maximum = maximum;
+        this.values = new double[period];
+        this.sequences = new long[period];
+    }
+
+    void addValue(double value) {
+        while (size > 0) {
+            double last = values[slot(size - 1)];
+            if (maximum ? last > value : last < value) {
+                break;
+            }
+            size--;
+        }
+        if (size > 0 && sequences[head] <= count - period) {
+            head = slot(1);
+            size--;
+        }
+        int tail = slot(size);
+        values[tail] = value;
+        sequences[tail] = count;
+        size++;
+        count++;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    double getExtremum() {
+        return values[head];
+    }
+
+    void reset() {
+        head = 0;
+        size = 0;
+        count = 0;
+    }
+
+    private int slot(int index) {
+        int slot = head + index;
+        return slot >= period ? slot - period : slot;
+    }
+}
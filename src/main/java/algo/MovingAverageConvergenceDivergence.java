@@ -0,0 +1,69 @@
+package algo;
+
+/**
+ * MACD: the difference between a fast and a slow exponential moving average, with an exponential
+ * moving average of that difference as its signal line. The signal line is fed once the slow average
+ * is ready, and the indicator is ready with it.
+ */
+public class MovingAverageConvergenceDivergence implements Indicator {
+    private final ExponentialMovingAverage fast;
+    private final ExponentialMovingAverage slow;
+    private final ExponentialMovingAverage signal;
+
+    /**
+     * The customary 12, 26 and 9 periods.
+     */
+    public MovingAverageConvergenceDivergence() {
+        this(12, 26, 9);
+    }
+
+    public MovingAverageConvergenceDivergence(int fastPeriod, int slowPeriod, int signalPeriod) {
+        if (fastPeriod >= slowPeriod) {
+            throw new IllegalArgumentException("Fast period " + fastPeriod + " is not shorter than slow period "
+                    + slowPeriod);
+        }
+        this.fast = new ExponentialMovingAverage(fastPeriod);
+        this.slow = new ExponentialMovingAverage(slowPeriod);
+        this.signal = new ExponentialMovingAverage(signalPeriod);
+    }
+
+    @Override
+    public void addValue(double value) {
+        fast.addValue(value);
+        slow.addValue(value);
+        if (slow.isReady()) {
+            signal.addValue(fast.getValue() - slow.getValue());
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return signal.isReady();
+    }
+
+    /**
+     * @return the MACD line, the fast average minus the slow one
+     */
+    @Override
+    public double getValue() {
+        return isReady() ? fast.getValue() - slow.getValue() : Double.NaN;
+    }
+
+    public double getSignal() {
+        return signal.getValue();
+    }
+
+    /**
+     * @return the MACD line minus the signal line
+     */
+    public double getHistogram() {
+        return getValue() - getSignal();
+    }
+
+    @Override
+    public void reset() {
+        fast.reset();
+        slow.reset();
+        signal.reset();
+    }
+}
@@ -0,0 +1,237 @@
+package algo;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable streaming quantile sketch, after Karnin, Lang and Liberty (KLL), with every compactor of
+ * the same capacity k. Values enter the level 0 compactor; a full compactor is sorted and every other
+ * value, from a random offset, moves up a level where it stands for twice as many values, the rest
+ * being dropped. A value at level h thus has weight 2^h, the total weight is exactly the number of
+ * values added, and the rank error is about log2(n / k) / k of n.
+ *
+ * Adding, merging and querying allocate nothing once the sketch has as many levels as its capacity
+ * needs; past the capacity it grows a level at a time.
+ */
+public class QuantileSketch {
+    private final int k;
+    private double[][] compactors;
+    private int[] sizes;
+    private int levelCount = 1;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    /**
+     * xorshift state, for the compaction offsets.
+     */
+    private long random = 0x9E3779B97F4A7C15L;
+    /**
+     * Scratch space for queries, sized to the most values the sketch can hold.
+     */
+    private double[] scratchValues;
+    private long[] scratchWeights;
+
+    /**
+     * @param k        capacity of each compactor, even; larger is more accurate
+     * @param capacity number of values the sketch is sized for without allocating
+     */
+    public QuantileSketch(int k, long capacity) {
+        if (k < 2 || (k & 1) != 0) {
+            throw new IllegalArgumentException("Compactor capacity must be even and at least 2, got " + k);
+        }
+        this.k = k;
+        int levels = 1;
+        while ((long) k << (levels - 1) < capacity && levels < 62) {
+            levels++;
+        }
+        this.compactors = new double[levels][k];
+        this.sizes = new int[levels];
+        this.scratchValues = new double[levels * k];
+        this.scratchWeights = new long[levels * k];
+    }
+
+    public void add(double value) {
+        insert(0, value);
+        count++;
+        if (count == 1 || value < min) {
+            min = value;
+        }
+        if (count == 1 || value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Adds the values summarised by another sketch, as if they had been added to this one.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        for (int level = 0; level < other.levelCount; level++) {
+            for (int i = 0; i < other.sizes[level]; i++) {
+                insert(level, other.compactors[level][i]);
+            }
+        }
+        min = count == 0 ? other.min : java.lang.Math.min(min, other.min);
+        max = count == 0 ? other.max : java.lang.Math.max(max, other.max);
+        count += other.count;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return an approximation of the value at that quantile of the values added, or NaN if none were
+     */
+    public double getQuantile(double quantile) {
+        int n = collect(scratchValues, scratchWeights, 0);
+        return select(scratchValues, scratchWeights, n, count, quantile, min, max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void reset() {
+        Arrays.fill(sizes, 0);
+        levelCount = 1;
+        count = 0;
+        min = Double.NaN;
+        max = Double.NaN;
+    }
+
+    /**
+     * @return the most values the sketch holds before it has to grow, see {@link #collect}
+     */
+    int getRetainedCapacity() {
+        return compactors.length * k;
+    }
+
+    /**
+     * Copies the retained values and their weights into the arrays from an offset.
+     *
+     * @return the offset after the last value copied
+     */
+    int collect(double[] values, long[] weights, int offset) {
+        for (int level = 0; level < levelCount; level++) {
+            System.arraycopy(compactors[level], 0, values, offset, sizes[level]);
+            Arrays.fill(weights, offset, offset + sizes[level], 1L << level);
+            offset += sizes[level];
+        }
+        return offset;
+    }
+
+    /**
+     * Finds the value at a quantile of weighted values, sorting them in place.
+     *
+     * @param totalWeight sum of the weights
+     * @param min         exact minimum, returned for quantile 0
+     * @param max         exact maximum, returned for quantile 1
+     */
+    static double select(double[] values, long[] weights, int n, long totalWeight, double quantile,
+                         double min, double max) {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        if (quantile <= 0.0) {
+            return min;
+        }
+        if (quantile >= 1.0) {
+            return max;
+        }
+        sort(values, weights, 0, n - 1);
+        double target = quantile * totalWeight;
+        long cumulative = 0L;
+        for (int i = 0; i < n; i++) {
+            cumulative += weights[i];
+            if (cumulative >= target) {
+                return values[i];
+            }
+        }
+        return values[n - 1];
+    }
+
+    private void insert(int level, double value) {
+        if (level == levelCount) {
+            if (levelCount == compactors.length) {
+                grow();
+            }
+            levelCount++;
+        }
+        compactors[level][sizes[level]++] = value;
+        if (sizes[level] == k) {
+            compact(level);
+        }
+    }
+
+    private void compact(int level) {
+        double[] compactor = compactors[level];
+        Arrays.sort(compactor, 0, k);
+        sizes[level] = 0;
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        for (int i = (int) (random & 1L); i < k; i += 2) {
+            insert(level + 1, compactor[i]);
+        }
+    }
+
+    private void grow() {
+        int levels = compactors.length + 1;
+        compactors = Arrays.copyOf(compactors, levels);
+        compactors[levels - 1] = new double[k];
+        sizes = Arrays.copyOf(sizes, levels);
+        scratchValues = new double[levels * k];
+        scratchWeights = new long[levels * k];
+    }
+
+    /**
+     * Quicksort of values, carrying their weights along, over [from, to].
+     */
+    private static void sort(double[] values, long[] weights, int from, int to) {
+        while (to - from > 16) {
+            double pivot = values[(from + to) >>> 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(values, weights, i++, j--);
+                }
+            }
+            // Recurse into the smaller half, loop on the larger, to bound the stack depth
+            if (j - from < to - i) {
+                sort(values, weights, from, j);
+                from = i;
+            } else {
+                sort(values, weights, i, to);
+                to = j;
+            }
+        }
+        for (int i = from + 1; i <= to; i++) {
+            for (int j = i; j > from && values[j - 1] > values[j]; j--) {
+                swap(values, weights, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(double[] values, long[] weights, int i, int j) {
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+        long weight = weights[i];
+        weights[i] = weights[j];
+        weights[j] = weight;
+    }
+}
@@ -0,0 +1,68 @@
+package algo;
+
+/**
+ * Wilder's relative strength index, from 0 to 100. The average gain and loss start as the simple
+ * averages of the first {@code period} changes, and are smoothed with Wilder's factor 1 / period
+ * after that, so the index is ready after period + 1 values.
+ */
+public class RelativeStrengthIndex implements Indicator {
+    private final int period;
+    private double previous;
+    private double averageGain;
+    private double averageLoss;
+    private long count;
+
+    public RelativeStrengthIndex(int period) {
+        if (period < 1) {
+            throw new IllegalArgumentException("Period must be positive, got " + period);
+        }
+        this.period = period;
+    }
+
+    @Override
+    public void addValue(double value) {
+        if (count > 0) {
+            double change = value - previous;
+            double gain = change > 0.0 ? change : 0.0;
+            double loss = change < 0.0 ? -change : 0.0;
+            if (count <= period) {
+                // Still summing the first period changes
+                averageGain += gain / period;
+                averageLoss += loss / period;
+            } else {
+                averageGain += (gain - averageGain) / period;
+                averageLoss += (loss - averageLoss) / period;
+            }
+        }
+        previous = value;
+        count++;
+    }
+
+    @Override
+    public boolean isReady() {
+        return count > period;
+    }
+
+    @Override
+    public double getValue() {
+        if (!isReady()) {
+            return Double.NaN;
+        }
+        if (averageLoss == 0.0) {
+            return averageGain == 0.0 ? 50.0 : 100.0;
+        }
+        return 100.0 - 100.0 / (1.0 + averageGain / averageLoss);
+    }
+
+    @Override
+    public void reset() {
+        previous = 0.0;
+        averageGain = 0.0;
+        averageLoss = 0.0;
+        count = 0;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+}
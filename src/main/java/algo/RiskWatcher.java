@@ -7,6 +7,7 @@ import source.scheduling.ScheduleEvent;
 public class RiskWatcher implements EventListener {
     @Override
     public void handleEvent(LocalOrderBook orderBook) {
+        orderBook.release();
     }
 
     @Override
@@ -0,0 +1,38 @@
+package algo;
+
+/**
+ * Lowest of the last {@code period} values, in amortised O(1) per value.
+ */
+public class RollingMinimum implements Indicator {
+    private final int period;
+    private final MonotonicDeque deque;
+
+    public RollingMinimum(int period) {
+        this.period = period;
+        this.deque = new MonotonicDeque(period, false);
+    }
+
+    @Override
+    public void addValue(double value) {
+        deque.addValue(value);
+    }
+
+    @Override
+    public boolean isReady() {
+        return deque.getCount() >= period;
+    }
+
+    @Override
+    public double getValue() {
+        return isReady() ? deque.getExtremum() : Double.NaN;
+    }
+
+    @Override
+    public void reset() {
+        deque.reset();
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+}
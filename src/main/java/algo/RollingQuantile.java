@@ -0,0 +1,152 @@
+package algo;
+
+/**
+ * Approximate quantile of the last {@code period} values, for windows too large to keep sorted.
+ *
+ * The window is split into blocks of period / blocks values, each summarised by its own
+ * {@link QuantileSketch}; when blocks do not divide the period, the first period % blocks of each
+ * round of blocks take one value more, so that any blocks in a row hold exactly period values. A query
+ * merges the sketches of the live blocks, and a block whose values have all left the window is reset
+ * and reused for new values. The window is thus covered in whole blocks: it spans the last period
+ * values plus up to one block of older ones. Updates are O(1)
+ * amortised; a query costs a sort of the values the sketches retain, which depends on k and the
+ * number of blocks but not on the period, and is cached until the next value is added.
+ */
+public class RollingQuantile implements Indicator {
+    public static final int DEFAULT_K = 128;
+    public static final int DEFAULT_BLOCKS = 8;
+
+    private final int period;
+    private final double quantile;
+    private final int blockCount;
+    /**
+     * One block more than the window needs: the one being filled.
+     */
+    private final QuantileSketch[] blocks;
+    private int current;
+    /**
+     * Number of blocks filled before the current one, which decides its size.
+     */
+    private long blocksFilled;
+    private int currentSize;
+    private long count;
+    private double[] scratchValues;
+    private long[] scratchWeights;
+    private double cachedQuantile = Double.NaN;
+    private double cachedValue = Double.NaN;
+
+    /**
+     * @param quantile the quantile {@link #getValue()} returns, between 0 and 1
+     */
+    public RollingQuantile(int period, double quantile) {
+        this(period, quantile, DEFAULT_K, DEFAULT_BLOCKS);
+    }
+
+    /**
+     * @param k          compactor capacity of the sketches, see {@link QuantileSketch}
+     * @param blockCount number of blocks the window is split into; more blocks keep the window closer
+     *                   to the period but make queries slower
+     */
+    public RollingQuantile(int period, double quantile, int k, int blockCount) {
+        if (period < 1 || blockCount < 1 || blockCount > period) {
+            throw new IllegalArgumentException(blockCount + " blocks cannot split a period of " + period);
+        }
+        this.period = period;
+        this.quantile = quantile;
+        this.blockCount = blockCount;
+        this.blocks = new QuantileSketch[blockCount + 1];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new QuantileSketch(k, (period + blockCount - 1) / blockCount);
+        }
+        this.currentSize = blockSize(0);
+        allocateScratch();
+    }
+
+    @Override
+    public void addValue(double value) {
+        if (blocks[current].getCount() == currentSize) {
+            current = current + 1 == blocks.length ? 0 : current + 1;
+            blocks[current].reset();
+            blocksFilled++;
+            currentSize = blockSize(blocksFilled);
+        }
+        blocks[current].add(value);
+        count++;
+        cachedQuantile = Double.NaN;
+    }
+
+    @Override
+    public boolean isReady() {
+        return count >= period;
+    }
+
+    /**
+     * @return the approximate value at the configured quantile of the window
+     */
+    @Override
+    public double getValue() {
+        return isReady() ? getQuantile(quantile) : Double.NaN;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the approximate value at that quantile of the window, or NaN if it is empty
+     */
+    public double getQuantile(double quantile) {
+        if (quantile == cachedQuantile) {
+            return cachedValue;
+        }
+        int n = 0;
+        long totalWeight = 0L;
+        double min = Double.NaN;
+        double max = Double.NaN;
+        for (QuantileSketch block : blocks) {
+            if (block.getCount() == 0) {
+                continue;
+            }
+            if (n + block.getRetainedCapacity() > scratchValues.length) {
+                // A sketch grew past its capacity
+                allocateScratch();
+            }
+            n = block.collect(scratchValues, scratchWeights, n);
+            totalWeight += block.getCount();
+            min = Double.isNaN(min) ? block.getMin() : java.lang.Math.min(min, block.getMin());
+            max = Double.isNaN(max) ? block.getMax() : java.lang.Math.max(max, block.getMax());
+        }
+        cachedValue = QuantileSketch.select(scratchValues, scratchWeights, n, totalWeight, quantile, min, max);
+        cachedQuantile = quantile;
+        return cachedValue;
+    }
+
+    @Override
+    public void reset() {
+        for (QuantileSketch block : blocks) {
+            block.reset();
+        }
+        current = 0;
+        blocksFilled = 0;
+        currentSize = blockSize(0);
+        count = 0;
+        cachedQuantile = Double.NaN;
+    }
+
+    /**
+     * @return the number of values the block started after the given number of filled blocks holds
+     */
+    private int blockSize(long block) {
+        return period / blockCount + (block % blockCount < period % blockCount ? 1 : 0);
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    private void allocateScratch() {
+        int capacity = 0;
+        for (QuantileSketch block : blocks) {
+            capacity += block.getRetainedCapacity();
+        }
+        scratchValues = new double[capacity];
+        scratchWeights = new long[capacity];
+    }
+}
@@ -0,0 +1,105 @@
+package algo;
+
+import java.util.Arrays;
+
+/**
+ * Mean and variance of the last {@code period} values, by Welford's algorithm extended to a sliding
+ * window: each value entering or leaving the window updates the mean and the sum of squared
+ * deviations from it in O(1), without the catastrophic cancellation of a sum-of-squares formula.
+ * The mean is taken from a compensated sum of the window, as an incrementally updated mean drifts.
+ */
+public class RollingVariance implements Indicator {
+    private final int period;
+    private final double[] window;
+    private final CompensatedSum sum = new CompensatedSum();
+    private int next;
+    private long count;
+    private double mean;
+    /**
+     * Sum of squared deviations from the mean of the values in the window.
+     */
+    private double m2;
+
+    public RollingVariance(int period) {
+        if (period < 2) {
+            throw new IllegalArgumentException("Period must be at least 2, got " + period);
+        }
+        this.period = period;
+        this.window = new double[period];
+    }
+
+    @Override
+    public void addValue(double value) {
+        if (count >= period) {
+            // Replace the oldest value in one step: the window size stays period
+            double oldest = window[next];
+            double oldMean = mean;
+            sum.add(value - oldest);
+            mean = sum.get() / period;
+            m2 += (value - oldest) * (value - mean + oldest - oldMean);
+            if (m2 < 0.0) {
+                m2 = 0.0;
+            }
+        } else {
+            double delta = value - mean;
+            sum.add(value);
+            mean = sum.get() / (count + 1);
+            m2 += delta * (value - mean);
+        }
+        window[next] = value;
+        next = next + 1 == period ? 0 : next + 1;
+        count++;
+    }
+
+    @Override
+    public boolean isReady() {
+        return count >= period;
+    }
+
+    /**
+     * @return the population variance of the window
+     */
+    @Override
+    public double getValue() {
+        return getVariance();
+    }
+
+    public double getMean() {
+        return isReady() ? mean : Double.NaN;
+    }
+
+    /**
+     * @return the population variance of the window, or NaN until it is full
+     */
+    public double getVariance() {
+        return isReady() ? m2 / period : Double.NaN;
+    }
+
+    /**
+     * @return the sample variance of the window, or NaN until it is full
+     */
+    public double getSampleVariance() {
+        return isReady() ? m2 / (period - 1) : Double.NaN;
+    }
+
+    /**
+     * @return the population standard deviation of the window, or NaN until it is full
+     */
+    public double getStandardDeviation() {
+        return java.lang.Math.sqrt(getVariance());
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(window, 0.0);
+        sum.reset();
+        next = 0;
+        count = 0;
+        mean = 0.0;
+        m2 = 0.0;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+}
@@ -1,25 +1,74 @@
 package algo;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import java.util.Arrays;
 
-public class SimpleMovingAverage {
-    private int period;
-    private DescriptiveStatistics descriptiveStatistics;
+/**
+ * Moving average of the last {@code period} values, updated and read in O(1) whatever the period.
+ *
+ * Values are kept in a primitive ring buffer alongside their running sum: each new value is added to
+ * the sum and the value it evicts subtracted from it. The sum is compensated, see
+ * {@link CompensatedSum}, so that the rounding errors of millions of additions and subtractions do
+ * not accumulate into drift.
+ */
+public class SimpleMovingAverage implements Indicator {
+    private final int period;
+    private final double[] window;
+    private final CompensatedSum sum = new CompensatedSum();
+    /**
+     * Slot of the oldest value, which the next value replaces.
+     */
+    private int next;
+    private long count;
 
     public SimpleMovingAverage(int period) {
+        if (period < 1) {
+            throw new IllegalArgumentException("Period must be positive, got " + period);
+        }
         this.period = period;
-        this.descriptiveStatistics = new DescriptiveStatistics(period);
+        this.window = new double[period];
     }
 
+    @Override
     public void addValue(double value) {
-        descriptiveStatistics.addValue(value);
+        if (count >= period) {
+            sum.add(-window[next]);
+        }
+        window[next] = value;
+        sum.add(value);
+        next = next + 1 == period ? 0 : next + 1;
+        count++;
     }
 
+    /**
+     * @return the average of the last period values, or -1 until period values were added
+     */
     public double getMovingAverage() {
-        if (descriptiveStatistics.getN() < period) {
+        if (count < period) {
             return -1;
         } else {
-            return descriptiveStatistics.getMean();
+            return sum.get() / period;
         }
     }
+
+    @Override
+    public boolean isReady() {
+        return count >= period;
+    }
+
+    @Override
+    public double getValue() {
+        return isReady() ? sum.get() / period : Double.NaN;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(window, 0.0);
+        sum.reset();
+        next = 0;
+        count = 0;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
 }
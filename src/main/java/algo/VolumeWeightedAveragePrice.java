@@ -0,0 +1,94 @@
+package algo;
+
+import java.util.Arrays;
+
+/**
+ * Volume-weighted average price of trade prints, either over the whole session or over the last
+ * {@code period} prints.
+ */
+public class VolumeWeightedAveragePrice implements Indicator {
+    /**
+     * Prints in the window, or 0 for a cumulative average.
+     */
+    private final int period;
+    private final double[] prices;
+    private final double[] volumes;
+    private final CompensatedSum notional = new CompensatedSum();
+    private final CompensatedSum volume = new CompensatedSum();
+    private int next;
+    private long count;
+
+    /**
+     * Averages every print since construction or the last reset.
+     */
+    public VolumeWeightedAveragePrice() {
+        this.period = 0;
+        this.prices = null;
+        this.volumes = null;
+    }
+
+    /**
+     * Averages the last period prints.
+     */
+    public VolumeWeightedAveragePrice(int period) {
+        if (period < 1) {
+            throw new IllegalArgumentException("Period must be positive, got " + period);
+        }
+        this.period = period;
+        this.prices = new double[period];
+        this.volumes = new double[period];
+    }
+
+    /**
+     * Adds a print of unit volume.
+     */
+    @Override
+    public void addValue(double price) {
+        addValue(price, 1.0);
+    }
+
+    @Override
+    public void addValue(double price, double qty) {
+        if (period > 0) {
+            if (count >= period) {
+                notional.add(-prices[next] * volumes[next]);
+                volume.add(-volumes[next]);
+            }
+            prices[next] = price;
+            volumes[next] = qty;
+            next = next + 1 == period ? 0 : next + 1;
+        }
+        notional.add(price * qty);
+        volume.add(qty);
+        count++;
+    }
+
+    @Override
+    public boolean isReady() {
+        return count >= java.lang.Math.max(period, 1) && volume.get() > 0.0;
+    }
+
+    @Override
+    public double getValue() {
+        return isReady() ? notional.get() / volume.get() : Double.NaN;
+    }
+
+    /**
+     * @return the volume of the prints averaged
+     */
+    public double getVolume() {
+        return volume.get();
+    }
+
+    @Override
+    public void reset() {
+        if (period > 0) {
+            Arrays.fill(prices, 0.0);
+            Arrays.fill(volumes, 0.0);
+        }
+        notional.reset();
+        volume.reset();
+        next = 0;
+        count = 0;
+    }
+}
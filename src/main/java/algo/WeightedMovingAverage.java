@@ -0,0 +1,67 @@
+package algo;
+
+import java.util.Arrays;
+
+/**
+ * Linearly weighted moving average of the last {@code period} values: the newest value has weight
+ * period, the oldest weight 1.
+ *
+ * Updated in O(1) from two running sums, the plain sum of the window and its weighted sum: when a
+ * value enters a full window every older value loses one unit of weight, which is the plain sum
+ * before the oldest value leaves.
+ */
+public class WeightedMovingAverage implements Indicator {
+    private final int period;
+    private final double[] window;
+    private final double weightTotal;
+    private final CompensatedSum sum = new CompensatedSum();
+    private final CompensatedSum weightedSum = new CompensatedSum();
+    private int next;
+    private long count;
+
+    public WeightedMovingAverage(int period) {
+        if (period < 1) {
+            throw new IllegalArgumentException("Period must be positive, got " + period);
+        }
+        this.period = period;
+        this.window = new double[period];
+        this.weightTotal = period * (period + 1) / 2.0;
+    }
+
+    @Override
+    public void addValue(double value) {
+        if (count >= period) {
+            weightedSum.add(period * value - sum.get());
+            sum.add(value - window[next]);
+        } else {
+            weightedSum.add((count + 1) * value);
+            sum.add(value);
+        }
+        window[next] = value;
+        next = next + 1 == period ? 0 : next + 1;
+        count++;
+    }
+
+    @Override
+    public boolean isReady() {
+        return count >= period;
+    }
+
+    @Override
+    public double getValue() {
+        return isReady() ? weightedSum.get() / weightTotal : Double.NaN;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(window, 0.0);
+        sum.reset();
+        weightedSum.reset();
+        next = 0;
+        count = 0;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+}
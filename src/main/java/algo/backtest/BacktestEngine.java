@@ -0,0 +1,161 @@
+package algo.backtest;
+
+import source.data.FixedPoint;
+import source.data.JournalReader;
+import source.data.LocalOrderBook;
+import source.scheduling.Clock;
+import source.scheduling.HashedWheelTimer;
+import source.scheduling.SimulatedClock;
+import source.scheduling.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link Strategy} against the order book of one symbol, replayed from a {@link MarketDataSet}.
+ *
+ * Each run replays the data set on the calling thread: it seeds a private book from the data set's
+ * first snapshot, then applies every depth event to it, rebuilding it from each resync snapshot, and
+ * advances a {@link SimulatedClock} to the exchange event time of every event, so that the
+ * strategy's timers fire in replayed time, at the points they would have live. Orders fill against
+ * the book through a {@link FillSimulator}, and the portfolio is marked to the mid price after every
+ * depth event.
+ *
+ * The data set is only read, and a run shares nothing else with other runs, so one engine can run
+ * many strategies in parallel over the same data, see {@link ParameterSweep}.
+ */
+public class BacktestEngine {
+    /**
+     * Resolution of strategy timers.
+     */
+    public static final long DEFAULT_TIMER_TICK_MILLIS = 10L;
+    private static final int TIMER_WHEEL_SIZE = 1024;
+
+    private final MarketDataSet marketData;
+    private final FillSimulator fillSimulator;
+    private final long timerTickNanos;
+
+    /**
+     * Loads one symbol's depth events from a journal, once for every run.
+     *
+     * @param journalFiles the journal to replay, see {@link JournalReader#journalFiles(Path, String)}
+     * @param symbolId     id of the symbol to trade, in the journal's symbol table
+     */
+    public BacktestEngine(List<Path> journalFiles, int symbolId, FillSimulator fillSimulator) throws IOException {
+        this(MarketDataSet.load(journalFiles, symbolId), fillSimulator, DEFAULT_TIMER_TICK_MILLIS);
+    }
+
+    /**
+     * @param timerTickMillis resolution of strategy timers
+     */
+    public BacktestEngine(MarketDataSet marketData, FillSimulator fillSimulator, long timerTickMillis) {
+        this.marketData = marketData;
+        this.fillSimulator = fillSimulator;
+        this.timerTickNanos = TimeUnit.MILLISECONDS.toNanos(timerTickMillis);
+    }
+
+    /**
+     * Replays the whole data set through the strategy.
+     */
+    public BacktestResult run(Strategy strategy) {
+        Run run = new Run(strategy);
+        for (int event = 0; event < marketData.getEventCount(); event++) {
+            run.onDepthUpdate(event);
+        }
+        return run.finish();
+    }
+
+    public MarketDataSet getMarketData() {
+        return marketData;
+    }
+
+    /**
+     * State of one run, which is also the strategy's context.
+     */
+    private class Run implements StrategyContext {
+        private final Strategy strategy;
+        private final Portfolio portfolio = new Portfolio();
+        private LocalOrderBook orderBook;
+        private SimulatedClock clock;
+        private HashedWheelTimer timer;
+        private long eventCount;
+
+        Run(Strategy strategy) {
+            this.strategy = strategy;
+        }
+
+        void onDepthUpdate(int event) {
+            long eventTime = marketData.getEventTime(event);
+            if (orderBook == null) {
+                start(eventTime);
+            }
+            // Timers due before this event see the book as it was
+            clock.advanceToMillis(eventTime);
+            if (marketData.isSnapshot(event)) {
+                orderBook.clear();
+            }
+            int level = marketData.getLevelOffset(event);
+            int asksStart = level + marketData.getBidCount(event);
+            int end = marketData.getLevelOffset(event + 1);
+            for (; level < asksStart; level++) {
+                orderBook.updateBid(marketData.getPrice(level), marketData.getQty(level));
+            }
+            for (; level < end; level++) {
+                orderBook.updateAsk(marketData.getPrice(level), marketData.getQty(level));
+            }
+            eventCount++;
+            markToMid();
+            strategy.onOrderBook(orderBook, this);
+        }
+
+        private void start(long eventTime) {
+            orderBook = new LocalOrderBook(marketData.getPriceScale(), marketData.getQtyScale());
+            clock = new SimulatedClock(eventTime);
+            timer = new HashedWheelTimer(clock, timerTickNanos, TIMER_WHEEL_SIZE);
+            strategy.start(this);
+        }
+        private void markToMid() {
+            if (!orderBook.getAsks().isEmpty() && !orderBook.getBids().isEmpty()) {
+                int priceScale = orderBook.getPriceScale();
+                portfolio.mark((FixedPoint.toDouble(orderBook.getBestAskPrice(), priceScale)
+                        + FixedPoint.toDouble(orderBook.getBestBidPrice(), priceScale)) / 2.0);
+            }
+        }
+
+        BacktestResult finish() {
+            if (timer != null) {
+                timer.stop();
+            }
+            return new BacktestResult(strategy.toString(), portfolio, eventCount);
+        }
+
+        @Override
+        public Clock getClock() {
+            return clock;
+        }
+
+        @Override
+        public Timeout schedulePeriodic(Runnable task, long period, TimeUnit unit) {
+            return timer.schedulePeriodic(task, period, period, unit);
+        }
+
+        @Override
+        public LocalOrderBook getOrderBook() {
+            return orderBook;
+        }
+
+        @Override
+        public Portfolio getPortfolio() {
+            return portfolio;
+        }
+
+        @Override
+        public double submitMarketOrder(double qty) {
+            double filled = fillSimulator.fill(orderBook, qty, portfolio);
+            markToMid();
+            return filled;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package algo.backtest;
+
+/**
+ * Outcome of one backtest run, with any open position marked at the last mid price.
+ */
+public class BacktestResult {
+    private final String strategy;
+    private final double pnl;
+    private final double maxDrawdown;
+    private final double turnover;
+    private final double fees;
+    private final int tradeCount;
+    private final double finalPosition;
+    private final long eventCount;
+
+    BacktestResult(String strategy, Portfolio portfolio, long eventCount) {
+        this.strategy = strategy;
+        this.pnl = portfolio.getEquity();
+        this.maxDrawdown = portfolio.getMaxDrawdown();
+        this.turnover = portfolio.getTurnover();
+        this.fees = portfolio.getFees();
+        this.tradeCount = portfolio.getTradeCount();
+        this.finalPosition = portfolio.getPosition();
+        this.eventCount = eventCount;
+    }
+
+    /**
+     * @return the strategy's description, from its toString
+     */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return the profit, net of fees, with any open position marked at the last price
+     */
+    public double getPnl() {
+        return pnl;
+    }
+
+    public double getMaxDrawdown() {
+        return maxDrawdown;
+    }
+
+    public double getTurnover() {
+        return turnover;
+    }
+
+    public double getFees() {
+        return fees;
+    }
+
+    public int getTradeCount() {
+        return tradeCount;
+    }
+
+    public double getFinalPosition() {
+        return finalPosition;
+    }
+
+    /**
+     * @return the number of depth events replayed
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    @Override
+    public String toString() {
+        return strategy + ": pnl=" + pnl + ", maxDrawdown=" + maxDrawdown + ", turnover=" + turnover
+                + ", fees=" + fees + ", trades=" + tradeCount + ", position=" + finalPosition;
+    }
+}
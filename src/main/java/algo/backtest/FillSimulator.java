@@ -0,0 +1,55 @@
+package algo.backtest;
+
+import source.data.FixedPoint;
+import source.data.LocalOrderBook;
+import source.data.OrderBookSide;
+
+/**
+ * Fills market orders against the depth of a {@link LocalOrderBook}: an order takes the levels of the
+ * opposite side from the best one outwards until it is filled or the book runs out, and pays a fee
+ * proportional to the notional traded.
+ *
+ * The book itself is left untouched: the next depth event replayed reflects the market as it was
+ * recorded, without the simulated order's impact.
+ */
+public class FillSimulator {
+    private final double feeRate;
+
+    /**
+     * @param feeRate fee as a fraction of the notional traded, e.g. 0.001 for 10 basis points
+     */
+    public FillSimulator(double feeRate) {
+        this.feeRate = feeRate;
+    }
+
+    /**
+     * Fills a market order and books the fill in the portfolio.
+     *
+     * @param qty quantity to buy, or to sell if negative
+     * @return the quantity filled, signed like qty
+     */
+    public double fill(LocalOrderBook orderBook, double qty, Portfolio portfolio) {
+        boolean buy = qty > 0.0;
+        OrderBookSide side = buy ? orderBook.getAsks() : orderBook.getBids();
+        int priceScale = orderBook.getPriceScale();
+        int qtyScale = orderBook.getQtyScale();
+        double remaining = buy ? qty : -qty;
+        double notional = 0.0;
+        for (int level = 0; level < side.size() && remaining > 0.0; level++) {
+            double levelQty = FixedPoint.toDouble(side.getQty(level), qtyScale);
+            double taken = levelQty < remaining ? levelQty : remaining;
+            notional += taken * FixedPoint.toDouble(side.getPrice(level), priceScale);
+            remaining -= taken;
+        }
+        double filled = (buy ? qty : -qty) - remaining;
+        if (filled <= 0.0) {
+            return 0.0;
+        }
+        portfolio.onFill(buy ? filled : -filled, buy ? notional : -notional, notional * feeRate);
+        return buy ? filled : -filled;
+    }
+
+    public double getFeeRate() {
+        return feeRate;
+    }
+}
@@ -0,0 +1,288 @@
+package algo.backtest;
+
+import source.data.DepthSnapshot;
+import source.data.DepthStreamSynchronizer;
+import source.data.JournalReader;
+import websocket.AggTradeUpdate;
+import websocket.DepthUpdate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * One symbol's depth events, loaded once from a journal into read-only columns off the heap, so that
+ * any number of backtests can replay them concurrently without reading or decoding the journal again,
+ * and without the garbage collector ever scanning them.
+ *
+ * The journal is synchronised as it was live: its events and recorded snapshots go through a
+ * {@link DepthStreamSynchronizer}, and only what it applies is loaded. The data set therefore starts
+ * with a snapshot, events already contained in a snapshot are left out, and each resync is a
+ * snapshot event, after which the book is rebuilt from scratch.
+ *
+ * Event i has its exchange event time in the event time column, and its levels at indices
+ * [levelOffset(i), levelOffset(i + 1)) of the price and quantity columns: its bids first, then its
+ * asks. A snapshot event holds every level of the book rather than changes to it. Only absolute reads
+ * are used, so all threads can share the same buffers.
+ */
+public class MarketDataSet {
+    private final String symbol;
+    private final int priceScale;
+    private final int qtyScale;
+    private final int eventCount;
+    private final LongBuffer eventTimes;
+    /**
+     * eventCount + 1 entries, the last one being the total level count.
+     */
+    private final IntBuffer levelOffsets;
+    private final IntBuffer bidCounts;
+    /**
+     * 1 for snapshot events, 0 for depth events.
+     */
+    private final ByteBuffer snapshots;
+    private final LongBuffer prices;
+    private final LongBuffer qtys;
+
+    private MarketDataSet(String symbol, int priceScale, int qtyScale, int eventCount, LongBuffer eventTimes,
+                          IntBuffer levelOffsets, IntBuffer bidCounts, ByteBuffer snapshots, LongBuffer prices,
+                          LongBuffer qtys) {
+        this.symbol = symbol;
+        this.priceScale = priceScale;
+        this.qtyScale = qtyScale;
+        this.eventCount = eventCount;
+        this.eventTimes = eventTimes;
+        this.levelOffsets = levelOffsets;
+        this.bidCounts = bidCounts;
+        this.snapshots = snapshots;
+        this.prices = prices;
+        this.qtys = qtys;
+    }
+
+    /**
+     * Loads the depth events and snapshots of one symbol from a journal, in two passes: one to size the
+     * columns, one to fill them. Trades are not loaded.
+     *
+     * @param journalFiles the journal, see {@link JournalReader#journalFiles(Path, String)}
+     * @param symbolId     id of the symbol in the journal's symbol table
+     * @throws IllegalArgumentException if the journal holds no snapshot of the symbol to start from, or
+     *                                  too many levels to fit
+     */
+    public static MarketDataSet load(List<Path> journalFiles, int symbolId) throws IOException {
+        Loader sizer = new Loader(symbolId);
+        JournalReader reader = new JournalReader(journalFiles);
+        while (reader.readNext(sizer)) {
+        }
+        if (sizer.eventCount == 0) {
+            throw new IllegalArgumentException("No snapshot of symbol " + symbolId + " to start from");
+        }
+        if (sizer.levelCount > Integer.MAX_VALUE / 8) {
+            throw new IllegalArgumentException(sizer.levelCount + " levels do not fit in a column");
+        }
+
+        Loader filler = new Loader(symbolId, sizer.eventCount, (int) sizer.levelCount);
+        reader = new JournalReader(journalFiles);
+        while (reader.readNext(filler)) {
+        }
+        filler.levelOffsets.put(sizer.eventCount, (int) filler.levelCount);
+        return new MarketDataSet(reader.getSymbols()[symbolId], reader.getPriceScale(symbolId),
+                reader.getQtyScale(symbolId), sizer.eventCount, filler.eventTimes.asReadOnlyBuffer(),
+                filler.levelOffsets.asReadOnlyBuffer(), filler.bidCounts.asReadOnlyBuffer(),
+                filler.snapshots.asReadOnlyBuffer(), filler.prices.asReadOnlyBuffer(),
+                filler.qtys.asReadOnlyBuffer());
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int getPriceScale() {
+        return priceScale;
+    }
+
+    public int getQtyScale() {
+        return qtyScale;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return the exchange event time of an event, in milliseconds since the epoch
+     */
+    public long getEventTime(int event) {
+        return eventTimes.get(event);
+    }
+
+    /**
+     * @return the index of an event's first level, or for the event count itself, the number of levels
+     */
+    public int getLevelOffset(int event) {
+        return levelOffsets.get(event);
+    }
+
+    /**
+     * @return the number of an event's levels that are bids, the first ones
+     */
+    public int getBidCount(int event) {
+        return bidCounts.get(event);
+    }
+
+    /**
+     * @return true if the event is a snapshot, whose levels replace the whole book
+     */
+    public boolean isSnapshot(int event) {
+        return snapshots.get(event) != 0;
+    }
+
+    public long getPrice(int level) {
+        return prices.get(level);
+    }
+
+    public long getQty(int level) {
+        return qtys.get(level);
+    }
+
+    /**
+     * @return the number of bytes held off the heap
+     */
+    public long getSizeInBytes() {
+        return eventCount * 17L + 4L + getLevelOffset(eventCount) * 16L;
+    }
+
+    private static LongBuffer longColumn(int length) {
+        return ByteBuffer.allocateDirect(length * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    private static IntBuffer intColumn(int length) {
+        return ByteBuffer.allocateDirect(length * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /**
+     * Runs the journal's events and snapshots of one symbol through a {@link DepthStreamSynchronizer}
+     * and stores what it applies as events: each snapshot as a reset event carrying all its levels,
+     * each depth event it applies as it is. Without columns, it only counts.
+     */
+    private static class Loader implements JournalReader.Handler, DepthStreamSynchronizer.Listener {
+        private final int symbolId;
+        private final DepthStreamSynchronizer synchronizer;
+        private final LongBuffer eventTimes;
+        private final IntBuffer levelOffsets;
+        private final IntBuffer bidCounts;
+        private final ByteBuffer snapshots;
+        private final LongBuffer prices;
+        private final LongBuffer qtys;
+        private int eventCount;
+        private long levelCount;
+        private long lastEventTime = -1L;
+        private long snapshotReceiveNanos;
+
+        /**
+         * Creates a loader that only counts events and levels.
+         */
+        Loader(int symbolId) {
+            this(symbolId, null, null, null, null, null, null);
+        }
+
+        Loader(int symbolId, int eventCount, int levelCount) {
+            this(symbolId, longColumn(eventCount), intColumn(eventCount + 1), intColumn(eventCount),
+                    ByteBuffer.allocateDirect(eventCount), longColumn(levelCount), longColumn(levelCount));
+        }
+
+        private Loader(int symbolId, LongBuffer eventTimes, IntBuffer levelOffsets, IntBuffer bidCounts,
+                       ByteBuffer snapshots, LongBuffer prices, LongBuffer qtys) {
+            this.symbolId = symbolId;
+            this.eventTimes = eventTimes;
+            this.levelOffsets = levelOffsets;
+            this.bidCounts = bidCounts;
+            this.snapshots = snapshots;
+            this.prices = prices;
+            this.qtys = qtys;
+            // Snapshot requests go nowhere: the journal's own snapshots answer them
+            this.synchronizer = new DepthStreamSynchronizer("symbol " + symbolId, () -> null, runnable -> { },
+                    this);
+            synchronizer.start();
+        }
+
+        @Override
+        public void onDepthUpdate(long receiveNanos, int symbolId, DepthUpdate depthUpdate) {
+            if (symbolId == this.symbolId) {
+                synchronizer.onDepthEvent(depthUpdate);
+            }
+        }
+
+        @Override
+        public void onAggTrade(long receiveNanos, int symbolId, AggTradeUpdate aggTrade) {
+        }
+
+        @Override
+        public void onSnapshot(long receiveNanos, int symbolId, DepthSnapshot snapshot) {
+            if (symbolId == this.symbolId) {
+                snapshotReceiveNanos = receiveNanos;
+                synchronizer.onSnapshot(snapshot);
+            }
+        }
+
+        @Override
+        public void onSnapshot(DepthSnapshot snapshot) {
+            // Snapshots carry no exchange time: a resync snapshot takes the time of the last event
+            // applied, and the first one that of the first event applied after it, or failing that its
+            // receive time
+            long eventTime = lastEventTime >= 0L ? lastEventTime : snapshotReceiveNanos / 1_000_000L;
+            if (eventTimes != null) {
+                startEvent(eventTime, snapshot.getBidCount(), true);
+                for (int i = 0; i < snapshot.getBidCount(); i++) {
+                    putLevel(snapshot.getBidPrice(i), snapshot.getBidQty(i));
+                }
+                for (int i = 0; i < snapshot.getAskCount(); i++) {
+                    putLevel(snapshot.getAskPrice(i), snapshot.getAskQty(i));
+                }
+            } else {
+                levelCount += snapshot.getBidCount() + snapshot.getAskCount();
+            }
+            eventCount++;
+        }
+
+        @Override
+        public void onDepthEvent(DepthUpdate depthUpdate) {
+            boolean first = lastEventTime < 0L;
+            lastEventTime = depthUpdate.getEventTime();
+            if (eventTimes != null) {
+                for (int event = 0; first && event < eventCount; event++) {
+                    eventTimes.put(event, lastEventTime);
+                }
+                startEvent(lastEventTime, depthUpdate.getBidCount(), false);
+                for (int i = 0; i < depthUpdate.getBidCount(); i++) {
+                    putLevel(depthUpdate.getBidPrice(i), depthUpdate.getBidQty(i));
+                }
+                for (int i = 0; i < depthUpdate.getAskCount(); i++) {
+                    putLevel(depthUpdate.getAskPrice(i), depthUpdate.getAskQty(i));
+                }
+            } else {
+                levelCount += depthUpdate.getBidCount() + depthUpdate.getAskCount();
+            }
+            eventCount++;
+        }
+
+        @Override
+        public void onBookUpdated() {
+        }
+
+        private void startEvent(long eventTime, int bidCount, boolean snapshot) {
+            eventTimes.put(eventCount, eventTime);
+            levelOffsets.put(eventCount, (int) levelCount);
+            bidCounts.put(eventCount, bidCount);
+            snapshots.put(eventCount, (byte) (snapshot ? 1 : 0));
+        }
+
+        private void putLevel(long price, long qty) {
+            prices.put((int) levelCount, price);
+            qtys.put((int) levelCount, qty);
+            levelCount++;
+        }
+    }
+}
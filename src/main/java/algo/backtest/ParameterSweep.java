@@ -0,0 +1,81 @@
+package algo.backtest;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
+
+/**
+ * Backtests a strategy over a grid of (period1, period2) pairs, spreading the runs over a fork-join
+ * pool so that a sweep uses every core. Every run replays the engine's {@link MarketDataSet}, loaded
+ * once and only ever read, and shares nothing else, so throughput grows with the number of cores and
+ * results are the same as running the pairs one by one.
+ */
+public class ParameterSweep {
+    private final BacktestEngine engine;
+    private final BiFunction<Integer, Integer, Strategy> strategyFactory;
+
+    /**
+     * @param strategyFactory creates a fresh strategy for a (period1, period2) pair
+     */
+    public ParameterSweep(BacktestEngine engine, BiFunction<Integer, Integer, Strategy> strategyFactory) {
+        this.engine = engine;
+        this.strategyFactory = strategyFactory;
+    }
+
+    /**
+     * Sweeps on the common fork-join pool.
+     */
+    public BacktestResult[][] run(int[] period1s, int[] period2s) {
+        return run(period1s, period2s, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @return results indexed like the periods, [period1 index][period2 index]; null for pairs whose
+     * period1 is not shorter than their period2, which are not run
+     */
+    public BacktestResult[][] run(int[] period1s, int[] period2s, ForkJoinPool pool) {
+        BacktestResult[][] results = new BacktestResult[period1s.length][period2s.length];
+        pool.invoke(new SweepTask(period1s, period2s, results, 0, period1s.length * period2s.length));
+        return results;
+    }
+
+    /**
+     * Runs the grid cells in [from, to), in row-major order, halving the range until one cell is left.
+     */
+    private class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] period1s;
+        private final int[] period2s;
+        private final BacktestResult[][] results;
+        private final int from;
+        private final int to;
+
+        SweepTask(int[] period1s, int[] period2s, BacktestResult[][] results, int from, int to) {
+            this.period1s = period1s;
+            this.period2s = period2s;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SweepTask(period1s, period2s, results, from, middle),
+                        new SweepTask(period1s, period2s, results, middle, to));
+                return;
+            }
+            if (from == to) {
+                return;
+            }
+            int i = from / period2s.length;
+            int j = from % period2s.length;
+            if (period1s[i] >= period2s[j]) {
+                return;
+            }
+            results[i][j] = engine.run(strategyFactory.apply(period1s[i], period2s[j]));
+        }
+    }
+}
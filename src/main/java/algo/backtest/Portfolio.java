@@ -0,0 +1,80 @@
+package algo.backtest;
+
+/**
+ * Position, cash and running statistics of a backtest, starting flat with no cash. Equity is cash plus
+ * the position marked at the last price, so it is also the PnL so far.
+ */
+public class Portfolio {
+    private double position;
+    private double cash;
+    private double fees;
+    private double turnover;
+    private int tradeCount;
+    private double equity;
+    private double peakEquity;
+    private double maxDrawdown;
+
+    /**
+     * Books a fill.
+     *
+     * @param qty      quantity bought, or sold if negative
+     * @param notional price times quantity of the fill, signed like qty
+     * @param fee      fee paid on the fill
+     */
+    public void onFill(double qty, double notional, double fee) {
+        position += qty;
+        cash -= notional + fee;
+        fees += fee;
+        turnover += notional < 0.0 ? -notional : notional;
+        tradeCount++;
+    }
+
+    /**
+     * Marks the position at a price, updating equity and drawdown.
+     */
+    public void mark(double price) {
+        equity = cash + position * price;
+        if (equity > peakEquity) {
+            peakEquity = equity;
+        } else if (peakEquity - equity > maxDrawdown) {
+            maxDrawdown = peakEquity - equity;
+        }
+    }
+
+    public double getPosition() {
+        return position;
+    }
+
+    public double getCash() {
+        return cash;
+    }
+
+    /**
+     * @return cash plus the position at the last mark price
+     */
+    public double getEquity() {
+        return equity;
+    }
+
+    public double getFees() {
+        return fees;
+    }
+
+    /**
+     * @return the total notional traded, buys and sells alike
+     */
+    public double getTurnover() {
+        return turnover;
+    }
+
+    public int getTradeCount() {
+        return tradeCount;
+    }
+
+    /**
+     * @return the largest fall of equity from a previous peak
+     */
+    public double getMaxDrawdown() {
+        return maxDrawdown;
+    }
+}
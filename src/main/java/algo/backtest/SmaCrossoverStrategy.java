@@ -0,0 +1,72 @@
+package algo.backtest;
+
+import algo.Math;
+import algo.SimpleMovingAverage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-or-flat moving average crossover on the quantity-weighted top of book, the price
+ * {@link algo.AnalyticManager} tracks: both averages sample the price on the same timer, and the
+ * strategy holds a fixed quantity while the fast average is above the slow one and nothing otherwise.
+ */
+public class SmaCrossoverStrategy implements Strategy {
+    private final int period1;
+    private final int period2;
+    private final long sampleMillis;
+    private final double orderQty;
+    private final SimpleMovingAverage sma1;
+    private final SimpleMovingAverage sma2;
+
+    /**
+     * @param period1      samples in the fast average
+     * @param period2      samples in the slow average
+     * @param sampleMillis time between samples
+     * @param orderQty     quantity held while long
+     */
+    public SmaCrossoverStrategy(int period1, int period2, long sampleMillis, double orderQty) {
+        this.period1 = period1;
+        this.period2 = period2;
+        this.sampleMillis = sampleMillis;
+        this.orderQty = orderQty;
+        this.sma1 = new SimpleMovingAverage(period1);
+        this.sma2 = new SimpleMovingAverage(period2);
+    }
+
+    @Override
+    public void start(StrategyContext context) {
+        context.schedulePeriodic(() -> sample(context), sampleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void sample(StrategyContext context) {
+        if (context.getOrderBook().getAsks().isEmpty() || context.getOrderBook().getBids().isEmpty()) {
+            return;
+        }
+        double price = Math.weightedAverage(context.getOrderBook());
+        sma1.addValue(price);
+        sma2.addValue(price);
+        double fast = sma1.getMovingAverage();
+        double slow = sma2.getMovingAverage();
+        if (fast == -1 || slow == -1) {
+            return;
+        }
+        double target = fast > slow ? orderQty : 0.0;
+        double delta = target - context.getPortfolio().getPosition();
+        if (delta != 0.0) {
+            context.submitMarketOrder(delta);
+        }
+    }
+
+    public int getPeriod1() {
+        return period1;
+    }
+
+    public int getPeriod2() {
+        return period2;
+    }
+
+    @Override
+    public String toString() {
+        return "SMA(" + period1 + "/" + period2 + ")";
+    }
+}
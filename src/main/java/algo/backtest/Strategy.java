@@ -0,0 +1,21 @@
+package algo.backtest;
+
+import source.data.LocalOrderBook;
+
+/**
+ * Trading logic run by a {@link BacktestEngine}. A strategy acts on order book updates and on the
+ * timers it schedules through its {@link StrategyContext}, all on the engine's thread and in replayed
+ * time, so it needs no synchronization and gives the same result on every run.
+ */
+public interface Strategy {
+    /**
+     * Called once, with the first order book of the replay, before any other callback.
+     */
+    void start(StrategyContext context);
+
+    /**
+     * Called after each depth event is applied to the book.
+     */
+    default void onOrderBook(LocalOrderBook orderBook, StrategyContext context) {
+    }
+}
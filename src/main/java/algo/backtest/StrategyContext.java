@@ -0,0 +1,37 @@
+package algo.backtest;
+
+import source.data.LocalOrderBook;
+import source.scheduling.Clock;
+import source.scheduling.Timeout;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a {@link Strategy} sees of the backtest it runs in.
+ */
+public interface StrategyContext {
+    /**
+     * @return the replay's clock, at the event time of the last market data event
+     */
+    Clock getClock();
+
+    /**
+     * Runs a task at a fixed rate of replayed time, starting one period from now.
+     */
+    Timeout schedulePeriodic(Runnable task, long period, TimeUnit unit);
+
+    /**
+     * @return the book as of the last depth event
+     */
+    LocalOrderBook getOrderBook();
+
+    Portfolio getPortfolio();
+
+    /**
+     * Sends a market order, filled at once against the current book by the {@link FillSimulator}.
+     *
+     * @param qty quantity to buy, or to sell if negative
+     * @return the quantity filled, signed like qty; less than asked if the book is too thin
+     */
+    double submitMarketOrder(double qty);
+}
@@ -0,0 +1,49 @@
+package messaging;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blocks waiting consumers on a condition. Uses no CPU while idle, like the blocking queue it
+ * replaces; producers only take the lock when a consumer is actually waiting.
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+    private final Lock lock = new ReentrantLock();
+    private final Condition processorNotifyCondition = lock.newCondition();
+    private final AtomicBoolean signalNeeded = new AtomicBoolean(false);
+
+    @Override
+    public long waitFor(long sequence, Sequence cursor) throws InterruptedException {
+        long availableSequence = cursor.get();
+        if (availableSequence < sequence) {
+            lock.lock();
+            try {
+                do {
+                    signalNeeded.getAndSet(true);
+                    availableSequence = cursor.get();
+                    if (availableSequence >= sequence) {
+                        break;
+                    }
+                    processorNotifyCondition.await();
+                } while ((availableSequence = cursor.get()) < sequence);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return availableSequence;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        if (signalNeeded.getAndSet(false)) {
+            lock.lock();
+            try {
+                processorNotifyCondition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
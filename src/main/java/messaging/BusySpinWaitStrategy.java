@@ -0,0 +1,22 @@
+package messaging;
+
+/**
+ * Spins on the cursor. Lowest latency, but burns a core per waiting consumer, so only suited to
+ * consumers pinned to cores of their own.
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+    @Override
+    public long waitFor(long sequence, Sequence cursor) throws InterruptedException {
+        long availableSequence;
+        while ((availableSequence = cursor.get()) < sequence) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return availableSequence;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+    }
+}
@@ -0,0 +1,120 @@
+package messaging;
+
+import source.data.LocalOrderBook;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A consumer's view of a conflating broker: one pending slot per key, holding the latest event
+ * published for that key and not consumed yet. Publishing over a pending event replaces it, so the
+ * consumer only ever sees the latest event of each key and never holds producers back.
+ *
+ * Keys with a pending event are queued, in the order they first became pending, on a ring buffer of
+ * key numbers private to the cursor. A key is only queued when its slot goes from empty to pending,
+ * and at most one queued occurrence of a key is waiting at any time, so the ring never fills.
+ */
+final class ConflatingEventCursor<T> extends EventCursor<T> {
+    private final EventBroker<T> broker;
+    private final AtomicReferenceArray<T> pendingEvents;
+    private final RingBuffer<Integer> pendingKeys;
+    private final SequencedEventCursor<Integer> keyCursor;
+    /**
+     * Boxed key numbers, so that queueing a key allocates nothing.
+     */
+    private final Integer[] keys;
+    private final KeyHandler keyHandler = new KeyHandler();
+
+    ConflatingEventCursor(EventBroker<T> broker, int keyCount, WaitStrategy waitStrategy) {
+        this.broker = broker;
+        this.pendingEvents = new AtomicReferenceArray<>(keyCount);
+        // A key consumed in a batch still holds its ring slot until the batch ends, while it may
+        // already be pending again: twice the key count always fits
+        this.pendingKeys = new RingBuffer<>(Integer.highestOneBit(Math.max(keyCount, 1) * 4 - 1), waitStrategy);
+        this.keyCursor = new SequencedEventCursor<>(pendingKeys);
+        this.keys = new Integer[keyCount];
+        for (int key = 0; key < keyCount; key++) {
+            keys[key] = key;
+        }
+    }
+
+    /**
+     * Makes an event the pending event of its key, releasing the event it replaces. Called by
+     * producers, possibly concurrently.
+     */
+    void offer(int key, T event) throws InterruptedException {
+        T replaced = pendingEvents.getAndSet(key, event);
+        if (replaced == null) {
+            long sequence = pendingKeys.next();
+            pendingKeys.publish(sequence, keys[key]);
+        } else if (replaced instanceof LocalOrderBook) {
+            ((LocalOrderBook) replaced).release();
+        }
+    }
+
+    @Override
+    public T get() throws InterruptedException {
+        while (true) {
+            T event = pendingEvents.getAndSet(keyCursor.get(), null);
+            if (event != null) {
+                return event;
+            }
+        }
+    }
+
+    @Override
+    public int consumeBatch(EventHandler<T> handler) throws InterruptedException {
+        keyHandler.handler = handler;
+        try {
+            return keyCursor.consumeBatch(keyHandler);
+        } finally {
+            keyHandler.handler = null;
+        }
+    }
+
+    @Override
+    public int poll(EventHandler<T> handler) throws InterruptedException {
+        keyHandler.handler = handler;
+        try {
+            return keyCursor.poll(keyHandler);
+        } finally {
+            keyHandler.handler = null;
+        }
+    }
+
+    @Override
+    public long getBacklog() {
+        return keyCursor.getBacklog();
+    }
+
+    @Override
+    long getPublishNanos(long sequence) {
+        return pendingKeys.getPublishNanos(sequence);
+    }
+
+    @Override
+    public void close() {
+        broker.removeConflatingCursor(this);
+        for (int key = 0; key < pendingEvents.length(); key++) {
+            T event = pendingEvents.getAndSet(key, null);
+            if (event instanceof LocalOrderBook) {
+                ((LocalOrderBook) event).release();
+            }
+        }
+        keyCursor.close();
+    }
+
+    /**
+     * Takes the pending event of each queued key and hands it to the consumer's handler.
+     */
+    private final class KeyHandler implements EventHandler<Integer> {
+        private EventHandler<T> handler;
+
+        @Override
+        public void onEvent(Integer key, long sequence, boolean endOfBatch) throws InterruptedException {
+            T event = pendingEvents.getAndSet(key, null);
+            if (event != null) {
+                handler.onEvent(event, sequence, endOfBatch);
+            }
+        }
+    }
+}
@@ -1,59 +1,333 @@
 package messaging;
 
 import source.data.LocalOrderBook;
-import source.scheduling.ScheduleEvent;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
+/**
+ * Fans events of one type out from producers to any number of consumers through a {@link RingBuffer}.
+ *
+ * Publishing claims a slot and stores the event without locking. Each consumer reads the whole
+ * stream through its own {@link EventCursor}, and a slow consumer only stalls producers once it falls
+ * a whole ring behind. {@link #get()} and the batch methods read through the broker's own cursor,
+ * opened on first use, and must be called from a single consumer thread.
+ *
+ * A {@link #conflating(int, ToIntFunction, WaitStrategy) conflating} broker instead keeps, per cursor,
+ * only the latest unconsumed event of each key, e.g. the latest book of each symbol: producers never
+ * wait, and a slow consumer skips the intermediate events rather than queueing them.
+ *
+ * A broker created with an event factory preallocates its events instead: producers fill the slot
+ * they claim in place with {@link #publishEvent(EventTranslator, Object)}, and consumers must not
+ * keep the events they are handed, which are reused once every cursor has moved past them.
+ *
+ * Order book snapshots are reference counted: each is published with one reference per open cursor,
+ * and every consumer releases the snapshots it receives. Snapshots a conflating broker replaces
+ * before they are consumed are released for their consumer.
+ */
 public class EventBroker<T> {
-    private BlockingQueue<T> eventQueue = new ArrayBlockingQueue<T>(1024);
-    private List<EventListener> listenerList = new ArrayList<>();
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
 
+    private static final ConflatingEventCursor<?>[] NO_CONFLATING_CURSORS = new ConflatingEventCursor<?>[0];
+
+    private static final EventHandler<?>[] NO_HANDLERS = new EventHandler<?>[0];
+
+    /**
+     * Type of the events, which binds listeners to their handler for it; null for brokers that only
+     * serve cursors.
+     */
+    private final EventType<T> type;
+    private final RingBuffer<T> ringBuffer;
+    private final WaitStrategy waitStrategy;
+    /**
+     * Key of each event for a conflating broker, null otherwise.
+     */
+    private final ToIntFunction<T> keyFunction;
+    private final int keyCount;
+    private final boolean preallocated;
+    @SuppressWarnings("unchecked")
+    private volatile ConflatingEventCursor<T>[] conflatingCursors = (ConflatingEventCursor<T>[]) NO_CONFLATING_CURSORS;
+    private EventCursor<T> defaultCursor;
+    private final Map<EventListener, EventCursor<T>> listenerCursors = new LinkedHashMap<>();
+    /**
+     * Handlers bound to the listeners, in the order they were added.
+     */
+    @SuppressWarnings("unchecked")
+    private volatile EventHandler<T>[] listenerHandlers = (EventHandler<T>[]) NO_HANDLERS;
+
+    public EventBroker() {
+        this(DEFAULT_BUFFER_SIZE, new BlockingWaitStrategy());
+    }
+
+    /**
+     * Creates a broker that is only read through cursors, without listeners.
+     *
+     * @param bufferSize   number of events consumers can fall behind before producers wait, a power of two
+     * @param waitStrategy how consumers wait for events
+     */
+    public EventBroker(int bufferSize, WaitStrategy waitStrategy) {
+        this(null, bufferSize, waitStrategy);
+    }
+
+    /**
+     * @param type         type of the events, which listeners are bound to
+     * @param bufferSize   number of events consumers can fall behind before producers wait, a power of two
+     * @param waitStrategy how consumers wait for events
+     */
+    public EventBroker(EventType<T> type, int bufferSize, WaitStrategy waitStrategy) {
+        this(type, bufferSize, waitStrategy, null);
+    }
+
+    /**
+     * @param eventFactory creates the preallocated event of each slot, or null for a broker that
+     *                     publishes event references
+     */
+    public EventBroker(EventType<T> type, int bufferSize, WaitStrategy waitStrategy, Supplier<T> eventFactory) {
+        this(type, new RingBuffer<>(bufferSize, waitStrategy, eventFactory), waitStrategy, null, 0,
+                eventFactory != null);
+    }
+
+    private EventBroker(EventType<T> type, RingBuffer<T> ringBuffer, WaitStrategy waitStrategy,
+                        ToIntFunction<T> keyFunction, int keyCount, boolean preallocated) {
+        this.type = type;
+        this.preallocated = preallocated;
+        this.ringBuffer = ringBuffer;
+        this.waitStrategy = waitStrategy;
+        this.keyFunction = keyFunction;
+        this.keyCount = keyCount;
+    }
+
+    /**
+     * Creates a broker that only keeps the latest unconsumed event of each key for each cursor.
+     *
+     * @param keyCount    number of keys, which range from 0 to keyCount - 1
+     * @param keyFunction key of an event, e.g. the symbol id of an order book
+     */
+    public static <T> EventBroker<T> conflating(int keyCount, ToIntFunction<T> keyFunction,
+                                                WaitStrategy waitStrategy) {
+        return conflating(null, keyCount, keyFunction, waitStrategy);
+    }
+
+    /**
+     * Creates a conflating broker whose events listeners are bound to.
+     */
+    public static <T> EventBroker<T> conflating(EventType<T> type, int keyCount, ToIntFunction<T> keyFunction,
+                                                WaitStrategy waitStrategy) {
+        return new EventBroker<>(type, null, waitStrategy, keyFunction, keyCount, false);
+    }
+
+    /**
+     * @return the type of the events, null if the broker has no listeners
+     */
+    public EventType<T> getType() {
+        return type;
+    }
+
+    public boolean isConflating() {
+        return keyFunction != null;
+    }
+
+    /**
+     * Publishes a reference to an event.
+     *
+     * @throws UnsupportedOperationException if the broker's events are preallocated
+     */
     public void addEvent(T event) throws InterruptedException {
-        eventQueue.put(event);
+        if (preallocated) {
+            throw new UnsupportedOperationException("Preallocated events are published with publishEvent");
+        }
+        if (isConflating()) {
+            addConflatedEvent(event);
+            return;
+        }
+        long sequence = ringBuffer.next();
+        // Cursors opened after the claim never see the event, so they are not counted
+        retainForConsumers(event, ringBuffer.getGatingSequenceCount());
+        ringBuffer.publish(sequence, event);
+    }
+
+    /**
+     * Claims the next preallocated event, fills it in place with the translator and publishes it.
+     *
+     * @throws UnsupportedOperationException if the broker's events are not preallocated
+     */
+    public <A> void publishEvent(EventTranslator<T, A> translator, A arg) throws InterruptedException {
+        if (!preallocated) {
+            throw new UnsupportedOperationException("Only preallocated events are filled in place");
+        }
+        long sequence = ringBuffer.next();
+        try {
+            translator.translateTo(ringBuffer.get(sequence), arg);
+        } finally {
+            // A claimed sequence must always be published, or consumers would stall behind it
+            ringBuffer.publish(sequence);
+        }
+    }
+
+    public boolean isPreallocated() {
+        return preallocated;
+    }
+
+    private void addConflatedEvent(T event) throws InterruptedException {
+        int key = keyFunction.applyAsInt(event);
+        if (key < 0 || key >= keyCount) {
+            throw new IllegalArgumentException("Event key " + key + " is outside [0, " + keyCount + ")");
+        }
+        ConflatingEventCursor<T>[] cursors = conflatingCursors;
+        retainForConsumers(event, cursors.length);
+        for (ConflatingEventCursor<T> cursor : cursors) {
+            cursor.offer(key, event);
+        }
+    }
+
+    /**
+     * Gives an order book snapshot one reference per consumer it is handed to.
+     */
+    private void retainForConsumers(T event, int consumers) {
+        if (event instanceof LocalOrderBook) {
+            if (consumers == 0) {
+                ((LocalOrderBook) event).release();
+            } else {
+                ((LocalOrderBook) event).retain(consumers - 1);
+            }
+        }
+    }
+
+    /**
+     * Opens a cursor that sees every event published from now on.
+     */
+    public EventCursor<T> newCursor() {
+        if (!isConflating()) {
+            return new SequencedEventCursor<>(ringBuffer);
+        }
+        ConflatingEventCursor<T> cursor = new ConflatingEventCursor<>(this, keyCount, waitStrategy);
+        synchronized (this) {
+            ConflatingEventCursor<T>[] cursors = Arrays.copyOf(conflatingCursors, conflatingCursors.length + 1);
+            cursors[cursors.length - 1] = cursor;
+            conflatingCursors = cursors;
+        }
+        return cursor;
+    }
+
+    synchronized void removeConflatingCursor(ConflatingEventCursor<T> cursor) {
+        ConflatingEventCursor<T>[] cursors = conflatingCursors;
+        for (int i = 0; i < cursors.length; i++) {
+            if (cursors[i] == cursor) {
+                ConflatingEventCursor<T>[] updated = Arrays.copyOf(cursors, cursors.length - 1);
+                System.arraycopy(cursors, i + 1, updated, i, cursors.length - i - 1);
+                conflatingCursors = updated;
+                return;
+            }
+        }
     }
 
     public void broadcast() throws InterruptedException {
-        if (eventQueue.isEmpty()) {
+        if (poll((event, sequence, endOfBatch) -> sendToListeners(event)) == 0) {
             System.out.println("No events to broadcast.");
-        } else {
-            while (!eventQueue.isEmpty()) {
-                T event = eventQueue.remove();
-                sendToListeners(event);
-            }
         }
     }
 
+    /**
+     * Hands an event to every listener on the calling thread, through the handlers bound when they
+     * were added.
+     */
     public void sendToListeners(T event) throws InterruptedException {
-        for (EventListener listener : listenerList) {
-            if (event instanceof LocalOrderBook) {
-                listener.handleEvent((LocalOrderBook) event);
-            } else if (event instanceof ScheduleEvent) {
-                listener.handleEvent((ScheduleEvent) event);
-            }
+        EventHandler<T>[] handlers = listenerHandlers;
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].onEvent(event, -1L, true);
         }
     }
 
-    public void addListener(EventListener listener) {
-        if (!listenerList.contains(listener)) {
-            listenerList.add(listener);
+    /**
+     * Binds a listener to the broker's event type and opens a cursor for it, which
+     * {@link EventManager#addListener(EventListener)} drains on the listener's own thread.
+     *
+     * @return the listener's cursor
+     * @throws IllegalStateException if the broker has no event type
+     */
+    public synchronized EventCursor<T> addListener(EventListener listener) {
+        if (type == null) {
+            throw new IllegalStateException("Listeners need a broker created with an event type");
+        }
+        EventCursor<T> cursor = listenerCursors.get(listener);
+        if (cursor == null) {
+            cursor = newCursor();
+            listenerCursors.put(listener, cursor);
+            EventHandler<T>[] handlers = Arrays.copyOf(listenerHandlers, listenerHandlers.length + 1);
+            handlers[handlers.length - 1] = type.bind(listener);
+            listenerHandlers = handlers;
         } else {
             System.out.println("Listener already exists in list.");
         }
+        return cursor;
     }
 
-    public void removeListener(EventListener listener) {
-        if (listenerList.contains(listener)) {
-            listenerList.remove(listener);
+    /**
+     * Closes a listener's cursor. Whatever drains it must have stopped.
+     */
+    public synchronized void removeListener(EventListener listener) {
+        EventCursor<T> cursor = listenerCursors.remove(listener);
+        if (cursor != null) {
+            cursor.close();
+            rebindListeners();
         } else {
             System.out.println("Listener does not exist in list");
         }
     }
 
+    private void rebindListeners() {
+        @SuppressWarnings("unchecked")
+        EventHandler<T>[] handlers = (EventHandler<T>[]) new EventHandler<?>[listenerCursors.size()];
+        int i = 0;
+        for (EventListener listener : listenerCursors.keySet()) {
+            handlers[i++] = type.bind(listener);
+        }
+        listenerHandlers = handlers;
+    }
+
+    /**
+     * Takes the next event through the broker's own cursor, waiting for one to be published if necessary.
+     */
     public T get() throws InterruptedException {
-        return eventQueue.take();
+        return getDefaultCursor().get();
+    }
+
+    /**
+     * Waits for at least one event, then passes the handler every event published so far.
+     *
+     * @return the number of events handled
+     */
+    public int consumeBatch(EventHandler<T> handler) throws InterruptedException {
+        return getDefaultCursor().consumeBatch(handler);
+    }
+
+    /**
+     * Passes the handler every event published so far, without waiting.
+     *
+     * @return the number of events handled, zero if none were pending
+     */
+    public int poll(EventHandler<T> handler) throws InterruptedException {
+        return getDefaultCursor().poll(handler);
+    }
+
+    /**
+     * @return the number of published events not consumed yet through the broker's own cursor
+     */
+    public long getBacklog() {
+        return getDefaultCursor().getBacklog();
+    }
+
+    /**
+     * The broker's own cursor is only opened once used, so that a broker read solely through listener
+     * cursors is never gated by it.
+     */
+    private EventCursor<T> getDefaultCursor() {
+        if (defaultCursor == null) {
+            defaultCursor = newCursor();
+        }
+        return defaultCursor;
     }
 }
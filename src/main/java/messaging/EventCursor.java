@@ -0,0 +1,51 @@
+package messaging;
+
+/**
+ * One consumer's view of an {@link EventBroker}, opened with {@link EventBroker#newCursor()}.
+ *
+ * Cursors are independent of each other: every cursor sees the broker's whole stream, or for a
+ * conflating broker the latest event of every key. A cursor must only be read from one thread at a
+ * time, and closed once its consumer stops reading.
+ */
+public abstract class EventCursor<T> {
+    EventCursor() {
+    }
+
+    /**
+     * Takes the next event, waiting for one to be published if necessary. The event stays valid until
+     * the cursor is read again: on brokers of preallocated events, its slot is only released for
+     * reuse by the next read.
+     */
+    public abstract T get() throws InterruptedException;
+
+    /**
+     * Waits for at least one event, then passes the handler every event published so far.
+     *
+     * @return the number of events handled
+     */
+    public abstract int consumeBatch(EventHandler<T> handler) throws InterruptedException;
+
+    /**
+     * Passes the handler every event published so far, without waiting.
+     *
+     * @return the number of events handled, zero if none were pending
+     */
+    public abstract int poll(EventHandler<T> handler) throws InterruptedException;
+
+    /**
+     * @return the number of events waiting to be consumed
+     */
+    public abstract long getBacklog();
+
+    /**
+     * @param sequence the sequence of an event being handled
+     * @return the {@link System#nanoTime()} at which it was published, or for a conflated event at
+     * which its key became pending
+     */
+    abstract long getPublishNanos(long sequence);
+
+    /**
+     * Stops receiving events. The cursor must not be read afterwards.
+     */
+    public abstract void close();
+}
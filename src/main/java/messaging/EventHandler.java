@@ -0,0 +1,13 @@
+package messaging;
+
+/**
+ * Consumes events from an {@link EventBroker} in batches.
+ */
+public interface EventHandler<T> {
+    /**
+     * @param sequence   position of the event in the broker's ring buffer
+     * @param endOfBatch true for the last event currently available, where batched work such as
+     *                   recomputing on the latest state is best done
+     */
+    void onEvent(T event, long sequence, boolean endOfBatch) throws InterruptedException;
+}
@@ -1,9 +1,18 @@
 package messaging;
 
 import source.data.LocalOrderBook;
+import source.data.TradeEvent;
 import source.scheduling.ScheduleEvent;
 
+/**
+ * Receives events on its own thread once added to an {@link EventManager}. Order book snapshots must
+ * be released once the listener no longer needs them; trade and schedule events are reused by the
+ * bus after the call, so anything kept from them must be copied.
+ */
 public interface EventListener {
     void handleEvent(LocalOrderBook orderBook);
     void handleEvent(ScheduleEvent timer);
+
+    default void handleEvent(TradeEvent trade) {
+    }
 }
@@ -1,47 +1,138 @@
 package messaging;
 
-import com.binance.api.client.domain.event.AggTradeEvent;
 import source.data.LocalOrderBook;
+import source.data.TradeEvent;
 import source.scheduling.ScheduleEvent;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class EventManager {
-    private EventBroker<LocalOrderBook> orderBookBroker = new EventBroker<>();
-    private EventBroker<AggTradeEvent> aggTradeBroker = new EventBroker<>();
-    private EventBroker<ScheduleEvent> scheduleEventBroker = new EventBroker<>();
+    private static final EventTranslator<TradeEvent, TradeEvent> COPY_TRADE = TradeEvent::copyFrom;
+    private static final EventTranslator<ScheduleEvent, ScheduleEvent> COPY_SCHEDULE = ScheduleEvent::copyFrom;
+
+    private final EventBroker<LocalOrderBook> orderBookBroker;
+    private final EventBroker<TradeEvent> aggTradeBroker;
+    private final EventBroker<ScheduleEvent> scheduleEventBroker;
+    private final EventBroker<?>[] brokers;
+    private final Map<EventListener, ListenerThread> listenerThreads = new HashMap<>();
+
+    /**
+     * Creates brokers whose consumers block while waiting for events.
+     */
+    public EventManager() {
+        this(EventBroker.DEFAULT_BUFFER_SIZE, new BlockingWaitStrategy());
+    }
+
+    /**
+     * @param bufferSize   ring buffer size of each broker, a power of two
+     * @param waitStrategy how consumers wait for events, e.g. a {@link BusySpinWaitStrategy} for
+     *                     consumers with a core of their own
+     */
+    public EventManager(int bufferSize, WaitStrategy waitStrategy) {
+        this(bufferSize, waitStrategy, 0);
+    }
+
+    /**
+     * @param conflatedSymbolCount if positive, order books are conflated by symbol id, which must be
+     *                             below this count: each consumer only sees the latest book of each
+     *                             symbol, and market data never waits for slow consumers
+     */
+    public EventManager(int bufferSize, WaitStrategy waitStrategy, int conflatedSymbolCount) {
+        orderBookBroker = conflatedSymbolCount > 0
+                ? EventBroker.conflating(EventType.ORDER_BOOK, conflatedSymbolCount, LocalOrderBook::getSymbolId, waitStrategy)
+                : new EventBroker<>(EventType.ORDER_BOOK, bufferSize, waitStrategy);
+        aggTradeBroker = new EventBroker<>(EventType.AGG_TRADE, bufferSize, waitStrategy, TradeEvent::new);
+        scheduleEventBroker = new EventBroker<>(EventType.SCHEDULE, bufferSize, waitStrategy, ScheduleEvent::new);
+        brokers = new EventBroker<?>[]{orderBookBroker, aggTradeBroker, scheduleEventBroker};
+    }
 
     public void publish(LocalOrderBook orderBook) throws InterruptedException {
         orderBookBroker.addEvent(orderBook);
     }
 
-    public void publish(AggTradeEvent aggTradeEvent) throws InterruptedException {
-        aggTradeBroker.addEvent(aggTradeEvent);
+    /**
+     * Publishes a copy of a trade. {@link #publishTrade(EventTranslator, Object)} avoids the copy.
+     */
+    public void publish(TradeEvent trade) throws InterruptedException {
+        aggTradeBroker.publishEvent(COPY_TRADE, trade);
     }
 
+    /**
+     * Publishes a trade by filling the next preallocated trade event in place.
+     */
+    public <A> void publishTrade(EventTranslator<TradeEvent, A> translator, A arg) throws InterruptedException {
+        aggTradeBroker.publishEvent(translator, arg);
+    }
+
+    /**
+     * Publishes a copy of a schedule event in the next preallocated one.
+     */
     public void publish(ScheduleEvent timer) throws InterruptedException {
-        scheduleEventBroker.addEvent(timer);
+        scheduleEventBroker.publishEvent(COPY_SCHEDULE, timer);
+    }
+
+    /**
+     * Subscribes a listener to every broker and starts a thread that hands it each event, in publish
+     * order per broker. Every listener sees every event; the slowest one gates publishers.
+     */
+    public synchronized void addListener(EventListener listener) {
+        if (listenerThreads.containsKey(listener)) {
+            System.out.println("Listener already exists in list.");
+            return;
+        }
+        EventPoller poller = new EventPoller();
+        for (EventBroker<?> broker : brokers) {
+            subscribe(poller, broker, listener);
+        }
+        Thread thread = new Thread(poller, "listener-" + listener.getClass().getSimpleName());
+        thread.setDaemon(true);
+        listenerThreads.put(listener, new ListenerThread(poller, thread));
+        thread.start();
     }
 
-    void addListener(EventListener listener) {
-        orderBookBroker.addListener(listener);
-        aggTradeBroker.addListener(listener);
-        scheduleEventBroker.addListener(listener);
+    /**
+     * Stops a listener's thread and unsubscribes it. Waits for the thread to finish, unless called by
+     * the listener itself.
+     */
+    public synchronized void removeListener(EventListener listener) throws InterruptedException {
+        ListenerThread listenerThread = listenerThreads.remove(listener);
+        if (listenerThread == null) {
+            System.out.println("Listener does not exist in list");
+            return;
+        }
+        listenerThread.poller.halt();
+        if (Thread.currentThread() != listenerThread.thread) {
+            listenerThread.thread.join();
+        }
+        for (EventBroker<?> broker : brokers) {
+            broker.removeListener(listener);
+        }
     }
 
-    void removeListener(EventListener listener) {
-        orderBookBroker.removeListener(listener);
-        aggTradeBroker.removeListener(listener);
-        scheduleEventBroker.removeListener(listener);
+    private static <T> void subscribe(EventPoller poller, EventBroker<T> broker, EventListener listener) {
+        poller.add(broker.addListener(listener), broker.getType().bind(listener));
     }
 
     public EventBroker<LocalOrderBook> getOrderBookBroker() {
         return orderBookBroker;
     }
 
-    public EventBroker<AggTradeEvent> getAggTradeBroker() {
+    public EventBroker<TradeEvent> getAggTradeBroker() {
         return aggTradeBroker;
     }
 
     public EventBroker<ScheduleEvent> getScheduleEventBroker() {
         return scheduleEventBroker;
     }
+
+    private static final class ListenerThread {
+        private final EventPoller poller;
+        private final Thread thread;
+
+        private ListenerThread(EventPoller poller, Thread thread) {
+            this.poller = poller;
+            this.thread = thread;
+        }
+    }
 }
@@ -0,0 +1,110 @@
+package messaging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drains several {@link EventCursor}s from one thread, handing each event to the handler registered
+ * with its cursor. Each pass takes every event pending on every cursor, so an event waits at most for
+ * the batch in progress and, when the poller was idle, one park interval. When a pass finds nothing
+ * the poller backs off: spinning, then yielding, then parking briefly between passes.
+ *
+ * The latency from publishing to handling each event is recorded per cursor.
+ */
+public class EventPoller implements Runnable {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long DEFAULT_PARK_NANOS = 100_000L;
+
+    private final List<Subscription<?>> subscriptions = new ArrayList<>();
+    private final long parkNanos;
+    private volatile boolean running = true;
+
+    public EventPoller() {
+        this(DEFAULT_PARK_NANOS);
+    }
+
+    /**
+     * @param parkNanos how long to park between passes once idle
+     */
+    public EventPoller(long parkNanos) {
+        this.parkNanos = parkNanos;
+    }
+
+    /**
+     * Adds a cursor to drain. Must be called before the poller starts running.
+     *
+     * @return the latencies of the events handled from this cursor
+     */
+    public <T> LatencyHistogram add(EventCursor<T> cursor, EventHandler<T> handler) {
+        Subscription<T> subscription = new Subscription<>(cursor, handler);
+        subscriptions.add(subscription);
+        return subscription.latency;
+    }
+
+    /**
+     * Drains every cursor once.
+     *
+     * @return the number of events handled
+     */
+    public int poll() throws InterruptedException {
+        int handled = 0;
+        for (int i = 0; i < subscriptions.size(); i++) {
+            handled += subscriptions.get(i).poll();
+        }
+        return handled;
+    }
+
+    @Override
+    public void run() {
+        int idleCount = 0;
+        try {
+            while (running) {
+                if (poll() > 0) {
+                    idleCount = 0;
+                } else if (idleCount < SPIN_TRIES) {
+                    idleCount++;
+                } else if (idleCount < SPIN_TRIES + YIELD_TRIES) {
+                    idleCount++;
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(parkNanos);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops {@link #run()} after the pass in progress.
+     */
+    public void halt() {
+        running = false;
+    }
+
+    private static final class Subscription<T> implements EventHandler<T> {
+        private final EventCursor<T> cursor;
+        private final EventHandler<T> handler;
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private Subscription(EventCursor<T> cursor, EventHandler<T> handler) {
+            this.cursor = cursor;
+            this.handler = handler;
+        }
+
+        private int poll() throws InterruptedException {
+            return cursor.poll(this);
+        }
+
+        @Override
+        public void onEvent(T event, long sequence, boolean endOfBatch) throws InterruptedException {
+            latency.record(System.nanoTime() - cursor.getPublishNanos(sequence));
+            handler.onEvent(event, sequence, endOfBatch);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package messaging;
+
+/**
+ * Fills a preallocated event slot in place from an argument, see
+ * {@link EventBroker#publishEvent(EventTranslator, Object)}. Kept in a field rather than written as
+ * a capturing lambda at the call site, a translator costs no allocation per event.
+ */
+public interface EventTranslator<T, A> {
+    void translateTo(T event, A arg);
+}
@@ -0,0 +1,57 @@
+package messaging;
+
+import source.data.LocalOrderBook;
+import source.data.TradeEvent;
+import source.scheduling.ScheduleEvent;
+
+/**
+ * A kind of event carried by an {@link EventBroker}, which knows which {@link EventListener} method
+ * receives it.
+ *
+ * The method is chosen once, when a listener is bound, rather than by testing each event's class:
+ * the handler returned by {@link #bind(EventListener)} calls a single statically resolved overload.
+ * A new kind of event needs a handleEvent overload on {@link EventListener}, as a default method so
+ * that existing listeners are unaffected, and an EventType binding it.
+ */
+public abstract class EventType<T> {
+    public static final EventType<LocalOrderBook> ORDER_BOOK = new EventType<LocalOrderBook>("orderBook") {
+        @Override
+        public EventHandler<LocalOrderBook> bind(EventListener listener) {
+            return (orderBook, sequence, endOfBatch) -> listener.handleEvent(orderBook);
+        }
+    };
+
+    public static final EventType<TradeEvent> AGG_TRADE = new EventType<TradeEvent>("aggTrade") {
+        @Override
+        public EventHandler<TradeEvent> bind(EventListener listener) {
+            return (trade, sequence, endOfBatch) -> listener.handleEvent(trade);
+        }
+    };
+
+    public static final EventType<ScheduleEvent> SCHEDULE = new EventType<ScheduleEvent>("schedule") {
+        @Override
+        public EventHandler<ScheduleEvent> bind(EventListener listener) {
+            return (timer, sequence, endOfBatch) -> listener.handleEvent(timer);
+        }
+    };
+
+    private final String name;
+
+    protected EventType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return a handler passing events of this type to the listener's method for them
+     */
+    public abstract EventHandler<T> bind(EventListener listener);
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
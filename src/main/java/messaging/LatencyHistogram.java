@@ -0,0 +1,75 @@
+package messaging;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of latencies in nanoseconds, in power-of-two buckets: bucket n counts latencies in
+ * [2^(n-1), 2^n). Recording is a few instructions and allocates nothing.
+ *
+ * Only one thread records; other threads may read it while it does, and then see figures that are
+ * slightly out of step with each other.
+ */
+public class LatencyHistogram {
+    private final long[] buckets = new long[64];
+    private volatile long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[64 - Long.numberOfLeadingZeros(nanos)]++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+        count++;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanNanos() {
+        long n = count;
+        return n == 0 ? 0.0 : (double) totalNanos / n;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return an upper bound of the given percentile, within a factor of two
+     */
+    public long getPercentileNanos(double percentile) {
+        long n = count;
+        if (n == 0) {
+            return 0L;
+        }
+        long rank = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= rank) {
+                return bucket == 0 ? 0L : Math.min((1L << bucket) - 1, maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    public void reset() {
+        Arrays.fill(buckets, 0L);
+        totalNanos = 0L;
+        maxNanos = 0L;
+        count = 0L;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.0fns p50<=%dns p99<=%dns max=%dns",
+                getCount(), getMeanNanos(), getPercentileNanos(50), getPercentileNanos(99), getMaxNanos());
+    }
+}
@@ -0,0 +1,233 @@
+package messaging;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Preallocated multi-producer ring of events, after the LMAX Disruptor.
+ *
+ * Producers claim a sequence with {@link #next()}, a CAS on the cursor, store their event in its slot
+ * and {@link #publish(long, Object)} it, which flags the slot as available for the sequence's lap of
+ * the ring. Consumers each track their progress in a {@link Sequence} registered as a gating
+ * sequence: a producer never claims a slot that the slowest of them has not consumed yet, and
+ * consumers wait for published sequences through the ring's {@link WaitStrategy}.
+ *
+ * A ring created with an event factory is preallocated with one event object per slot: producers
+ * fill the slot of the sequence they claimed in place with {@link #get(long)} and then
+ * {@link #publish(long)} it, and the object is reused once every consumer has moved past it.
+ *
+ * Nothing is allocated and no lock is taken on the publish path, unless a consumer is blocked in a
+ * {@link BlockingWaitStrategy}.
+ */
+public class RingBuffer<T> {
+    private static final Sequence[] NO_SEQUENCES = new Sequence[0];
+
+    private final Object[] entries;
+    /**
+     * {@link System#nanoTime()} at which the event in each slot was published.
+     */
+    private final long[] publishNanos;
+    private final int bufferSize;
+    private final int indexMask;
+    private final int indexShift;
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * Highest sequence claimed by a producer. Claimed sequences are not necessarily published yet.
+     */
+    private final Sequence cursor = new Sequence(-1L);
+    /**
+     * Minimum gating sequence seen by the last producer that had to check it.
+     */
+    private final Sequence gatingSequenceCache = new Sequence(-1L);
+    /**
+     * Lap number of the sequence last published in each slot, -1 before the first lap.
+     */
+    private final AtomicIntegerArray availableBuffer;
+    private volatile Sequence[] gatingSequences = NO_SEQUENCES;
+
+    /**
+     * @param bufferSize number of slots, a power of two
+     */
+    public RingBuffer(int bufferSize, WaitStrategy waitStrategy) {
+        this(bufferSize, waitStrategy, null);
+    }
+
+    /**
+     * @param bufferSize   number of slots, a power of two
+     * @param eventFactory creates the event object of each slot, or null to publish event references
+     */
+    public RingBuffer(int bufferSize, WaitStrategy waitStrategy, Supplier<T> eventFactory) {
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Buffer size must be a power of two, got " + bufferSize);
+        }
+        this.entries = new Object[bufferSize];
+        this.publishNanos = new long[bufferSize];
+        this.bufferSize = bufferSize;
+        this.indexMask = bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+        this.waitStrategy = waitStrategy;
+        int[] available = new int[bufferSize];
+        Arrays.fill(available, -1);
+        this.availableBuffer = new AtomicIntegerArray(available);
+        if (eventFactory != null) {
+            for (int i = 0; i < bufferSize; i++) {
+                entries[i] = eventFactory.get();
+            }
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return the highest sequence claimed so far, -1 if none
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Claims the next sequence, waiting while the ring is full.
+     *
+     * @throws InterruptedException if interrupted while waiting for a consumer to free a slot
+     */
+    public long next() throws InterruptedException {
+        long current;
+        long next;
+        do {
+            current = cursor.get();
+            next = current + 1;
+            long wrapPoint = next - bufferSize;
+            long cachedGatingSequence = gatingSequenceCache.get();
+            if (wrapPoint > cachedGatingSequence || cachedGatingSequence > current) {
+                long gatingSequence = getMinimumGatingSequence(current);
+                if (wrapPoint > gatingSequence) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    LockSupport.parkNanos(1L);
+                    continue;
+                }
+                gatingSequenceCache.set(gatingSequence);
+            } else if (cursor.compareAndSet(current, next)) {
+                break;
+            }
+        } while (true);
+        return next;
+    }
+
+    /**
+     * Stores an event in the slot of a claimed sequence and makes it visible to consumers.
+     */
+    public void publish(long sequence, T event) {
+        entries[(int) sequence & indexMask] = event;
+        publish(sequence);
+    }
+
+    /**
+     * Makes a claimed sequence, whose preallocated event has been filled in place, visible to consumers.
+     */
+    public void publish(long sequence) {
+        int index = (int) sequence & indexMask;
+        publishNanos[index] = System.nanoTime();
+        // Ordered store: consumers that see the flag also see the entry written before it
+        availableBuffer.lazySet(index, (int) (sequence >>> indexShift));
+        waitStrategy.signalAllWhenBlocking();
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(long sequence) {
+        return (T) entries[(int) sequence & indexMask];
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which a published sequence was published
+     */
+    public long getPublishNanos(long sequence) {
+        return publishNanos[(int) sequence & indexMask];
+    }
+
+    public boolean isAvailable(long sequence) {
+        return availableBuffer.get((int) sequence & indexMask) == (int) (sequence >>> indexShift);
+    }
+
+    /**
+     * Waits until at least the given sequence is published.
+     *
+     * @return the highest sequence published contiguously from the given one
+     */
+    public long waitFor(long sequence) throws InterruptedException {
+        while (true) {
+            long availableSequence = waitStrategy.waitFor(sequence, cursor);
+            long publishedSequence = getHighestPublishedSequence(sequence, availableSequence);
+            if (publishedSequence >= sequence) {
+                return publishedSequence;
+            }
+            // Claimed by a producer that has not published yet, which takes a few instructions
+            Thread.yield();
+        }
+    }
+
+    /**
+     * @return the highest sequence published contiguously from {@code lowerBound}, without waiting;
+     * {@code lowerBound - 1} if that sequence itself is not published yet
+     */
+    public long getHighestPublishedSequence(long lowerBound) {
+        return getHighestPublishedSequence(lowerBound, cursor.get());
+    }
+
+    private long getHighestPublishedSequence(long lowerBound, long availableSequence) {
+        for (long sequence = lowerBound; sequence <= availableSequence; sequence++) {
+            if (!isAvailable(sequence)) {
+                return sequence - 1;
+            }
+        }
+        return availableSequence;
+    }
+
+    /**
+     * Registers a consumer's sequence, so that producers never overwrite what it has not consumed.
+     * The sequence is moved up to the cursor, i.e. the consumer starts with the next event published.
+     */
+    public synchronized void addGatingSequence(Sequence sequence) {
+        Sequence[] updated = Arrays.copyOf(gatingSequences, gatingSequences.length + 1);
+        updated[updated.length - 1] = sequence;
+        sequence.set(cursor.get());
+        gatingSequences = updated;
+        // A producer may have claimed a sequence between reading the cursor and publishing the array
+        sequence.set(cursor.get());
+    }
+
+    public synchronized boolean removeGatingSequence(Sequence sequence) {
+        Sequence[] current = gatingSequences;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == sequence) {
+                Sequence[] updated = new Sequence[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                gatingSequences = updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getGatingSequenceCount() {
+        return gatingSequences.length;
+    }
+
+    /**
+     * @return the sequence of the slowest consumer, or {@code defaultValue} if there are none
+     */
+    private long getMinimumGatingSequence(long defaultValue) {
+        long minimum = defaultValue;
+        for (Sequence sequence : gatingSequences) {
+            minimum = Math.min(minimum, sequence.get());
+        }
+        return minimum;
+    }
+}
@@ -0,0 +1,57 @@
+package messaging;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A sequence number shared between threads, padded onto its own cache line so that producer and
+ * consumer cursors updated by different cores do not falsely share.
+ */
+public class Sequence extends RhsPadding {
+    private static final AtomicLongFieldUpdater<Value> UPDATER =
+            AtomicLongFieldUpdater.newUpdater(Value.class, "value");
+
+    public Sequence() {
+        this(-1L);
+    }
+
+    public Sequence(long initialValue) {
+        UPDATER.lazySet(this, initialValue);
+    }
+
+    public long get() {
+        return value;
+    }
+
+    /**
+     * Ordered store: visible to other threads after every write that precedes it, without the cost
+     * of a full volatile write.
+     */
+    public void set(long value) {
+        UPDATER.lazySet(this, value);
+    }
+
+    public void setVolatile(long value) {
+        this.value = value;
+    }
+
+    public boolean compareAndSet(long expectedValue, long newValue) {
+        return UPDATER.compareAndSet(this, expectedValue, newValue);
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+}
+
+class LhsPadding {
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+class Value extends LhsPadding {
+    protected volatile long value;
+}
+
+class RhsPadding extends Value {
+    protected long p9, p10, p11, p12, p13, p14, p15;
+}
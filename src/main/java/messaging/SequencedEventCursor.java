@@ -0,0 +1,77 @@
+package messaging;
+
+/**
+ * A consumer's position in a ring buffer shared by every consumer of the broker. Every cursor sees
+ * every event published after it was opened, and the broker's producers wait for the slowest open
+ * cursor once it falls a whole ring behind.
+ */
+final class SequencedEventCursor<T> extends EventCursor<T> {
+    private final RingBuffer<T> ringBuffer;
+    /**
+     * Last sequence whose slot producers may reuse.
+     */
+    private final Sequence sequence = new Sequence(-1L);
+    /**
+     * Last sequence handed to the consumer. The event returned by {@link #get()} is still being read
+     * when it returns, so its slot is only released by the next call.
+     */
+    private long consumed = -1L;
+
+    SequencedEventCursor(RingBuffer<T> ringBuffer) {
+        this.ringBuffer = ringBuffer;
+        ringBuffer.addGatingSequence(sequence);
+    }
+
+    @Override
+    public T get() throws InterruptedException {
+        long next = consumed + 1;
+        // The caller is done with the previous event now
+        sequence.set(consumed);
+        ringBuffer.waitFor(next);
+        consumed = next;
+        return ringBuffer.get(next);
+    }
+
+    @Override
+    public int consumeBatch(EventHandler<T> handler) throws InterruptedException {
+        long next = consumed + 1;
+        sequence.set(consumed);
+        return handle(handler, next, ringBuffer.waitFor(next));
+    }
+
+    @Override
+    public int poll(EventHandler<T> handler) throws InterruptedException {
+        long next = consumed + 1;
+        sequence.set(consumed);
+        return handle(handler, next, ringBuffer.getHighestPublishedSequence(next));
+    }
+
+    private int handle(EventHandler<T> handler, long first, long last) throws InterruptedException {
+        long next = first;
+        try {
+            for (; next <= last; next++) {
+                handler.onEvent(ringBuffer.get(next), next, next == last);
+            }
+        } finally {
+            // Also frees the slots of the events handled before a handler failure
+            consumed = next - 1;
+            sequence.set(consumed);
+        }
+        return (int) (last - first + 1);
+    }
+
+    @Override
+    public long getBacklog() {
+        return ringBuffer.getCursor() - consumed;
+    }
+
+    @Override
+    long getPublishNanos(long sequence) {
+        return ringBuffer.getPublishNanos(sequence);
+    }
+
+    @Override
+    public void close() {
+        ringBuffer.removeGatingSequence(sequence);
+    }
+}
@@ -0,0 +1,19 @@
+package messaging;
+
+/**
+ * How a consumer waits for a sequence to be published on a {@link RingBuffer}.
+ */
+public interface WaitStrategy {
+    /**
+     * Waits until the cursor reaches the given sequence.
+     *
+     * @return the cursor value seen, at least the requested sequence
+     */
+    long waitFor(long sequence, Sequence cursor) throws InterruptedException;
+
+    /**
+     * Wakes up consumers blocked in {@link #waitFor(long, Sequence)}, called by producers after each
+     * publish.
+     */
+    void signalAllWhenBlocking();
+}
@@ -0,0 +1,30 @@
+package messaging;
+
+/**
+ * Spins briefly, then yields the CPU between checks. Near busy-spin latency while letting other
+ * threads run when cores are oversubscribed.
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public long waitFor(long sequence, Sequence cursor) throws InterruptedException {
+        long availableSequence;
+        int counter = SPIN_TRIES;
+        while ((availableSequence = cursor.get()) < sequence) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (counter > 0) {
+                counter--;
+            } else {
+                Thread.yield();
+            }
+        }
+        return availableSequence;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+    }
+}
@@ -1,67 +1,143 @@
 package source.data;
 
 import com.binance.api.client.BinanceApiRestClient;
-import com.binance.api.client.BinanceApiWebSocketClient;
 import com.binance.api.client.BinanceApiClientFactory;
+import com.binance.api.client.domain.event.AggTradeEvent;
 import com.binance.api.client.domain.market.AggTrade;
 import com.binance.api.client.domain.market.OrderBook;
 import com.binance.api.client.domain.market.OrderBookEntry;
-import com.binance.api.client.impl.BinanceApiServiceGenerator;
 import messaging.EventManager;
-import websocket.BinanceApiWebSocketClientImplFast;
+import messaging.EventTranslator;
+import websocket.AggTradeUpdate;
+import websocket.DepthUpdate;
 
-import java.math.BigDecimal;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.NavigableMap;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Gateway for receiving depth stream and agg trade prices.
  */
 public class BinanceGateway {
-    private static final String BIDS  = "BIDS";
-    private static final String ASKS  = "ASKS";
+    /**
+     * Depth of the REST snapshots the book is (re)built from, the maximum Binance recommends.
+     */
+    private static final int SNAPSHOT_DEPTH = 1000;
 
-    private long lastUpdateId;
+    /**
+     * Fetches depth snapshots for every gateway, one at a time to stay clear of REST rate limits.
+     */
+    private static final ExecutorService SNAPSHOT_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "depth-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String symbol;
 
     private LocalOrderBook depthCache;
 
+    private final DepthStreamSynchronizer depthSynchronizer;
+
+    private EventManager eventManager;
+
+    /**
+     * Journal appender of the connection carrying this symbol's depth stream, which every snapshot the
+     * depth cache is (re)built from is recorded through, or null when not recording.
+     */
+    private volatile JournalAppender journalAppender;
+
+    /**
+     * Source of the immutable copies of the depth cache that get published to consumers.
+     */
+    private final OrderBookSnapshotPool snapshotPool = new OrderBookSnapshotPool();
+
     /**
-     * Key is the aggregate trade id, and the value contains the aggregated trade data, which is
-     * automatically updated whenever a new agg data stream event arrives.
+     * When false the live depth cache itself is published, and consumers read it through its seqlock.
      */
-    private Map<Long, AggTrade> aggTradesCache;
+    private boolean publishSnapshots = true;
+
+    /**
+     * Key is the aggregate trade id, and the value contains the aggregated trade data. Initialized
+     * from the REST API, and updated whenever a new agg data stream event arrives if
+     * {@link #setAggTradesCacheUpdated(boolean)} is on.
+     */
+    private Map<Long, AggTrade> aggTradesCache = new HashMap<>();
+
+    /**
+     * Off by default: the cache grows by one entry, and two objects, per trade.
+     */
+    private boolean aggTradesCacheUpdated;
+
+    /**
+     * Fills the bus's preallocated trade event from a decoded agg trade, without allocating.
+     */
+    private final EventTranslator<TradeEvent, AggTradeUpdate> tradeTranslator = this::fillTradeEvent;
 
     public BinanceGateway(String symbol) {
-        initializeDepthCache(symbol);
-        initializeAggTradesCache(symbol);
+        this(symbol, new LocalOrderBook());
+    }
+
+    /**
+     * @param depthCache an empty book, laid out for the symbol, that the gateway keeps up to date
+     */
+    public BinanceGateway(String symbol, LocalOrderBook depthCache) {
+        this(symbol, -1, depthCache);
     }
 
     /**
-     * Initializes the depth cache by using the REST API.
+     * @param symbolId   id of the symbol in the caller's {@link SymbolRegistry}, stamped on published books
+     * @param depthCache an empty book, laid out for the symbol, that the gateway keeps up to date
      */
-    private void initializeDepthCache(String symbol) {
+    public BinanceGateway(String symbol, int symbolId, LocalOrderBook depthCache) {
+        this(symbol, symbolId, depthCache, false);
+    }
+
+    /**
+     * @param replay true if the snapshots the depth cache is synchronised from come from a journal,
+     *               through {@link #onSnapshot(DepthSnapshot)}, rather than from the REST API
+     */
+    BinanceGateway(String symbol, int symbolId, LocalOrderBook depthCache, boolean replay) {
+        this.symbol = symbol.toUpperCase();
+        this.depthCache = depthCache;
+        depthCache.setSymbol(this.symbol, symbolId);
+        // When replaying, a snapshot request is answered by the next snapshot in the journal
+        this.depthSynchronizer = replay
+                ? new DepthStreamSynchronizer(this.symbol, () -> null, runnable -> { }, new DepthCacheUpdater())
+                : new DepthStreamSynchronizer(this.symbol, this::fetchDepthSnapshot, SNAPSHOT_EXECUTOR,
+                        new DepthCacheUpdater());
+    }
+
+    /**
+     * Fetches a depth snapshot by using the REST API, parsed into the depth cache's scales. The depth
+     * cache is (re)initialized from it by the depth synchronizer, once the depth stream is running.
+     */
+    private DepthSnapshot fetchDepthSnapshot() {
         BinanceApiClientFactory factory = BinanceApiClientFactory.newInstance();
         BinanceApiRestClient client = factory.newRestClient();
-        OrderBook orderBook = client.getOrderBook(symbol.toUpperCase(), 10);
+        OrderBook orderBook = client.getOrderBook(symbol, SNAPSHOT_DEPTH);
 
-        this.depthCache = new LocalOrderBook();
-        this.lastUpdateId = orderBook.getLastUpdateId();
-
-        NavigableMap<BigDecimal, BigDecimal> asks = new TreeMap<>(Comparator.reverseOrder());
+        int priceScale = depthCache.getPriceScale();
+        int qtyScale = depthCache.getQtyScale();
+        DepthSnapshot snapshot = new DepthSnapshot();
+        snapshot.reset(orderBook.getLastUpdateId());
+        for (OrderBookEntry bid : orderBook.getBids()) {
+            snapshot.addBid(FixedPoint.parse(bid.getPrice(), priceScale), FixedPoint.parse(bid.getQty(), qtyScale));
+        }
         for (OrderBookEntry ask : orderBook.getAsks()) {
-            asks.put(new BigDecimal(ask.getPrice()), new BigDecimal(ask.getQty()));
+            snapshot.addAsk(FixedPoint.parse(ask.getPrice(), priceScale), FixedPoint.parse(ask.getQty(), qtyScale));
         }
-        depthCache.put(ASKS, asks);
+        return snapshot;
+    }
 
-        NavigableMap<BigDecimal, BigDecimal> bids = new TreeMap<>(Comparator.reverseOrder());
-        for (OrderBookEntry bid : orderBook.getBids()) {
-            bids.put(new BigDecimal(bid.getPrice()), new BigDecimal(bid.getQty()));
-        }
-        depthCache.put(BIDS, bids);
+    /**
+     * Records every snapshot the depth cache is loaded from through the appender, so that a journal of
+     * the depth stream also holds the state each book was synchronised from.
+     */
+    void setJournalAppender(JournalAppender journalAppender) {
+        this.journalAppender = journalAppender;
     }
 
     /**
@@ -79,105 +155,198 @@ public class BinanceGateway {
     }
 
     /**
-     * Begins streaming of depth events.
+     * Starts building the depth cache, once depth events for the symbol are being received and fed to
+     * {@link #onDepthUpdate(DepthUpdate)}. The depth cache is built from a snapshot fetched now, and
+     * rebuilt the same way whenever a gap in the stream's update ids is detected.
+     */
+    void startDepthSynchronization(EventManager eventManager) {
+        this.eventManager = eventManager;
+        depthSynchronizer.start();
+    }
+
+    /**
+     * Starts handling depth and agg trade events replayed from a journal, with no REST calls. Depth
+     * events go through the depth synchronizer as they do live, and each snapshot recorded in the
+     * journal is fed to {@link #onSnapshot(DepthSnapshot)} where it was loaded live, so books, gaps and
+     * resyncs play out as they did when recording. Events before the first snapshot stay buffered.
+     */
+    void startReplay(EventManager eventManager) {
+        this.eventManager = eventManager;
+        depthSynchronizer.start();
+    }
+
+    /**
+     * Handles a decoded depth event for this gateway's symbol, whichever connection it arrived on.
      */
-    void startDepthEventStreaming(String symbol, EventManager eventManager) {
-        BinanceApiWebSocketClient client = new BinanceApiWebSocketClientImplFast(
-                BinanceApiServiceGenerator.getSharedClient());
+    void onDepthUpdate(DepthUpdate depthUpdate) {
+        depthSynchronizer.onDepthEvent(depthUpdate);
+    }
 
-        client.onDepthEvent(symbol.toLowerCase(), response -> {
-            if (response.getFinalUpdateId() > lastUpdateId) {
-//                System.out.println(response);
-                lastUpdateId = response.getFinalUpdateId();
-                updateOrderBook(getAsks(), response.getAsks());
-                updateOrderBook(getBids(), response.getBids());
-//                printDepthCache();
+    /**
+     * Handles a depth snapshot replayed from a journal, as the synchronizer handles a fetched one.
+     */
+    void onSnapshot(DepthSnapshot snapshot) {
+        depthSynchronizer.onSnapshot(snapshot);
+    }
 
-                try {
-                    eventManager.publish(depthCache);
-                } catch (InterruptedException ex) {
-                    ex.printStackTrace();
-                }
+    /**
+     * Applies what the depth synchronizer decides to the depth cache, and publishes the result.
+     */
+    private class DepthCacheUpdater implements DepthStreamSynchronizer.Listener {
+        @Override
+        public void onSnapshot(DepthSnapshot snapshot) {
+            JournalAppender appender = journalAppender;
+            if (appender != null) {
+                appender.appendSnapshot(depthCache.getSymbolId(), snapshot);
             }
-        });
+            loadSnapshot(snapshot);
+        }
+
+        @Override
+        public void onDepthEvent(DepthUpdate event) {
+            updateOrderBook(event);
+        }
+
+        @Override
+        public void onBookUpdated() {
+//            printDepthCache();
+            publishDepthCache();
+        }
+    }
+
+    private void publishDepthCache() {
+        try {
+            eventManager.publish(publishSnapshots ? snapshotPool.snapshot(depthCache) : depthCache);
+        } catch (InterruptedException ex) {
+            ex.printStackTrace();
+        }
     }
 
     /**
-     * Begins streaming of agg trades events.
+     * Starts handling agg trades events, once they are being received and fed to
+     * {@link #onAggTrade(AggTradeUpdate)}. The aggTrades cache is first initialized from the REST API.
      */
-    void startAggTradesEventStreaming(String symbol, EventManager eventManager) {
-        BinanceApiClientFactory factory = BinanceApiClientFactory.newInstance();
-        BinanceApiWebSocketClient client = factory.newWebSocketClient();
-
-        client.onAggTradeEvent(symbol.toLowerCase(), response -> {
-            Long aggregatedTradeId = response.getAggregatedTradeId();
-            AggTrade updateAggTrade = aggTradesCache.get(aggregatedTradeId);
-            if (updateAggTrade == null) {
-                // new agg trade
-                updateAggTrade = new AggTrade();
+    void startAggTrades(EventManager eventManager) {
+        this.eventManager = eventManager;
+        initializeAggTradesCache(symbol);
+    }
+
+    /**
+     * Handles a decoded agg trade event for this gateway's symbol.
+     */
+    void onAggTrade(AggTradeUpdate aggTrade) {
+        if (aggTradesCacheUpdated) {
+            cacheAggTrade(aggTrade);
+        }
+        try {
+            eventManager.publishTrade(tradeTranslator, aggTrade);
+        } catch (InterruptedException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void fillTradeEvent(TradeEvent trade, AggTradeUpdate aggTrade) {
+        trade.setSymbol(symbol, depthCache.getSymbolId());
+        trade.setScales(depthCache.getPriceScale(), depthCache.getQtyScale());
+        trade.setEventTime(aggTrade.getEventTime());
+        trade.setAggregatedTradeId(aggTrade.getAggregatedTradeId());
+        trade.setPrice(aggTrade.getPrice());
+        trade.setQty(aggTrade.getQty());
+        trade.setFirstBreakdownTradeId(aggTrade.getFirstBreakdownTradeId());
+        trade.setLastBreakdownTradeId(aggTrade.getLastBreakdownTradeId());
+        trade.setTradeTime(aggTrade.getTradeTime());
+        trade.setBuyerMaker(aggTrade.isBuyerMaker());
+    }
+
+    private void cacheAggTrade(AggTradeUpdate aggTrade) {
+        AggTradeEvent aggTradeEvent = new AggTradeEvent();
+        aggTradeEvent.setEventTime(aggTrade.getEventTime());
+        aggTradeEvent.setSymbol(symbol);
+        aggTradeEvent.setAggregatedTradeId(aggTrade.getAggregatedTradeId());
+        aggTradeEvent.setPrice(FixedPoint.toBigDecimal(aggTrade.getPrice(), depthCache.getPriceScale()).toPlainString());
+        aggTradeEvent.setQuantity(FixedPoint.toBigDecimal(aggTrade.getQty(), depthCache.getQtyScale()).toPlainString());
+        aggTradeEvent.setFirstBreakdownTradeId(aggTrade.getFirstBreakdownTradeId());
+        aggTradeEvent.setLastBreakdownTradeId(aggTrade.getLastBreakdownTradeId());
+        aggTradeEvent.setTradeTime(aggTrade.getTradeTime());
+        aggTradeEvent.setBuyerMaker(aggTrade.isBuyerMaker());
+
+        // Store the updated agg trade in the cache
+        aggTradesCache.put(aggTrade.getAggregatedTradeId(), aggTradeEvent);
+//        System.out.println(aggTradeEvent);
+    }
+
+    /**
+     * Replaces the order book with a REST snapshot, as one seqlock write.
+     */
+    private void loadSnapshot(DepthSnapshot snapshot) {
+        long stamp = depthCache.beginUpdate();
+        try {
+            depthCache.clear();
+            for (int i = 0; i < snapshot.getAskCount(); i++) {
+                depthCache.updateAsk(snapshot.getAskPrice(i), snapshot.getAskQty(i));
             }
-            updateAggTrade.setAggregatedTradeId(aggregatedTradeId);
-            updateAggTrade.setPrice(response.getPrice());
-            updateAggTrade.setQuantity(response.getQuantity());
-            updateAggTrade.setFirstBreakdownTradeId(response.getFirstBreakdownTradeId());
-            updateAggTrade.setLastBreakdownTradeId(response.getLastBreakdownTradeId());
-            updateAggTrade.setBuyerMaker(response.isBuyerMaker());
-
-            // Store the updated agg trade in the cache
-            aggTradesCache.put(aggregatedTradeId, updateAggTrade);
-//            System.out.println(updateAggTrade);
-
-            try {
-                eventManager.publish(response);
-            } catch (InterruptedException ex) {
-                ex.printStackTrace();
+            for (int i = 0; i < snapshot.getBidCount(); i++) {
+                depthCache.updateBid(snapshot.getBidPrice(i), snapshot.getBidQty(i));
             }
-        });
+            depthCache.setLastUpdateId(snapshot.getLastUpdateId());
+        } finally {
+            depthCache.endUpdate(stamp);
+        }
     }
 
     /**
-     * Updates an order book (bids or asks) with a delta received from the server.
+     * Updates the order book with the ask and bid deltas received from the server, as one seqlock
+     * write so that concurrent readers never see half of an event applied.
      *
      * Whenever the qty specified is ZERO, it means the price should was removed from the order book.
+     * The decoder already parsed prices and quantities into scaled longs in the book's scales.
      */
-    private void updateOrderBook(NavigableMap<BigDecimal, BigDecimal> lastOrderBookEntries,
-                                 List<OrderBookEntry> orderBookDeltas) {
-        for (OrderBookEntry orderBookDelta : orderBookDeltas) {
-            BigDecimal price = new BigDecimal(orderBookDelta.getPrice());
-            BigDecimal qty = new BigDecimal(orderBookDelta.getQty());
-            if (qty.compareTo(BigDecimal.ZERO) == 0) {
+    private void updateOrderBook(DepthUpdate depthUpdate) {
+        long stamp = depthCache.beginUpdate();
+        try {
+            for (int i = 0; i < depthUpdate.getAskCount(); i++) {
                 // qty=0 means remove this level
-                lastOrderBookEntries.remove(price);
-            } else {
-                lastOrderBookEntries.put(price, qty);
+                depthCache.updateAsk(depthUpdate.getAskPrice(i), depthUpdate.getAskQty(i));
+            }
+            for (int i = 0; i < depthUpdate.getBidCount(); i++) {
+                depthCache.updateBid(depthUpdate.getBidPrice(i), depthUpdate.getBidQty(i));
             }
+            depthCache.setLastUpdateId(depthUpdate.getFinalUpdateId());
+        } finally {
+            depthCache.endUpdate(stamp);
         }
     }
 
-    public NavigableMap<BigDecimal, BigDecimal> getAsks() {
-        return depthCache.getAsks();
-    }
-
-    public NavigableMap<BigDecimal, BigDecimal> getBids() {
-        return depthCache.getBids();
-    }
-
     /**
-     * @return the best ask in the order book
+     * Chooses between publishing an immutable snapshot per depth event (the default) and publishing
+     * the live depth cache, which consumers must then read through its seqlock.
      */
-    private Map.Entry<BigDecimal, BigDecimal> getBestAsk() {
-        return getAsks().lastEntry();
+    public void setPublishSnapshots(boolean publishSnapshots) {
+        this.publishSnapshots = publishSnapshots;
     }
 
     /**
-     * @return the best bid in the order book
+     * Chooses whether the aggTrades cache is updated with every agg trade received, at the cost of
+     * an allocation per trade and a cache that keeps growing.
      */
-    private Map.Entry<BigDecimal, BigDecimal> getBestBid() {
-        return getBids().firstEntry();
+    public void setAggTradesCacheUpdated(boolean aggTradesCacheUpdated) {
+        this.aggTradesCacheUpdated = aggTradesCacheUpdated;
+    }
+
+    public OrderBookSide getAsks() {
+        return depthCache.getAsks();
+    }
+
+    public OrderBookSide getBids() {
+        return depthCache.getBids();
+    }
+
+    public String getSymbol() {
+        return symbol;
     }
 
     /**
-     * @return a depth cache, containing two keys (ASKs and BIDs), and for each, an ordered list of book entries.
+     * @return a depth cache, containing the ask and bid sides, each ordered from the best level.
      */
     public LocalOrderBook getDepthCache() {
         return depthCache;
@@ -197,17 +366,22 @@ public class BinanceGateway {
     private void printDepthCache() {
         System.out.println(depthCache);
         System.out.println("ASKS:");
-        getAsks().entrySet().forEach(entry -> System.out.println(toDepthCacheEntryString(entry)));
+        for (int level = 0; level < getAsks().size(); level++) {
+            System.out.println(toDepthCacheEntryString(getAsks(), level));
+        }
         System.out.println("BIDS:");
-        getBids().entrySet().forEach(entry -> System.out.println(toDepthCacheEntryString(entry)));
-        System.out.println("BEST ASK: " + toDepthCacheEntryString(getBestAsk()));
-        System.out.println("BEST BID: " + toDepthCacheEntryString(getBestBid()));
+        for (int level = 0; level < getBids().size(); level++) {
+            System.out.println(toDepthCacheEntryString(getBids(), level));
+        }
+        System.out.println("BEST ASK: " + toDepthCacheEntryString(getAsks(), 0));
+        System.out.println("BEST BID: " + toDepthCacheEntryString(getBids(), 0));
     }
 
     /**
-     * Pretty prints an order book entry in the format "price / quantity".
+     * Pretty prints an order book level in the format "price / quantity".
      */
-    private static String toDepthCacheEntryString(Map.Entry<BigDecimal, BigDecimal> depthCacheEntry) {
-        return depthCacheEntry.getKey().toPlainString() + " / " + depthCacheEntry.getValue();
+    private String toDepthCacheEntryString(OrderBookSide side, int level) {
+        return FixedPoint.toBigDecimal(side.getPrice(level), depthCache.getPriceScale()).toPlainString()
+                + " / " + FixedPoint.toBigDecimal(side.getQty(level), depthCache.getQtyScale()).toPlainString();
     }
 }
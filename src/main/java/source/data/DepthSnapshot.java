@@ -0,0 +1,81 @@
+package source.data;
+
+import java.util.Arrays;
+
+/**
+ * A full depth snapshot of one symbol, as fetched from the REST API, with prices and quantities as
+ * scaled longs in the symbol's scales. Both the live snapshots the depth cache is synchronised from
+ * and the ones replayed from a journal take this form, so the two go through the same path.
+ */
+public class DepthSnapshot {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long lastUpdateId;
+
+    private long[] bidPrices = new long[INITIAL_CAPACITY];
+    private long[] bidQtys = new long[INITIAL_CAPACITY];
+    private int bidCount;
+    private long[] askPrices = new long[INITIAL_CAPACITY];
+    private long[] askQtys = new long[INITIAL_CAPACITY];
+    private int askCount;
+
+    /**
+     * Starts a new snapshot, discarding all levels.
+     */
+    public void reset(long lastUpdateId) {
+        this.lastUpdateId = lastUpdateId;
+        this.bidCount = 0;
+        this.askCount = 0;
+    }
+
+    public void addBid(long price, long qty) {
+        if (bidCount == bidPrices.length) {
+            bidPrices = Arrays.copyOf(bidPrices, bidCount * 2);
+            bidQtys = Arrays.copyOf(bidQtys, bidCount * 2);
+        }
+        bidPrices[bidCount] = price;
+        bidQtys[bidCount] = qty;
+        bidCount++;
+    }
+
+    public void addAsk(long price, long qty) {
+        if (askCount == askPrices.length) {
+            askPrices = Arrays.copyOf(askPrices, askCount * 2);
+            askQtys = Arrays.copyOf(askQtys, askCount * 2);
+        }
+        askPrices[askCount] = price;
+        askQtys[askCount] = qty;
+        askCount++;
+    }
+
+    /**
+     * @return the update id of the last depth event contained in the snapshot
+     */
+    public long getLastUpdateId() {
+        return lastUpdateId;
+    }
+
+    public int getBidCount() {
+        return bidCount;
+    }
+
+    public long getBidPrice(int i) {
+        return bidPrices[i];
+    }
+
+    public long getBidQty(int i) {
+        return bidQtys[i];
+    }
+
+    public int getAskCount() {
+        return askCount;
+    }
+
+    public long getAskPrice(int i) {
+        return askPrices[i];
+    }
+
+    public long getAskQty(int i) {
+        return askQtys[i];
+    }
+}
@@ -0,0 +1,230 @@
+package source.data;
+
+import websocket.DepthUpdate;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a local order book in step with a Binance diff depth stream, following Binance's rules for
+ * managing a local order book:
+ * <ol>
+ *     <li>buffer the events received while a REST snapshot is fetched,</li>
+ *     <li>drop every event whose final update id (u) is not after the snapshot's lastUpdateId,</li>
+ *     <li>the first event applied must have U &lt;= lastUpdateId + 1 &lt;= u,</li>
+ *     <li>every event after that must have U equal to the previous event's u + 1.</li>
+ * </ol>
+ * When an event breaks rule 4 some frames were lost, so the book is resynchronised: events are
+ * buffered again while a fresh snapshot is fetched on the snapshot executor, and once it arrives the
+ * snapshot is applied and the buffered events are replayed on top of it. When the first event breaks
+ * rule 3 no frame was lost, the snapshot is just older than the events buffered, so they are kept to
+ * replay on top of a newer one.
+ *
+ * Events arrive as decoder flyweights, so buffered events are copied into pooled
+ * {@link DepthUpdate}s that are recycled once replayed; after the first resync, buffering allocates
+ * nothing more.
+ *
+ * Events and snapshots arrive on different threads, so both entry points are synchronized; outside a
+ * resync only the websocket thread ever takes the monitor.
+ *
+ * Journals record the snapshots books were synchronised from alongside the events, so offline
+ * consumers of a journal can also run it through a synchronizer whose snapshot requests go nowhere,
+ * feeding it the recorded snapshots, to rebuild the books exactly as they were live.
+ */
+public class DepthStreamSynchronizer {
+    private static final int MAX_BUFFERED_EVENTS = 1000;
+
+    /**
+     * Receives the book changes decided by the synchronizer, always under its monitor.
+     */
+    public interface Listener {
+        /**
+         * Replaces the whole book with a REST snapshot.
+         */
+        void onSnapshot(DepthSnapshot snapshot);
+
+        /**
+         * Applies the deltas of an in-sequence depth event.
+         */
+        void onDepthEvent(DepthUpdate event);
+
+        /**
+         * Called once the book is consistent again after one or more changes.
+         */
+        void onBookUpdated();
+    }
+
+    private enum State {
+        /**
+         * Waiting for a snapshot, buffering events.
+         */
+        SYNCING,
+        /**
+         * Snapshot applied, waiting for the event that straddles its lastUpdateId.
+         */
+        AWAITING_FIRST_EVENT,
+        LIVE
+    }
+
+    private final String symbol;
+    private final Supplier<DepthSnapshot> snapshotSource;
+    private final Executor snapshotExecutor;
+    private final Listener listener;
+    private final Deque<DepthUpdate> bufferedEvents = new ArrayDeque<>();
+    private final Deque<DepthUpdate> freeEvents = new ArrayDeque<>();
+
+    private State state = State.SYNCING;
+    private boolean snapshotRequested;
+    private long lastUpdateId;
+    private long resyncCount;
+
+    /**
+     * @param snapshotSource   fetches a snapshot, called on the snapshot executor
+     * @param snapshotExecutor runs each snapshot request
+     */
+    public DepthStreamSynchronizer(String symbol, Supplier<DepthSnapshot> snapshotSource,
+                                   Executor snapshotExecutor, Listener listener) {
+        this.symbol = symbol;
+        this.snapshotSource = snapshotSource;
+        this.snapshotExecutor = snapshotExecutor;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts the initial synchronisation. Events received before this are buffered.
+     */
+    public synchronized void start() {
+        requestSnapshot();
+    }
+
+    public synchronized void onDepthEvent(DepthUpdate event) {
+        if (state == State.SYNCING) {
+            buffer(event);
+            requestSnapshot();
+        } else if (apply(event)) {
+            listener.onBookUpdated();
+        }
+    }
+
+    public synchronized void onSnapshot(DepthSnapshot snapshot) {
+        snapshotRequested = false;
+        lastUpdateId = snapshot.getLastUpdateId();
+        listener.onSnapshot(snapshot);
+        state = State.AWAITING_FIRST_EVENT;
+
+        while (!bufferedEvents.isEmpty() && state != State.SYNCING) {
+            apply(bufferedEvents.peekFirst());
+            // Unless it started a resync, which keeps or replaces the buffer
+            if (state != State.SYNCING) {
+                freeEvents.addLast(bufferedEvents.pollFirst());
+            }
+        }
+        // If the replay hit a gap a newer snapshot has been requested, and the book is not consistent
+        if (state != State.SYNCING) {
+            listener.onBookUpdated();
+        }
+    }
+
+    /**
+     * @return true if the event was applied to the book
+     */
+    private boolean apply(DepthUpdate event) {
+        if (event.getFinalUpdateId() <= lastUpdateId) {
+            // Already contained in the snapshot
+            return false;
+        }
+        long expectedFirstUpdateId = lastUpdateId + 1;
+        boolean inSequence = state == State.LIVE
+                ? event.getFirstUpdateId() == expectedFirstUpdateId
+                : event.getFirstUpdateId() <= expectedFirstUpdateId;
+        if (!inSequence) {
+            resync(event);
+            return false;
+        }
+        lastUpdateId = event.getFinalUpdateId();
+        listener.onDepthEvent(event);
+        state = State.LIVE;
+        return true;
+    }
+
+    private void resync(DepthUpdate event) {
+        resyncCount++;
+        if (state == State.AWAITING_FIRST_EVENT) {
+            System.out.println("Depth snapshot of " + symbol + " at update id " + lastUpdateId
+                    + " is older than the stream's update id " + event.getFirstUpdateId() + ", resyncing.");
+            // Nothing was lost: the event and those buffered after it go on top of the next snapshot
+            if (bufferedEvents.peekFirst() != event) {
+                bufferedEvents.addFirst(copyOf(event));
+            }
+        } else {
+            System.out.println("Depth stream gap for " + symbol + ": expected update id "
+                    + (lastUpdateId + 1) + " but got " + event.getFirstUpdateId() + ", resyncing.");
+            // The event may itself be buffered, so copy it before recycling the buffer
+            DepthUpdate copy = copyOf(event);
+            while (!bufferedEvents.isEmpty()) {
+                freeEvents.addLast(bufferedEvents.pollFirst());
+            }
+            bufferedEvents.addLast(copy);
+        }
+        state = State.SYNCING;
+        requestSnapshot();
+    }
+
+    private void buffer(DepthUpdate event) {
+        if (bufferedEvents.size() == MAX_BUFFERED_EVENTS) {
+            // The oldest events are the least likely to be needed on top of the coming snapshot; if
+            // one was needed after all, the replay detects the gap and resyncs again.
+            freeEvents.addLast(bufferedEvents.pollFirst());
+        }
+        bufferedEvents.addLast(copyOf(event));
+    }
+
+    private DepthUpdate copyOf(DepthUpdate event) {
+        DepthUpdate copy = freeEvents.pollFirst();
+        if (copy == null) {
+            copy = new DepthUpdate();
+        }
+        copy.copyFrom(event);
+        return copy;
+    }
+
+    private void requestSnapshot() {
+        if (snapshotRequested) {
+            return;
+        }
+        snapshotRequested = true;
+        snapshotExecutor.execute(() -> {
+            DepthSnapshot snapshot;
+            try {
+                snapshot = snapshotSource.get();
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                snapshotFailed();
+                return;
+            }
+            onSnapshot(snapshot);
+        });
+    }
+
+    private synchronized void snapshotFailed() {
+        // The next event received will trigger another attempt
+        snapshotRequested = false;
+    }
+
+    synchronized long getLastUpdateId() {
+        return lastUpdateId;
+    }
+
+    synchronized boolean isLive() {
+        return state == State.LIVE;
+    }
+
+    /**
+     * @return the number of resyncs, after gaps or stale snapshots, since the stream started
+     */
+    synchronized long getResyncCount() {
+        return resyncCount;
+    }
+}
@@ -0,0 +1,102 @@
+package source.data;
+
+import java.math.BigDecimal;
+
+/**
+ * Helpers for prices and quantities held as scaled longs, i.e. {@code value * 10^scale}.
+ *
+ * Binance sends every price and quantity as a decimal string with at most 8 fractional digits,
+ * so a scale of 8 represents any of them exactly.
+ */
+public final class FixedPoint {
+    public static final int DEFAULT_SCALE = 8;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    private static final double[] INVERSE_POWERS_OF_TEN = new double[19];
+
+    static {
+        long power = 1L;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = power;
+            INVERSE_POWERS_OF_TEN[i] = 1.0 / power;
+            power *= 10;
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Parses a plain decimal string (e.g. "63000.01000000") into a long scaled by 10^scale without
+     * allocating.
+     *
+     * @throws NumberFormatException if the text is not a plain decimal, overflows a long, or carries
+     *                               non-zero digits beyond the requested scale
+     */
+    public static long parse(CharSequence text, int scale) {
+        return parse(text, 0, text.length(), scale);
+    }
+
+    /**
+     * Parses the decimal in {@code text[start, end)}, see {@link #parse(CharSequence, int)}.
+     */
+    public static long parse(CharSequence text, int start, int end, int scale) {
+        if (start >= end) {
+            throw new NumberFormatException("Empty decimal");
+        }
+        boolean negative = text.charAt(start) == '-';
+        int i = negative ? start + 1 : start;
+        long value = 0L;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (fractionDigits >= 0) {
+                    throw new NumberFormatException("Two decimal points in " + text.subSequence(start, end));
+                }
+                fractionDigits = 0;
+                continue;
+            }
+            int digit = c - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid decimal " + text.subSequence(start, end));
+            }
+            if (fractionDigits >= 0) {
+                if (fractionDigits == scale) {
+                    if (digit != 0) {
+                        throw new NumberFormatException("More than " + scale + " decimals in "
+                                + text.subSequence(start, end));
+                    }
+                    continue;
+                }
+                fractionDigits++;
+            }
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("Decimal overflows scale " + scale + ": "
+                        + text.subSequence(start, end));
+            }
+            value = value * 10 + digit;
+        }
+        int missingDigits = scale - Math.max(fractionDigits, 0);
+        if (missingDigits > 0) {
+            if (value > Long.MAX_VALUE / POWERS_OF_TEN[missingDigits]) {
+                throw new NumberFormatException("Decimal overflows scale " + scale + ": "
+                        + text.subSequence(start, end));
+            }
+            value *= POWERS_OF_TEN[missingDigits];
+        }
+        return negative ? -value : value;
+    }
+
+    public static double toDouble(long scaled, int scale) {
+        return scaled * INVERSE_POWERS_OF_TEN[scale];
+    }
+
+    public static BigDecimal toBigDecimal(long scaled, int scale) {
+        return BigDecimal.valueOf(scaled, scale);
+    }
+
+    public static long powerOfTen(int exponent) {
+        return POWERS_OF_TEN[exponent];
+    }
+}
@@ -0,0 +1,232 @@
+package source.data;
+
+import messaging.Sequence;
+import websocket.AggTradeUpdate;
+import websocket.DepthUpdate;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One connection's way into a {@link JournalRecorder}: a ring of bytes that records are encoded into
+ * and the recorder's writer thread drains to the journal file.
+ *
+ * Appending never waits on the writer and never makes a system call. If the writer falls so far
+ * behind that the ring is full, the record is dropped and counted instead, so that recording can
+ * never hold up market data. Appends are synchronized: the connection's websocket thread appends
+ * its events, and the snapshot thread appends the snapshots its books are resynchronised from, but
+ * the monitor is only contended while a snapshot is being recorded.
+ */
+public final class JournalAppender {
+    private final ByteBuffer ring;
+    /**
+     * View of the ring the writer hands records out through.
+     */
+    private final ByteBuffer drainView;
+    private final int mask;
+    private final long epochOffsetNanos;
+    /**
+     * Bytes appended so far, published after each record.
+     */
+    private final Sequence producerPosition = new Sequence(0L);
+    /**
+     * Bytes drained by the writer so far.
+     */
+    private final Sequence consumerPosition = new Sequence(0L);
+    private long cachedConsumerPosition;
+    private volatile long droppedCount;
+    /**
+     * Next record to drain, and the end of the records the current drain pass covers; writer only.
+     */
+    private long drainPosition;
+    private long drainEnd;
+
+    /**
+     * @param capacity         size of the ring in bytes, a power of two
+     * @param epochOffsetNanos added to {@link System#nanoTime()} to stamp records, the same for every
+     *                         appender of a recorder so that their stamps compare
+     */
+    JournalAppender(int capacity, long epochOffsetNanos) {
+        if (capacity < 64 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two of at least 64, got " + capacity);
+        }
+        this.ring = ByteBuffer.allocateDirect(capacity).order(JournalFormat.BYTE_ORDER);
+        this.drainView = ring.duplicate();
+        this.mask = capacity - 1;
+        this.epochOffsetNanos = epochOffsetNanos;
+    }
+
+    /**
+     * Records a decoded depth event, stamped with the time now.
+     *
+     * @return false if the record was dropped
+     */
+    public synchronized boolean appendDepth(int symbolId, DepthUpdate depthUpdate) {
+        int bidCount = depthUpdate.getBidCount();
+        int askCount = depthUpdate.getAskCount();
+        int index = claim(JournalFormat.depthLength(bidCount + askCount));
+        if (index < 0) {
+            return false;
+        }
+        int position = index + JournalFormat.RECORD_HEADER_LENGTH;
+        ring.putLong(position, depthUpdate.getEventTime());
+        ring.putLong(position + 8, depthUpdate.getFirstUpdateId());
+        ring.putLong(position + 16, depthUpdate.getFinalUpdateId());
+        ring.putInt(position + 24, bidCount);
+        ring.putInt(position + 28, askCount);
+        position = index + JournalFormat.DEPTH_LEVELS_OFFSET;
+        for (int i = 0; i < bidCount; i++, position += 16) {
+            ring.putLong(position, depthUpdate.getBidPrice(i));
+            ring.putLong(position + 8, depthUpdate.getBidQty(i));
+        }
+        for (int i = 0; i < askCount; i++, position += 16) {
+            ring.putLong(position, depthUpdate.getAskPrice(i));
+            ring.putLong(position + 8, depthUpdate.getAskQty(i));
+        }
+        commit(index, JournalFormat.TYPE_DEPTH, symbolId, 0);
+        return true;
+    }
+
+    /**
+     * Records a decoded agg trade event, stamped with the time now.
+     *
+     * @return false if the record was dropped
+     */
+    public synchronized boolean appendAggTrade(int symbolId, AggTradeUpdate aggTrade) {
+        int index = claim(JournalFormat.AGG_TRADE_LENGTH);
+        if (index < 0) {
+            return false;
+        }
+        int position = index + JournalFormat.RECORD_HEADER_LENGTH;
+        ring.putLong(position, aggTrade.getEventTime());
+        ring.putLong(position + 8, aggTrade.getAggregatedTradeId());
+        ring.putLong(position + 16, aggTrade.getPrice());
+        ring.putLong(position + 24, aggTrade.getQty());
+        ring.putLong(position + 32, aggTrade.getFirstBreakdownTradeId());
+        ring.putLong(position + 40, aggTrade.getLastBreakdownTradeId());
+        ring.putLong(position + 48, aggTrade.getTradeTime());
+        commit(index, JournalFormat.TYPE_AGG_TRADE, symbolId, aggTrade.isBuyerMaker() ? 1 : 0);
+        return true;
+    }
+
+    /**
+     * Records a depth snapshot, stamped with the time now.
+     *
+     * @return false if the record was dropped
+     */
+    public synchronized boolean appendSnapshot(int symbolId, DepthSnapshot snapshot) {
+        int bidCount = snapshot.getBidCount();
+        int askCount = snapshot.getAskCount();
+        int index = claim(JournalFormat.snapshotLength(bidCount + askCount));
+        if (index < 0) {
+            return false;
+        }
+        int position = index + JournalFormat.RECORD_HEADER_LENGTH;
+        ring.putLong(position, snapshot.getLastUpdateId());
+        ring.putInt(position + 8, bidCount);
+        ring.putInt(position + 12, askCount);
+        position = index + JournalFormat.SNAPSHOT_LEVELS_OFFSET;
+        for (int i = 0; i < bidCount; i++, position += 16) {
+            ring.putLong(position, snapshot.getBidPrice(i));
+            ring.putLong(position + 8, snapshot.getBidQty(i));
+        }
+        for (int i = 0; i < askCount; i++, position += 16) {
+            ring.putLong(position, snapshot.getAskPrice(i));
+            ring.putLong(position + 8, snapshot.getAskQty(i));
+        }
+        commit(index, JournalFormat.TYPE_SNAPSHOT, symbolId, 0);
+        return true;
+    }
+
+    /**
+     * @return the number of records dropped because the ring was full
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Reserves contiguous space for a record, padding out the end of the ring if needed.
+     *
+     * @return the record's index in the ring, or -1 if it does not fit
+     */
+    private int claim(int length) {
+        long position = producerPosition.get();
+        int index = (int) position & mask;
+        int contiguous = ring.capacity() - index;
+        int required = length > contiguous ? contiguous + length : length;
+        if (position + required - cachedConsumerPosition > ring.capacity()) {
+            cachedConsumerPosition = consumerPosition.get();
+            if (position + required - cachedConsumerPosition > ring.capacity()) {
+                droppedCount++;
+                return -1;
+            }
+        }
+        if (length > contiguous) {
+            ring.putInt(index + JournalFormat.LENGTH_OFFSET, contiguous);
+            ring.putInt(index + JournalFormat.TYPE_OFFSET, JournalFormat.TYPE_PADDING);
+            producerPosition.set(position + contiguous);
+            index = 0;
+        }
+        ring.putInt(index + JournalFormat.LENGTH_OFFSET, length);
+        return index;
+    }
+
+    private void commit(int index, int type, int symbolId, int flags) {
+        ring.putInt(index + JournalFormat.TYPE_OFFSET, type);
+        ring.putLong(index + JournalFormat.RECEIVE_NANOS_OFFSET, System.nanoTime() + epochOffsetNanos);
+        ring.putInt(index + JournalFormat.SYMBOL_ID_OFFSET, symbolId);
+        ring.putInt(index + JournalFormat.FLAGS_OFFSET, flags);
+        // Ordered store: the writer sees the whole record once it sees the new position
+        producerPosition.set(producerPosition.get() + ring.getInt(index + JournalFormat.LENGTH_OFFSET));
+    }
+
+    /**
+     * Starts a drain pass over the records appended so far. The drain methods are called by the
+     * writer thread only.
+     */
+    void beginDrain() {
+        drainPosition = consumerPosition.get();
+        drainEnd = producerPosition.get();
+        skipPadding();
+    }
+
+    /**
+     * @return true if the drain pass has records left
+     */
+    boolean hasDrainRecord() {
+        return drainPosition < drainEnd;
+    }
+
+    /**
+     * @return the receive time of the next record of the drain pass
+     */
+    long peekReceiveNanos() {
+        return ring.getLong(((int) drainPosition & mask) + JournalFormat.RECEIVE_NANOS_OFFSET);
+    }
+
+    /**
+     * Hands the next record of the drain pass to the writer, and frees its space.
+     *
+     * @return the number of bytes drained
+     */
+    int drainRecord(JournalRecorder.RecordSink sink) {
+        int index = (int) drainPosition & mask;
+        int length = ring.getInt(index + JournalFormat.LENGTH_OFFSET);
+        drainView.limit(index + length).position(index);
+        sink.write(drainView);
+        drainPosition += length;
+        skipPadding();
+        consumerPosition.set(drainPosition);
+        return length;
+    }
+
+    private void skipPadding() {
+        while (drainPosition < drainEnd) {
+            int index = (int) drainPosition & mask;
+            if (ring.getInt(index + JournalFormat.TYPE_OFFSET) != JournalFormat.TYPE_PADDING) {
+                return;
+            }
+            drainPosition += ring.getInt(index + JournalFormat.LENGTH_OFFSET);
+        }
+    }
+}
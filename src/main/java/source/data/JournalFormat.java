@@ -0,0 +1,82 @@
+package source.data;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of market data journal files, shared by {@link JournalRecorder} and {@link JournalReader}.
+ *
+ * A journal file starts with a 16 byte header: the magic number and the format version. Records
+ * follow back to back, each starting with a 24 byte header:
+ * <pre>
+ *   int  length        of the whole record, header included, a multiple of 8
+ *   int  type
+ *   long receiveNanos  when the frame was received, in nanoseconds since the epoch
+ *   int  symbolId
+ *   int  flags         record specific
+ * </pre>
+ * A zero length marks the end of the records; files are preallocated, so the rest is zeros. Every
+ * file starts with a symbol table record, so that each file can be read on its own. All values are
+ * little endian, and prices and quantities are scaled longs in their symbol's scales.
+ */
+final class JournalFormat {
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    static final long MAGIC = 0x4C4E524A4B4F4F42L; // "BOOKJRNL"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_LENGTH = 16;
+    static final String FILE_SUFFIX = ".journal";
+
+    static final int RECORD_HEADER_LENGTH = 24;
+    static final int LENGTH_OFFSET = 0;
+    static final int TYPE_OFFSET = 4;
+    static final int RECEIVE_NANOS_OFFSET = 8;
+    static final int SYMBOL_ID_OFFSET = 16;
+    static final int FLAGS_OFFSET = 20;
+
+    /**
+     * Filler at the end of an appender's ring buffer, never written to files.
+     */
+    static final int TYPE_PADDING = 0;
+    /**
+     * flags: number of symbols. Per symbol: int priceScale, int qtyScale, int name length, then the
+     * name in ASCII. The record is zero padded to a multiple of 8.
+     */
+    static final int TYPE_SYMBOLS = 1;
+    /**
+     * long eventTime, long firstUpdateId, long finalUpdateId, int bidCount, int askCount, then
+     * (long price, long qty) per bid and per ask.
+     */
+    static final int TYPE_DEPTH = 2;
+    /**
+     * flags: 1 if the buyer was the maker. long eventTime, long aggregatedTradeId, long price,
+     * long qty, long firstBreakdownTradeId, long lastBreakdownTradeId, long tradeTime.
+     */
+    static final int TYPE_AGG_TRADE = 3;
+    /**
+     * A REST depth snapshot the symbol's book was (re)built from. long lastUpdateId, int bidCount,
+     * int askCount, then (long price, long qty) per bid and per ask.
+     */
+    static final int TYPE_SNAPSHOT = 4;
+
+    static final int DEPTH_LEVELS_OFFSET = RECORD_HEADER_LENGTH + 32;
+    static final int AGG_TRADE_LENGTH = RECORD_HEADER_LENGTH + 56;
+    static final int SNAPSHOT_LEVELS_OFFSET = RECORD_HEADER_LENGTH + 16;
+
+    private JournalFormat() {
+    }
+
+    static int depthLength(int levelCount) {
+        return DEPTH_LEVELS_OFFSET + levelCount * 16;
+    }
+
+    static int snapshotLength(int levelCount) {
+        return SNAPSHOT_LEVELS_OFFSET + levelCount * 16;
+    }
+
+    static int align8(int length) {
+        return (length + 7) & ~7;
+    }
+
+    static String fileName(String prefix, int fileIndex) {
+        return String.format("%s-%06d%s", prefix, fileIndex, FILE_SUFFIX);
+    }
+}
@@ -0,0 +1,214 @@
+package source.data;
+
+import websocket.AggTradeUpdate;
+import websocket.DepthUpdate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads back a journal written by {@link JournalRecorder}, file by file in order, one record at a time.
+ *
+ * Records are decoded into reusable {@link DepthUpdate}, {@link AggTradeUpdate} and
+ * {@link DepthSnapshot} flyweights, as the live decoder does, with the record's symbol id as their
+ * stream index; they are overwritten by the next record read.
+ */
+public class JournalReader {
+    /**
+     * Receives the records read.
+     */
+    public interface Handler {
+        void onDepthUpdate(long receiveNanos, int symbolId, DepthUpdate depthUpdate);
+
+        void onAggTrade(long receiveNanos, int symbolId, AggTradeUpdate aggTrade);
+
+        /**
+         * Receives a REST snapshot the symbol's book was (re)built from while recording, in the
+         * position of the stream it was loaded at.
+         */
+        void onSnapshot(long receiveNanos, int symbolId, DepthSnapshot snapshot);
+    }
+
+    private final List<Path> files;
+    private final DepthUpdate depthUpdate = new DepthUpdate();
+    private final AggTradeUpdate aggTrade = new AggTradeUpdate();
+    private final DepthSnapshot snapshot = new DepthSnapshot();
+
+    private int nextFile;
+    private ByteBuffer file;
+    private String[] symbols = new String[0];
+    private int[] priceScales = new int[0];
+    private int[] qtyScales = new int[0];
+
+    /**
+     * Reads every journal file of the prefix in the directory.
+     */
+    public JournalReader(Path directory, String prefix) throws IOException {
+        this(journalFiles(directory, prefix));
+    }
+
+    public JournalReader(List<Path> files) {
+        this.files = new ArrayList<>(files);
+    }
+
+    /**
+     * @return the journal files of the prefix in the directory, in the order they were written
+     */
+    public static List<Path> journalFiles(Path directory, String prefix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory,
+                prefix + "-*" + JournalFormat.FILE_SUFFIX)) {
+            for (Path path : paths) {
+                files.add(path);
+            }
+        }
+        // File indices are zero padded, so names sort in index order
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Reads the next depth, trade or snapshot record and passes it to the handler.
+     *
+     * @return false if the journal has no more records
+     * @throws IOException if a file cannot be mapped or is not a journal
+     */
+    public boolean readNext(Handler handler) throws IOException {
+        while (true) {
+            if (file == null || !hasRecord()) {
+                if (nextFile == files.size()) {
+                    return false;
+                }
+                openFile(files.get(nextFile++));
+                continue;
+            }
+            int position = file.position();
+            int length = file.getInt(position + JournalFormat.LENGTH_OFFSET);
+            int type = file.getInt(position + JournalFormat.TYPE_OFFSET);
+            long receiveNanos = file.getLong(position + JournalFormat.RECEIVE_NANOS_OFFSET);
+            int symbolId = file.getInt(position + JournalFormat.SYMBOL_ID_OFFSET);
+            int flags = file.getInt(position + JournalFormat.FLAGS_OFFSET);
+            file.position(position + length);
+            switch (type) {
+                case JournalFormat.TYPE_SYMBOLS:
+                    readSymbols(position, flags);
+                    break;
+                case JournalFormat.TYPE_DEPTH:
+                    readDepth(position, symbolId);
+                    handler.onDepthUpdate(receiveNanos, symbolId, depthUpdate);
+                    return true;
+                case JournalFormat.TYPE_AGG_TRADE:
+                    readAggTrade(position, symbolId, flags);
+                    handler.onAggTrade(receiveNanos, symbolId, aggTrade);
+                    return true;
+                case JournalFormat.TYPE_SNAPSHOT:
+                    readSnapshot(position);
+                    handler.onSnapshot(receiveNanos, symbolId, snapshot);
+                    return true;
+                default:
+                    // Written by a newer version; skip it
+            }
+        }
+    }
+
+    /**
+     * @return the symbols of the file being read, indexed by symbol id
+     */
+    public String[] getSymbols() {
+        return symbols.clone();
+    }
+
+    public int getPriceScale(int symbolId) {
+        return priceScales[symbolId];
+    }
+
+    public int getQtyScale(int symbolId) {
+        return qtyScales[symbolId];
+    }
+
+    private boolean hasRecord() {
+        return file.remaining() >= JournalFormat.RECORD_HEADER_LENGTH
+                && file.getInt(file.position() + JournalFormat.LENGTH_OFFSET) != 0;
+    }
+
+    private void openFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size()).order(JournalFormat.BYTE_ORDER);
+        }
+        if (file.remaining() < JournalFormat.FILE_HEADER_LENGTH || file.getLong(0) != JournalFormat.MAGIC) {
+            throw new IOException(path + " is not a journal file");
+        }
+        if (file.getInt(8) != JournalFormat.VERSION) {
+            throw new IOException(path + " has unsupported journal version " + file.getInt(8));
+        }
+        file.position(JournalFormat.FILE_HEADER_LENGTH);
+    }
+
+    private void readSymbols(int position, int count) {
+        symbols = new String[count];
+        priceScales = new int[count];
+        qtyScales = new int[count];
+        position += JournalFormat.RECORD_HEADER_LENGTH;
+        for (int i = 0; i < count; i++) {
+            priceScales[i] = file.getInt(position);
+            qtyScales[i] = file.getInt(position + 4);
+            byte[] name = new byte[file.getInt(position + 8)];
+            position += 12;
+            for (int j = 0; j < name.length; j++) {
+                name[j] = file.get(position + j);
+            }
+            position += name.length;
+            symbols[i] = new String(name, StandardCharsets.US_ASCII);
+        }
+    }
+
+    private void readDepth(int position, int symbolId) {
+        position += JournalFormat.RECORD_HEADER_LENGTH;
+        depthUpdate.reset(symbolId, file.getLong(position), file.getLong(position + 8), file.getLong(position + 16));
+        int bidCount = file.getInt(position + 24);
+        int askCount = file.getInt(position + 28);
+        position += 32;
+        for (int i = 0; i < bidCount; i++, position += 16) {
+            depthUpdate.addBid(file.getLong(position), file.getLong(position + 8));
+        }
+        for (int i = 0; i < askCount; i++, position += 16) {
+            depthUpdate.addAsk(file.getLong(position), file.getLong(position + 8));
+        }
+    }
+
+    private void readSnapshot(int position) {
+        position += JournalFormat.RECORD_HEADER_LENGTH;
+        snapshot.reset(file.getLong(position));
+        int bidCount = file.getInt(position + 8);
+        int askCount = file.getInt(position + 12);
+        position += 16;
+        for (int i = 0; i < bidCount; i++, position += 16) {
+            snapshot.addBid(file.getLong(position), file.getLong(position + 8));
+        }
+        for (int i = 0; i < askCount; i++, position += 16) {
+            snapshot.addAsk(file.getLong(position), file.getLong(position + 8));
+        }
+    }
+
+    private void readAggTrade(int position, int symbolId, int flags) {
+        position += JournalFormat.RECORD_HEADER_LENGTH;
+        aggTrade.reset(symbolId);
+        aggTrade.setEventTime(file.getLong(position));
+        aggTrade.setAggregatedTradeId(file.getLong(position + 8));
+        aggTrade.setPrice(file.getLong(position + 16));
+        aggTrade.setQty(file.getLong(position + 24));
+        aggTrade.setFirstBreakdownTradeId(file.getLong(position + 32));
+        aggTrade.setLastBreakdownTradeId(file.getLong(position + 40));
+        aggTrade.setTradeTime(file.getLong(position + 48));
+        aggTrade.setBuyerMaker((flags & 1) != 0);
+    }
+}
@@ -0,0 +1,270 @@
+package source.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records decoded market data to a journal of rolling memory-mapped files, in the binary format of
+ * {@link JournalFormat}, so that sessions can be replayed later.
+ *
+ * Recording stays off the hot path: each websocket thread appends to its own {@link JournalAppender},
+ * a lock-free ring in memory, and a single writer thread drains the appenders into the current
+ * file's mapping. Files are preallocated and mapped whole, so neither side makes a system call per
+ * message; the only ones left are creating, mapping and flushing each file as the journal rolls.
+ *
+ * Files hold records in receive order. A symbol's depth events and its trades arrive on different
+ * connections, so different appenders, and a replay must see them interleaved as they were received:
+ * each drain pass merges the records appended to every appender by receive time, always writing the
+ * oldest head record next. A record is stamped just before it is published, so a pass only takes
+ * records older than {@link #MERGE_LAG_NANOS}, leaving time for any older record still being
+ * published to arrive; only one held up for longer than that lands behind newer ones.
+ */
+public class JournalRecorder implements AutoCloseable {
+    public static final long DEFAULT_FILE_SIZE = 256L * 1024 * 1024;
+    public static final int DEFAULT_APPENDER_CAPACITY = 4 * 1024 * 1024;
+    private static final long IDLE_PARK_NANOS = 100_000L;
+    /**
+     * How far behind the current time drain passes stop, and so how long records wait to be written.
+     */
+    private static final long MERGE_LAG_NANOS = 1_000_000L;
+
+    /**
+     * Where the writer copies each record drained from an appender.
+     */
+    interface RecordSink {
+        /**
+         * @param record the record, between the buffer's position and limit
+         */
+        void write(ByteBuffer record);
+    }
+
+    private final Path directory;
+    private final String prefix;
+    private final long fileSize;
+    private final int appenderCapacity;
+    private final byte[] symbolTable;
+    private final Thread writerThread;
+    /**
+     * Turns {@link System#nanoTime()} into nanoseconds since the epoch, for every appender.
+     */
+    private final long epochOffsetNanos = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+
+    private volatile JournalAppender[] appenders = new JournalAppender[0];
+    private volatile boolean running = true;
+    private volatile long bytesWritten;
+
+    /**
+     * Owned by the writer thread once started.
+     */
+    private MappedByteBuffer file;
+    private int fileIndex;
+
+    /**
+     * @param prefix      name of the journal files, which are numbered after it
+     * @param symbols     symbol names, indexed by the symbol ids records are appended with
+     * @param priceScales price scale of each symbol
+     * @param qtyScales   quantity scale of each symbol
+     */
+    public JournalRecorder(Path directory, String prefix, String[] symbols, int[] priceScales, int[] qtyScales)
+            throws IOException {
+        this(directory, prefix, symbols, priceScales, qtyScales, DEFAULT_FILE_SIZE, DEFAULT_APPENDER_CAPACITY);
+    }
+
+    /**
+     * @param fileSize         size each journal file is preallocated to
+     * @param appenderCapacity size in bytes of each appender's ring, a power of two
+     */
+    public JournalRecorder(Path directory, String prefix, String[] symbols, int[] priceScales, int[] qtyScales,
+                           long fileSize, int appenderCapacity) throws IOException {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.fileSize = fileSize;
+        this.appenderCapacity = appenderCapacity;
+        this.symbolTable = encodeSymbolTable(symbols, priceScales, qtyScales);
+        // A record can be as large as a ring, and must fit in a file after the header
+        if (fileSize > Integer.MAX_VALUE
+                || fileSize < JournalFormat.FILE_HEADER_LENGTH + symbolTable.length + appenderCapacity) {
+            throw new IllegalArgumentException("Files of " + fileSize + " bytes cannot hold records from "
+                    + appenderCapacity + " byte appenders");
+        }
+        Files.createDirectories(directory);
+        this.fileIndex = lastFileIndex();
+        rollFile();
+        this.writerThread = new Thread(this::runWriter, "journal-" + prefix);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Creates an appender, normally one per websocket connection.
+     */
+    public synchronized JournalAppender newAppender() {
+        if (!running) {
+            throw new IllegalStateException("Recorder is closed");
+        }
+        JournalAppender appender = new JournalAppender(appenderCapacity, epochOffsetNanos);
+        JournalAppender[] updated = Arrays.copyOf(appenders, appenders.length + 1);
+        updated[updated.length - 1] = appender;
+        appenders = updated;
+        return appender;
+    }
+
+    /**
+     * @return the number of bytes of records written to the journal so far
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return the number of records dropped so far because an appender's ring was full
+     */
+    public long getDroppedCount() {
+        long dropped = 0L;
+        for (JournalAppender appender : appenders) {
+            dropped += appender.getDroppedCount();
+        }
+        return dropped;
+    }
+
+    /**
+     * Stops the writer once it has drained every record appended before this call, and flushes the
+     * current file. Records appended afterwards are lost. If the calling thread is interrupted while
+     * waiting, this returns at once with the thread's interrupt status set, and the writer finishes on
+     * its own.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            running = false;
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        RecordSink sink = this::write;
+        while (true) {
+            boolean stopping = !running;
+            int drained = 0;
+            // Once stopping, everything appended is written
+            long watermark = stopping ? Long.MAX_VALUE : System.nanoTime() + epochOffsetNanos - MERGE_LAG_NANOS;
+            JournalAppender[] current = appenders;
+            for (JournalAppender appender : current) {
+                appender.beginDrain();
+            }
+            while (true) {
+                JournalAppender oldest = null;
+                long oldestNanos = watermark;
+                for (JournalAppender appender : current) {
+                    if (appender.hasDrainRecord() && appender.peekReceiveNanos() < oldestNanos) {
+                        oldest = appender;
+                        oldestNanos = appender.peekReceiveNanos();
+                    }
+                }
+                if (oldest == null) {
+                    break;
+                }
+                drained += oldest.drainRecord(sink);
+            }
+            if (stopping) {
+                break;
+            }
+            if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        file.force();
+    }
+
+    private void write(ByteBuffer record) {
+        int length = record.remaining();
+        if (file.remaining() < length) {
+            try {
+                rollFile();
+            } catch (IOException ex) {
+                // Stop recording; the appenders fill up and count what they drop
+                running = false;
+                throw new UncheckedIOException(ex);
+            }
+        }
+        file.put(record);
+        bytesWritten += length;
+    }
+
+    /**
+     * Flushes the current file, if any, and maps the next one, writing its header and symbol table.
+     */
+    private void rollFile() throws IOException {
+        if (file != null) {
+            file.force();
+        }
+        fileIndex++;
+        Path path = directory.resolve(JournalFormat.fileName(prefix, fileIndex));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid once the channel is closed
+            file = channel.map(FileChannel.MapMode.READ_WRITE, 0L, fileSize);
+        }
+        file.order(JournalFormat.BYTE_ORDER);
+        file.putLong(JournalFormat.MAGIC);
+        file.putInt(JournalFormat.VERSION);
+        file.putInt(0);
+        file.put(symbolTable);
+    }
+
+    /**
+     * @return the highest index of the journal files already in the directory, so that a new
+     * recording carries on after them
+     */
+    private int lastFileIndex() throws IOException {
+        int last = 0;
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory,
+                prefix + "-*" + JournalFormat.FILE_SUFFIX)) {
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                try {
+                    last = Math.max(last, Integer.parseInt(
+                            name.substring(prefix.length() + 1, name.length() - JournalFormat.FILE_SUFFIX.length())));
+                } catch (NumberFormatException ex) {
+                    // Not a journal file of this prefix
+                }
+            }
+        }
+        return last;
+    }
+
+    private static byte[] encodeSymbolTable(String[] symbols, int[] priceScales, int[] qtyScales) {
+        int length = JournalFormat.RECORD_HEADER_LENGTH;
+        for (String symbol : symbols) {
+            length += 12 + symbol.length();
+        }
+        ByteBuffer table = ByteBuffer.allocate(JournalFormat.align8(length)).order(JournalFormat.BYTE_ORDER);
+        table.putInt(table.capacity());
+        table.putInt(JournalFormat.TYPE_SYMBOLS);
+        table.putLong(0L);
+        table.putInt(-1);
+        table.putInt(symbols.length);
+        for (int i = 0; i < symbols.length; i++) {
+            byte[] name = symbols[i].getBytes(StandardCharsets.US_ASCII);
+            table.putInt(priceScales[i]);
+            table.putInt(qtyScales[i]);
+            table.putInt(name.length);
+            table.put(name);
+        }
+        return table.array();
+    }
+}
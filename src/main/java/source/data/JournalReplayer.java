@@ -0,0 +1,178 @@
+package source.data;
+
+import messaging.EventManager;
+import source.scheduling.SimulatedClock;
+import websocket.AggTradeUpdate;
+import websocket.DepthUpdate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a journal written by {@link JournalRecorder} as if it were live market data: every depth
+ * event and recorded snapshot goes through its symbol's {@link BinanceGateway} depth synchronisation
+ * and every trade through the gateway's trade path, so books and trades reach the {@link EventManager}
+ * exactly as they would live. A symbol's books are only published once a snapshot of it has been
+ * replayed; a journal recorded without snapshots gets a warning, and publishes no books for them.
+ *
+ * Events are replayed in journal order, paced by their receive times scaled by the replay speed: 1 is
+ * real time, 10 ten times as fast, and {@link #MAX_SPEED} as fast as the consumers keep up. An
+ * optional {@link SimulatedClock} is advanced to each event's receive time before it is published, so
+ * that timers driven by it fire where they would have live.
+ */
+public class JournalReplayer implements Runnable {
+    /**
+     * Replays with no pacing at all.
+     */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+    /**
+     * Waits shorter than this are spun rather than parked, as parking overshoots by about this much.
+     */
+    private static final long SPIN_THRESHOLD_NANOS = 50_000L;
+
+    private final JournalReader reader;
+    private final EventManager eventManager;
+    private final double speed;
+    private final SimulatedClock clock;
+    private final JournalReader.Handler handler = new ReplayHandler();
+
+    /**
+     * Gateways indexed by the journal's symbol ids, created as their symbols first appear.
+     */
+    private BinanceGateway[] binanceGateways = new BinanceGateway[0];
+    /**
+     * Whether a snapshot of each symbol, by id, has been replayed yet, or its absence warned about.
+     */
+    private boolean[] synchronised = new boolean[0];
+    private long firstReceiveNanos = -1L;
+    private long startNanos;
+    private long replayedCount;
+    private volatile boolean running = true;
+
+    public JournalReplayer(JournalReader reader, EventManager eventManager, double speed) {
+        this(reader, eventManager, speed, null);
+    }
+
+    /**
+     * @param speed multiple of real time to replay at, or {@link #MAX_SPEED}
+     * @param clock advanced to each event's receive time, or null
+     */
+    public JournalReplayer(JournalReader reader, EventManager eventManager, double speed, SimulatedClock clock) {
+        if (!(speed > 0.0)) {
+            throw new IllegalArgumentException("Speed must be positive, got " + speed);
+        }
+        this.reader = reader;
+        this.eventManager = eventManager;
+        this.speed = speed;
+        this.clock = clock;
+    }
+
+    /**
+     * Replays the journal to its end, or until halted.
+     *
+     * @throws UncheckedIOException if the journal cannot be read
+     */
+    @Override
+    public void run() {
+        try {
+            while (running && reader.readNext(handler)) {
+                replayedCount++;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Stops the replay after the event being replayed.
+     */
+    public void halt() {
+        running = false;
+    }
+
+    /**
+     * @return the number of events replayed so far; read from the replaying thread, or after it ends
+     */
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * @return the gateway replaying a symbol, by its id in the journal, or null if none of its events
+     * were replayed yet
+     */
+    public BinanceGateway getBinanceGateway(int symbolId) {
+        return symbolId < binanceGateways.length ? binanceGateways[symbolId] : null;
+    }
+
+    private class ReplayHandler implements JournalReader.Handler {
+        @Override
+        public void onDepthUpdate(long receiveNanos, int symbolId, DepthUpdate depthUpdate) {
+            BinanceGateway gateway = gateway(symbolId);
+            awaitReplayTime(receiveNanos);
+            if (!synchronised[symbolId]) {
+                System.out.println("No snapshot of " + gateway.getSymbol() + " in the journal before its depth"
+                        + " events; they are not applied until one is replayed.");
+                synchronised[symbolId] = true;
+            }
+            gateway.onDepthUpdate(depthUpdate);
+        }
+
+        @Override
+        public void onAggTrade(long receiveNanos, int symbolId, AggTradeUpdate aggTrade) {
+            BinanceGateway gateway = gateway(symbolId);
+            awaitReplayTime(receiveNanos);
+            gateway.onAggTrade(aggTrade);
+        }
+
+        @Override
+        public void onSnapshot(long receiveNanos, int symbolId, DepthSnapshot snapshot) {
+            BinanceGateway gateway = gateway(symbolId);
+            awaitReplayTime(receiveNanos);
+            synchronised[symbolId] = true;
+            gateway.onSnapshot(snapshot);
+        }
+    }
+
+    private BinanceGateway gateway(int symbolId) {
+        if (symbolId >= binanceGateways.length) {
+            binanceGateways = Arrays.copyOf(binanceGateways, reader.getSymbols().length);
+            synchronised = Arrays.copyOf(synchronised, binanceGateways.length);
+        }
+        BinanceGateway gateway = binanceGateways[symbolId];
+        if (gateway == null) {
+            String symbol = reader.getSymbols()[symbolId];
+            LocalOrderBook depthCache = new LocalOrderBook(reader.getPriceScale(symbolId), reader.getQtyScale(symbolId));
+            gateway = new BinanceGateway(symbol, symbolId, depthCache, true);
+            gateway.startReplay(eventManager);
+            binanceGateways[symbolId] = gateway;
+        }
+        return gateway;
+    }
+
+    /**
+     * Waits until the event's receive time, scaled by the speed, has elapsed since the replay started,
+     * then advances the clock to it.
+     */
+    private void awaitReplayTime(long receiveNanos) {
+        if (firstReceiveNanos < 0L) {
+            firstReceiveNanos = receiveNanos;
+            startNanos = System.nanoTime();
+        }
+        if (speed != MAX_SPEED) {
+            long dueNanos = startNanos + (long) ((receiveNanos - firstReceiveNanos) / speed);
+            long remaining;
+            while ((remaining = dueNanos - System.nanoTime()) > 0L && running) {
+                // Otherwise busy spin the last stretch
+                if (remaining > SPIN_THRESHOLD_NANOS) {
+                    LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+                }
+            }
+        }
+        if (clock != null) {
+            clock.advanceTo(receiveNanos);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package source.data;
+
+import java.util.Arrays;
+
+/**
+ * One side of an order book held as a price ladder: a contiguous array of quantities indexed by
+ * the number of ticks away from an anchor price, plus an occupancy bitmap.
+ *
+ * Slot 0 is the best price the ladder can hold and higher slots are progressively worse prices, so
+ * the same code serves bids (prices decreasing from the anchor) and asks (prices increasing from the
+ * anchor). A depth delta is a single array store and bit flip, and the best level is tracked as a
+ * slot index that is only re-derived, by scanning the bitmap, when the best level is removed.
+ *
+ * Levels too far from the touch to fit in the ladder are kept in an overflow
+ * {@link SortedArrayBookSide}; every overflow level is worse than every ladder slot. When the touch
+ * moves past the better edge of the ladder, or drifts deep into it, the ladder re-centres on the new
+ * best price, spilling levels into or pulling them back from the overflow side.
+ */
+public class LadderBookSide implements OrderBookSide {
+    private final boolean bid;
+    private final long tickSize;
+    private final int capacity;
+    private final long[] quantities;
+    private final long[] occupied;
+    private final SortedArrayBookSide overflow;
+
+    private boolean anchored;
+    /**
+     * Price held by slot 0.
+     */
+    private long anchor;
+    private int ladderLevels;
+    private int bestSlot;
+
+    /**
+     * @param tickSize scaled price increment of the symbol; every price must be a multiple of it
+     * @param ladderSize number of ticks held in the ladder, rounded up to a multiple of 64
+     */
+    public LadderBookSide(boolean bid, long tickSize, int ladderSize) {
+        if (tickSize <= 0 || ladderSize <= 0) {
+            throw new IllegalArgumentException("Tick size and ladder size must be positive");
+        }
+        this.bid = bid;
+        this.tickSize = tickSize;
+        this.capacity = (ladderSize + 63) & ~63;
+        this.quantities = new long[capacity];
+        this.occupied = new long[capacity >>> 6];
+        this.overflow = new SortedArrayBookSide(bid);
+        this.bestSlot = capacity;
+    }
+
+    @Override
+    public void update(long price, long qty) {
+        if (price % tickSize != 0) {
+            throw new IllegalArgumentException("Price " + price + " is not a multiple of tick size " + tickSize);
+        }
+        if (!anchored) {
+            if (qty == 0) {
+                return;
+            }
+            recenter(price);
+        }
+        long offset = ticksFromAnchor(price);
+        if (offset < 0) {
+            if (qty == 0) {
+                // Nothing rests beyond the better edge of the ladder
+                return;
+            }
+            recenter(price);
+            offset = ticksFromAnchor(price);
+        }
+        if (offset >= capacity) {
+            overflow.update(price, qty);
+        } else {
+            setSlot((int) offset, qty);
+        }
+        if (ladderLevels == 0 ? !overflow.isEmpty() : bestSlot > capacity - capacity / 4) {
+            recenter(getBestPrice());
+        }
+    }
+
+    private void setSlot(int slot, long qty) {
+        long bit = 1L << slot;
+        int word = slot >>> 6;
+        boolean wasOccupied = (occupied[word] & bit) != 0;
+        quantities[slot] = qty;
+        if (qty != 0) {
+            if (!wasOccupied) {
+                occupied[word] |= bit;
+                ladderLevels++;
+                if (slot < bestSlot) {
+                    bestSlot = slot;
+                }
+            }
+        } else if (wasOccupied) {
+            occupied[word] &= ~bit;
+            ladderLevels--;
+            if (slot == bestSlot) {
+                bestSlot = nextOccupiedSlot(slot);
+            }
+        }
+    }
+
+    /**
+     * @return the first occupied slot at or after the given one, or the capacity if there is none
+     */
+    private int nextOccupiedSlot(int fromSlot) {
+        int word = fromSlot >>> 6;
+        if (word >= occupied.length) {
+            return capacity;
+        }
+        long bits = occupied[word] & (-1L << fromSlot);
+        while (bits == 0) {
+            if (++word == occupied.length) {
+                return capacity;
+            }
+            bits = occupied[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Moves the ladder so that the given price sits a quarter of the way in from the better edge,
+     * leaving room for the touch to improve without another re-centre.
+     */
+    private void recenter(long bestPrice) {
+        long newAnchor = bid ? bestPrice + (long) (capacity / 4) * tickSize
+                : bestPrice - (long) (capacity / 4) * tickSize;
+        if (!anchored) {
+            anchor = newAnchor;
+            anchored = true;
+            return;
+        }
+        long shift = ticksFromAnchor(newAnchor);
+        if (shift < 0) {
+            // Moving towards better prices: the worst slots no longer fit and spill into overflow,
+            // worst first so that every insert lands at the best end of the overflow arrays.
+            int spilled = (int) Math.min(-shift, capacity);
+            for (int slot = capacity - 1; slot >= capacity - spilled; slot--) {
+                if (quantities[slot] != 0) {
+                    overflow.update(priceOf(slot), quantities[slot]);
+                }
+            }
+            System.arraycopy(quantities, 0, quantities, spilled, capacity - spilled);
+            Arrays.fill(quantities, 0, spilled, 0L);
+        } else if (shift > 0) {
+            // Moving towards worse prices: the slots falling off the better edge are empty, as the
+            // ladder only re-centres this way onto its own best level or an empty ladder.
+            int dropped = (int) Math.min(shift, capacity);
+            System.arraycopy(quantities, dropped, quantities, 0, capacity - dropped);
+            Arrays.fill(quantities, capacity - dropped, capacity, 0L);
+        }
+        anchor = newAnchor;
+        rebuildOccupancy();
+        while (!overflow.isEmpty() && ticksFromAnchor(overflow.getBestPrice()) < capacity) {
+            long price = overflow.getBestPrice();
+            setSlot((int) ticksFromAnchor(price), overflow.getBestQty());
+            overflow.update(price, 0);
+        }
+    }
+
+    private void rebuildOccupancy() {
+        Arrays.fill(occupied, 0L);
+        ladderLevels = 0;
+        bestSlot = capacity;
+        for (int slot = capacity - 1; slot >= 0; slot--) {
+            if (quantities[slot] != 0) {
+                occupied[slot >>> 6] |= 1L << slot;
+                ladderLevels++;
+                bestSlot = slot;
+            }
+        }
+    }
+
+    private long ticksFromAnchor(long price) {
+        return (bid ? anchor - price : price - anchor) / tickSize;
+    }
+
+    private long priceOf(int slot) {
+        return bid ? anchor - slot * tickSize : anchor + slot * tickSize;
+    }
+
+    @Override
+    public void clear() {
+        for (int slot = nextOccupiedSlot(0); slot < capacity; slot = nextOccupiedSlot(slot + 1)) {
+            quantities[slot] = 0L;
+        }
+        Arrays.fill(occupied, 0L);
+        ladderLevels = 0;
+        bestSlot = capacity;
+        anchored = false;
+        overflow.clear();
+    }
+
+    @Override
+    public boolean isBid() {
+        return bid;
+    }
+
+    @Override
+    public int size() {
+        return ladderLevels + overflow.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public long getPrice(int level) {
+        if (level >= ladderLevels) {
+            return overflow.getPrice(level - ladderLevels);
+        }
+        return priceOf(slotOfLevel(level));
+    }
+
+    @Override
+    public long getQty(int level) {
+        if (level >= ladderLevels) {
+            return overflow.getQty(level - ladderLevels);
+        }
+        return quantities[slotOfLevel(level)];
+    }
+
+    /**
+     * @return the slot holding the n-th best ladder level, found by counting bits from the best slot
+     */
+    private int slotOfLevel(int level) {
+        int word = bestSlot >>> 6;
+        long bits = occupied[word] & (-1L << bestSlot);
+        int remaining = level;
+        int count = Long.bitCount(bits);
+        while (remaining >= count) {
+            remaining -= count;
+            bits = occupied[++word];
+            count = Long.bitCount(bits);
+        }
+        for (; remaining > 0; remaining--) {
+            bits &= bits - 1;
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    @Override
+    public long getQtyAt(long price) {
+        if (!anchored) {
+            return 0L;
+        }
+        long offset = ticksFromAnchor(price);
+        if (offset < 0) {
+            return 0L;
+        }
+        return offset < capacity ? quantities[(int) offset] : overflow.getQtyAt(price);
+    }
+
+    @Override
+    public long getBestPrice() {
+        return ladderLevels > 0 ? priceOf(bestSlot) : overflow.getBestPrice();
+    }
+
+    @Override
+    public long getBestQty() {
+        return ladderLevels > 0 ? quantities[bestSlot] : overflow.getBestQty();
+    }
+
+    @Override
+    public int getLevels(long[] prices, long[] qtys, int maxLevels) {
+        int count = 0;
+        for (int slot = bestSlot; slot < capacity && count < maxLevels; slot = nextOccupiedSlot(slot + 1)) {
+            prices[count] = priceOf(slot);
+            qtys[count] = quantities[slot];
+            count++;
+        }
+        for (int level = 0; level < overflow.size() && count < maxLevels; level++) {
+            prices[count] = overflow.getPrice(level);
+            qtys[count] = overflow.getQty(level);
+            count++;
+        }
+        return count;
+    }
+}
@@ -1,63 +1,346 @@
 package source.data;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
+import java.util.AbstractMap;
 import java.util.Map;
-import java.util.NavigableMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.StampedLock;
 
+/**
+ * Local copy of an order book, with prices and quantities held as scaled longs.
+ *
+ * The price and quantity scales are per symbol: a scale of 8 represents anything Binance sends,
+ * while symbols with very large quantities can use a smaller quantity scale to stay within a long.
+ * Each side is either a {@link SortedArrayBookSide}, which suits any symbol, or a
+ * {@link LadderBookSide} for liquid symbols whose updates cluster within a few hundred ticks of the
+ * touch.
+ *
+ * Books published to consumers are snapshots taken from an {@link OrderBookSnapshotPool}: a flat copy
+ * of the live book that is never modified afterwards, and that the consumer hands back with
+ * {@link #release()} once it no longer needs it. A snapshot delivered to several consumers carries
+ * one reference per consumer, and returns to its pool when the last of them releases it.
+ *
+ * Live books can also be read directly from other threads through a seqlock: the single writer
+ * brackets each depth event with {@link #beginUpdate()} / {@link #endUpdate(long)}, which bumps a
+ * version, and readers take a {@link #tryOptimisticRead()} stamp, read what they need and retry if
+ * {@link #validate(long)} fails. The top of book is cached in plain fields so that a torn read can
+ * return stale values but never fail. Beyond the best level, the best {@link #TOP_LEVELS} levels of
+ * each side are cached the same way, in {@link TopLevels} kept in step by every update, so reading
+ * the top of the book is a flat array read and never fails either.
+ */
 public class LocalOrderBook {
-    private Map<String, NavigableMap<BigDecimal, BigDecimal>> orderBook;
+    private static final AtomicIntegerFieldUpdater<LocalOrderBook> REFERENCE_COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(LocalOrderBook.class, "referenceCount");
+
+    /**
+     * Number of levels of each side held in {@link #getTopAsks()} and {@link #getTopBids()}.
+     */
+    public static final int TOP_LEVELS = 10;
+
+    private final int priceScale;
+    private final int qtyScale;
+    private final OrderBookSide asks;
+    private final OrderBookSide bids;
+    private final TopLevels topAsks = new TopLevels(false, TOP_LEVELS);
+    private final TopLevels topBids = new TopLevels(true, TOP_LEVELS);
+    private final OrderBookSnapshotPool pool;
+    private String symbol;
+    private int symbolId = -1;
+    /**
+     * Version counter for lock-free readers. Readers never lock it: they only use its optimistic
+     * read stamps, which carry the memory fences a hand-rolled seqlock would need.
+     */
+    private final StampedLock seqLock = new StampedLock();
+    private long lastUpdateId;
+    /**
+     * Number of unreleased references to a snapshot; zero once it is back in its pool.
+     */
+    private volatile int referenceCount;
 
     public LocalOrderBook() {
-        this.orderBook = new HashMap<>();
+        this(FixedPoint.DEFAULT_SCALE, FixedPoint.DEFAULT_SCALE);
+    }
+
+    public LocalOrderBook(int priceScale, int qtyScale) {
+        this(priceScale, qtyScale, new SortedArrayBookSide(false), new SortedArrayBookSide(true));
+    }
+
+    public LocalOrderBook(int priceScale, int qtyScale, OrderBookSide asks, OrderBookSide bids) {
+        this(priceScale, qtyScale, asks, bids, null);
+    }
+
+    /**
+     * Creates a snapshot book owned by a pool.
+     */
+    LocalOrderBook(int priceScale, int qtyScale, OrderBookSnapshotPool pool) {
+        this(priceScale, qtyScale, new SortedArrayBookSide(false), new SortedArrayBookSide(true), pool);
+    }
+
+    private LocalOrderBook(int priceScale, int qtyScale, OrderBookSide asks, OrderBookSide bids,
+                           OrderBookSnapshotPool pool) {
+        this.priceScale = priceScale;
+        this.qtyScale = qtyScale;
+        this.asks = asks;
+        this.bids = bids;
+        this.pool = pool;
+        topAsks.refresh(asks);
+        topBids.refresh(bids);
+    }
+
+    /**
+     * Creates a book whose sides are price ladders.
+     *
+     * @param tickSize   scaled price increment of the symbol, e.g. 1000000 for 0.01 at price scale 8
+     * @param ladderSize number of ticks each side holds in its ladder before spilling into overflow
+     */
+    public static LocalOrderBook ladder(int priceScale, int qtyScale, long tickSize, int ladderSize) {
+        return new LocalOrderBook(priceScale, qtyScale,
+                new LadderBookSide(false, tickSize, ladderSize), new LadderBookSide(true, tickSize, ladderSize));
+    }
+
+    public OrderBookSide getAsks() {
+        return asks;
+    }
+
+    public OrderBookSide getBids() {
+        return bids;
+    }
+
+    /**
+     * @return the best {@link #TOP_LEVELS} ask levels
+     */
+    public TopLevels getTopAsks() {
+        return topAsks;
+    }
+
+    /**
+     * @return the best {@link #TOP_LEVELS} bid levels
+     */
+    public TopLevels getTopBids() {
+        return topBids;
+    }
+
+    public int getPriceScale() {
+        return priceScale;
+    }
+
+    public int getQtyScale() {
+        return qtyScale;
+    }
+
+    /**
+     * @return the symbol of this book, or null if it is not attached to a gateway
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return the id of the symbol in its {@link SymbolRegistry}, or -1 if it is not attached to a gateway
+     */
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    void setSymbol(String symbol, int symbolId) {
+        this.symbol = symbol;
+        this.symbolId = symbolId;
+    }
+
+    /**
+     * @return the exchange update id of the last depth event applied to this book
+     */
+    public long getLastUpdateId() {
+        return lastUpdateId;
+    }
+
+    public void setLastUpdateId(long lastUpdateId) {
+        checkWritable();
+        this.lastUpdateId = lastUpdateId;
+    }
+
+    /**
+     * Marks the start of a batch of updates by the writer thread, making concurrent optimistic reads
+     * fail validation until {@link #endUpdate(long)}.
+     *
+     * @return the stamp to pass to {@link #endUpdate(long)}
+     */
+    public long beginUpdate() {
+        return seqLock.writeLock();
+    }
+
+    public void endUpdate(long stamp) {
+        seqLock.unlockWrite(stamp);
     }
 
-    public NavigableMap<BigDecimal, BigDecimal> getAsks() {
-        return orderBook.get("ASKS");
+    /**
+     * @return a stamp for an optimistic read, zero if an update is in progress
+     */
+    public long tryOptimisticRead() {
+        return seqLock.tryOptimisticRead();
     }
 
-    public NavigableMap<BigDecimal, BigDecimal> getBids() {
-        return orderBook.get("BIDS");
+    /**
+     * @return true if no update started since the stamp was taken, i.e. everything read in between
+     * is consistent
+     */
+    public boolean validate(long stamp) {
+        return seqLock.validate(stamp);
     }
 
-    public void put(String string, NavigableMap<BigDecimal, BigDecimal> map) {
-        orderBook.put(string, map);
+    /**
+     * Sets the quantity of an ask level, both scaled. A quantity of zero removes the level.
+     */
+    public void updateAsk(long price, long qty) {
+        checkWritable();
+        asks.update(price, qty);
+        topAsks.update(price, qty, asks);
+    }
+
+    /**
+     * Sets the quantity of a bid level, both scaled. A quantity of zero removes the level.
+     */
+    public void updateBid(long price, long qty) {
+        checkWritable();
+        bids.update(price, qty);
+        topBids.update(price, qty, bids);
+    }
+
+    public void clear() {
+        checkWritable();
+        asks.clear();
+        bids.clear();
+        topAsks.refresh(asks);
+        topBids.refresh(bids);
+    }
+
+    /**
+     * @return true if this book is an immutable snapshot of a live book
+     */
+    public boolean isSnapshot() {
+        return pool != null;
+    }
+
+    /**
+     * Adds references to a snapshot, one for each additional consumer it is handed to. Does nothing
+     * for live books.
+     */
+    public void retain(int references) {
+        if (pool != null && references > 0) {
+            REFERENCE_COUNT.addAndGet(this, references);
+        }
+    }
+
+    /**
+     * Drops a reference to a snapshot, handing it back to its pool for reuse once no references
+     * remain. The caller must not read the book after this call. Does nothing for live books or
+     * snapshots already released.
+     */
+    public void release() {
+        if (pool == null) {
+            return;
+        }
+        int count;
+        do {
+            count = referenceCount;
+            if (count == 0) {
+                return;
+            }
+        } while (!REFERENCE_COUNT.compareAndSet(this, count, count - 1));
+        if (count == 1) {
+            pool.release(this);
+        }
+    }
+
+    /**
+     * Fills this snapshot with the current state of a live book. Called by the pool only.
+     */
+    void copyFrom(LocalOrderBook source) {
+        ((SortedArrayBookSide) asks).copyFrom(source.asks);
+        ((SortedArrayBookSide) bids).copyFrom(source.bids);
+        symbol = source.symbol;
+        symbolId = source.symbolId;
+        lastUpdateId = source.lastUpdateId;
+        referenceCount = 1;
+        topAsks.copyFrom(source.topAsks);
+        topBids.copyFrom(source.topBids);
+    }
+
+    private void checkWritable() {
+        if (pool != null) {
+            throw new UnsupportedOperationException("Order book snapshots are immutable");
+        }
+    }
+
+    /**
+     * @return the scaled best ask price, zero if there are no asks
+     */
+    public long getBestAskPrice() {
+        return topAsks.getBestPrice();
+    }
+
+    /**
+     * @return the scaled best ask quantity, zero if there are no asks
+     */
+    public long getBestAskQty() {
+        return topAsks.getBestQty();
+    }
+
+    /**
+     * @return the scaled best bid price, zero if there are no bids
+     */
+    public long getBestBidPrice() {
+        return topBids.getBestPrice();
+    }
+
+    /**
+     * @return the scaled best bid quantity, zero if there are no bids
+     */
+    public long getBestBidQty() {
+        return topBids.getBestQty();
     }
 
     /**
      * @return the best ask in the order book
      */
     public Map.Entry<BigDecimal, BigDecimal> getBestAsk() {
-        return getAsks().lastEntry();
+        return toEntry(topAsks, 0);
     }
 
     public Map.Entry<BigDecimal, BigDecimal> getSecondBestAsk() {
-        return getAsks().lowerEntry(getBestAsk().getKey());
+        return toEntry(topAsks, 1);
     }
 
     public Map.Entry<BigDecimal, BigDecimal> getThirdBestAsk() {
-        return getAsks().lowerEntry(getSecondBestAsk().getKey());
+        return toEntry(topAsks, 2);
     }
 
     /**
      * @return the best bid in the order book
      */
     public Map.Entry<BigDecimal, BigDecimal> getBestBid() {
-        return getBids().firstEntry();
+        return toEntry(topBids, 0);
     }
 
     public Map.Entry<BigDecimal, BigDecimal> getSecondBestBid() {
-        return getAsks().higherEntry(getBestBid().getKey());
+        return toEntry(topBids, 1);
     }
 
     public Map.Entry<BigDecimal, BigDecimal> getThirdBestBid() {
-        return getAsks().higherEntry(getSecondBestBid().getKey());
+        return toEntry(topBids, 2);
     }
 
     /**
-     * @return a depth cache, containing two keys (ASKs and BIDs), and for each, an ordered list of book entries.
+     * Adapts a level to the BigDecimal price / quantity entry older callers expect.
+     *
+     * @return the entry, or null if the side has fewer levels
      */
-    public Map<String, NavigableMap<BigDecimal, BigDecimal>> getLocalOrderBook() {
-        return orderBook;
+    private Map.Entry<BigDecimal, BigDecimal> toEntry(PriceLevels side, int level) {
+        if (level >= side.size()) {
+            return null;
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(
+                FixedPoint.toBigDecimal(side.getPrice(level), priceScale),
+                FixedPoint.toBigDecimal(side.getQty(level), qtyScale));
     }
 }
@@ -1,24 +1,178 @@
 package source.data;
 
+import com.binance.api.client.impl.BinanceApiServiceGenerator;
 import messaging.EventManager;
+import websocket.AggTradeUpdate;
+import websocket.BinanceApiWebSocketClientImplFast;
+import websocket.DepthUpdate;
+import websocket.MarketDataDecoder;
+import websocket.MarketDataHandler;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Maintains the order books of any number of symbols.
+ *
+ * Depth streams are multiplexed over Binance combined streams rather than one connection per symbol.
+ * Symbols are spread round-robin over a configurable number of connections, so that each connection's
+ * message rate stays bounded; Binance allows at most 1024 streams per connection. Every frame is
+ * decoded in place by a {@link MarketDataDecoder} and routed to its symbol's gateway, and so to its own
+ * book, by an array lookup on the symbol's index in its connection.
+ */
 public class MarketDataManager implements Runnable {
-    private String symbol;
-    private BinanceGateway binanceGateway;
+    /**
+     * Binance's limit on the number of streams a single connection may subscribe to.
+     */
+    private static final int MAX_STREAMS_PER_CONNECTION = 1024;
+
+    private final SymbolRegistry symbolRegistry;
+    /**
+     * Gateways indexed by symbol id.
+     */
+    private final BinanceGateway[] binanceGateways;
+    private final int connectionCount;
     private EventManager eventManager;
+    private JournalRecorder journalRecorder;
 
     public MarketDataManager(String symbol, EventManager eventManager) {
-        this.symbol = symbol;
-        this.binanceGateway = new BinanceGateway(symbol);
+        this(symbol, new LocalOrderBook(), eventManager);
+    }
+
+    public MarketDataManager(String symbol, LocalOrderBook orderBook, EventManager eventManager) {
+        this(Collections.singletonList(symbol), s -> orderBook, 1, eventManager);
+    }
+
+    /**
+     * @param orderBookFactory creates the empty book for each symbol, laid out for that symbol
+     * @param connectionCount  number of websocket connections to shard the symbols' depth streams over
+     */
+    public MarketDataManager(List<String> symbols, Function<String, LocalOrderBook> orderBookFactory,
+                             int connectionCount, EventManager eventManager) {
+        if (connectionCount < 1 || (symbols.size() + connectionCount - 1) / connectionCount > MAX_STREAMS_PER_CONNECTION) {
+            throw new IllegalArgumentException(connectionCount + " connections cannot carry "
+                    + symbols.size() + " symbols");
+        }
+        this.symbolRegistry = new SymbolRegistry();
+        this.binanceGateways = new BinanceGateway[symbols.size()];
+        for (String symbol : symbols) {
+            int symbolId = symbolRegistry.intern(symbol);
+            if (binanceGateways[symbolId] != null) {
+                throw new IllegalArgumentException("Duplicate symbol " + symbol);
+            }
+            binanceGateways[symbolId] = new BinanceGateway(symbol, symbolId, orderBookFactory.apply(symbol));
+        }
+        this.connectionCount = Math.min(connectionCount, symbols.size());
         this.eventManager = eventManager;
     }
 
+    /**
+     * @see BinanceGateway#setPublishSnapshots(boolean)
+     */
+    public void setPublishSnapshots(boolean publishSnapshots) {
+        for (BinanceGateway binanceGateway : binanceGateways) {
+            binanceGateway.setPublishSnapshots(publishSnapshots);
+        }
+    }
+
+    /**
+     * Records every depth and trade event received from now on to a journal in the directory, for
+     * replay. Only connections opened after this call are recorded.
+     *
+     * @return the recorder, to be closed once recording should stop
+     */
+    public JournalRecorder startRecording(Path directory, String prefix) throws IOException {
+        String[] symbols = new String[binanceGateways.length];
+        int[] priceScales = new int[binanceGateways.length];
+        int[] qtyScales = new int[binanceGateways.length];
+        for (int symbolId = 0; symbolId < binanceGateways.length; symbolId++) {
+            symbols[symbolId] = binanceGateways[symbolId].getSymbol();
+            priceScales[symbolId] = binanceGateways[symbolId].getDepthCache().getPriceScale();
+            qtyScales[symbolId] = binanceGateways[symbolId].getDepthCache().getQtyScale();
+        }
+        journalRecorder = new JournalRecorder(directory, prefix, symbols, priceScales, qtyScales);
+        return journalRecorder;
+    }
+
     public void subscribeOrderBook() {
-        binanceGateway.startDepthEventStreaming(symbol, eventManager);
+        openStreams("@depth@100ms");
+        for (BinanceGateway binanceGateway : binanceGateways) {
+            binanceGateway.startDepthSynchronization(eventManager);
+        }
     }
 
     public void subscribeTrades() {
-        binanceGateway.startAggTradesEventStreaming(symbol, eventManager);
+        for (BinanceGateway binanceGateway : binanceGateways) {
+            binanceGateway.startAggTrades(eventManager);
+        }
+        openStreams("@aggTrade");
+    }
+
+    /**
+     * Opens the connections carrying one stream type for every symbol, with each connection's frames
+     * decoded in place and routed to the gateway of their stream. When recording, each connection
+     * appends its events to its own journal appender before routing them, and the gateways of a depth
+     * connection record the snapshots their books are synchronised from through it too.
+     */
+    private void openStreams(String streamSuffix) {
+        BinanceApiWebSocketClientImplFast client = new BinanceApiWebSocketClientImplFast(
+                BinanceApiServiceGenerator.getSharedClient());
+        for (int connection = 0; connection < connectionCount; connection++) {
+            List<String> streams = new ArrayList<>();
+            List<BinanceGateway> gateways = new ArrayList<>();
+            for (int symbolId = connection; symbolId < binanceGateways.length; symbolId += connectionCount) {
+                streams.add(binanceGateways[symbolId].getSymbol().toLowerCase() + streamSuffix);
+                gateways.add(binanceGateways[symbolId]);
+            }
+            BinanceGateway[] streamGateways = gateways.toArray(new BinanceGateway[0]);
+            int[] priceScales = new int[streamGateways.length];
+            int[] qtyScales = new int[streamGateways.length];
+            int[] symbolIds = new int[streamGateways.length];
+            for (int i = 0; i < streamGateways.length; i++) {
+                priceScales[i] = streamGateways[i].getDepthCache().getPriceScale();
+                qtyScales[i] = streamGateways[i].getDepthCache().getQtyScale();
+                symbolIds[i] = streamGateways[i].getDepthCache().getSymbolId();
+            }
+            JournalAppender appender = journalRecorder == null ? null : journalRecorder.newAppender();
+            if (appender != null && streamSuffix.startsWith("@depth")) {
+                for (BinanceGateway gateway : streamGateways) {
+                    gateway.setJournalAppender(appender);
+                }
+            }
+            client.onMarketDataStreams(streams, new MarketDataDecoder(streams, priceScales, qtyScales),
+                    new MarketDataHandler() {
+                        @Override
+                        public void onDepthUpdate(DepthUpdate depthUpdate) {
+                            if (appender != null) {
+                                appender.appendDepth(symbolIds[depthUpdate.getStreamIndex()], depthUpdate);
+                            }
+                            streamGateways[depthUpdate.getStreamIndex()].onDepthUpdate(depthUpdate);
+                        }
+
+                        @Override
+                        public void onAggTrade(AggTradeUpdate aggTrade) {
+                            if (appender != null) {
+                                appender.appendAggTrade(symbolIds[aggTrade.getStreamIndex()], aggTrade);
+                            }
+                            streamGateways[aggTrade.getStreamIndex()].onAggTrade(aggTrade);
+                        }
+                    });
+        }
+    }
+
+    public SymbolRegistry getSymbolRegistry() {
+        return symbolRegistry;
+    }
+
+    /**
+     * @return the gateway of a symbol, by its id in {@link #getSymbolRegistry()}
+     */
+    public BinanceGateway getBinanceGateway(int symbolId) {
+        return binanceGateways[symbolId];
     }
 
     @Override
@@ -0,0 +1,32 @@
+package source.data;
+
+/**
+ * One side (bids or asks) of a {@link LocalOrderBook}. Prices and quantities are scaled longs in the
+ * book's price and quantity scales.
+ */
+public interface OrderBookSide extends PriceLevels {
+    /**
+     * Sets the quantity resting at a price level. A quantity of zero removes the level.
+     */
+    void update(long price, long qty);
+
+    void clear();
+
+    boolean isBid();
+
+    /**
+     * @return the scaled quantity resting at a price, or zero if there is no such level
+     */
+    long getQtyAt(long price);
+
+    long getBestPrice();
+
+    long getBestQty();
+
+    /**
+     * Copies up to {@code maxLevels} levels, best first, into the given arrays.
+     *
+     * @return the number of levels copied
+     */
+    int getLevels(long[] prices, long[] qtys, int maxLevels);
+}
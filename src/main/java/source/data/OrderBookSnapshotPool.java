@@ -0,0 +1,48 @@
+package source.data;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of flat-array order book snapshots, so that every book published to consumers is a
+ * consistent view that the gateway thread never mutates.
+ *
+ * Taking a snapshot is two array copies per side rather than a deep copy of the book. Snapshots are
+ * recycled only once the consumer calls {@link LocalOrderBook#release()}, so a consumer that keeps a
+ * snapshot (or never releases it) can never see it change; when the pool is empty a new snapshot is
+ * allocated instead.
+ */
+public class OrderBookSnapshotPool {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final BlockingQueue<LocalOrderBook> freeSnapshots;
+
+    public OrderBookSnapshotPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximum number of released snapshots kept for reuse
+     */
+    public OrderBookSnapshotPool(int capacity) {
+        this.freeSnapshots = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * @return an immutable copy of the given live book
+     */
+    public LocalOrderBook snapshot(LocalOrderBook orderBook) {
+        LocalOrderBook snapshot = freeSnapshots.poll();
+        if (snapshot == null || snapshot.getPriceScale() != orderBook.getPriceScale()
+                || snapshot.getQtyScale() != orderBook.getQtyScale()) {
+            snapshot = new LocalOrderBook(orderBook.getPriceScale(), orderBook.getQtyScale(), this);
+        }
+        snapshot.copyFrom(orderBook);
+        return snapshot;
+    }
+
+    void release(LocalOrderBook snapshot) {
+        // If the pool is already full the snapshot is simply left to the garbage collector
+        freeSnapshots.offer(snapshot);
+    }
+}
@@ -0,0 +1,26 @@
+package source.data;
+
+/**
+ * Read access to the price levels of one side of a book, best first. Prices and quantities are
+ * scaled longs in the book's price and quantity scales.
+ */
+public interface PriceLevels {
+    /**
+     * @return the number of price levels available
+     */
+    int size();
+
+    boolean isEmpty();
+
+    /**
+     * @param level 0 for the best level, 1 for the second best, and so on
+     * @return the scaled price at that level
+     */
+    long getPrice(int level);
+
+    /**
+     * @param level 0 for the best level, 1 for the second best, and so on
+     * @return the scaled quantity at that level
+     */
+    long getQty(int level);
+}
@@ -0,0 +1,151 @@
+package source.data;
+
+import java.util.Arrays;
+
+/**
+ * One side (bids or asks) of an order book, held as two parallel primitive arrays of scaled
+ * prices and quantities.
+ *
+ * Levels are kept sorted so that the best level is always the last element: most depth deltas land
+ * near the touch, so inserts and removals there only shift a handful of elements, and reading the
+ * best level is a plain array read. Nothing is allocated on update unless the side outgrows its
+ * current capacity.
+ */
+public class SortedArrayBookSide implements OrderBookSide {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final boolean bid;
+
+    /**
+     * Sort keys in ascending order, best level last. For bids the key is the price itself, for asks
+     * it is the negated price, so that "higher key" always means "better level".
+     */
+    private long[] keys;
+    private long[] quantities;
+    private int size;
+
+    public SortedArrayBookSide(boolean bid) {
+        this(bid, INITIAL_CAPACITY);
+    }
+
+    public SortedArrayBookSide(boolean bid, int initialCapacity) {
+        this.bid = bid;
+        this.keys = new long[initialCapacity];
+        this.quantities = new long[initialCapacity];
+    }
+
+    @Override
+    public void update(long price, long qty) {
+        long key = bid ? price : -price;
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (qty == 0) {
+            if (index >= 0) {
+                System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+                System.arraycopy(quantities, index + 1, quantities, index, size - index - 1);
+                size--;
+            }
+        } else if (index >= 0) {
+            quantities[index] = qty;
+        } else {
+            int insertionPoint = -index - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+            }
+            System.arraycopy(keys, insertionPoint, keys, insertionPoint + 1, size - insertionPoint);
+            System.arraycopy(quantities, insertionPoint, quantities, insertionPoint + 1, size - insertionPoint);
+            keys[insertionPoint] = key;
+            quantities[insertionPoint] = qty;
+            size++;
+        }
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+    }
+
+    @Override
+    public boolean isBid() {
+        return bid;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long getPrice(int level) {
+        long key = keys[size - 1 - level];
+        return bid ? key : -key;
+    }
+
+    @Override
+    public long getQty(int level) {
+        return quantities[size - 1 - level];
+    }
+
+    @Override
+    public long getQtyAt(long price) {
+        int index = Arrays.binarySearch(keys, 0, size, bid ? price : -price);
+        return index >= 0 ? quantities[index] : 0L;
+    }
+
+    @Override
+    public long getBestPrice() {
+        return getPrice(0);
+    }
+
+    @Override
+    public long getBestQty() {
+        return getQty(0);
+    }
+
+    @Override
+    public int getLevels(long[] prices, long[] qtys, int maxLevels) {
+        int count = Math.min(size, maxLevels);
+        for (int level = 0; level < count; level++) {
+            prices[level] = getPrice(level);
+            qtys[level] = getQty(level);
+        }
+        return count;
+    }
+
+    /**
+     * Replaces the levels of this side with those of another side of the same kind.
+     */
+    public void copyFrom(OrderBookSide source) {
+        if (source.isBid() != bid) {
+            throw new IllegalArgumentException("Cannot copy a " + (source.isBid() ? "bid" : "ask")
+                    + " side into a " + (bid ? "bid" : "ask") + " side");
+        }
+        int sourceSize = source.size();
+        if (sourceSize > keys.length) {
+            keys = new long[Math.max(sourceSize, keys.length * 2)];
+            quantities = new long[keys.length];
+        }
+        if (source instanceof SortedArrayBookSide) {
+            SortedArrayBookSide sorted = (SortedArrayBookSide) source;
+            System.arraycopy(sorted.keys, 0, keys, 0, sourceSize);
+            System.arraycopy(sorted.quantities, 0, quantities, 0, sourceSize);
+        } else {
+            // Levels come back best first; store them best last, as keys
+            source.getLevels(keys, quantities, sourceSize);
+            for (int low = 0, high = sourceSize - 1; low <= high; low++, high--) {
+                long lowKey = keys[low];
+                long lowQty = quantities[low];
+                keys[low] = bid ? keys[high] : -keys[high];
+                quantities[low] = quantities[high];
+                keys[high] = bid ? lowKey : -lowKey;
+                quantities[high] = lowQty;
+            }
+        }
+        size = sourceSize;
+    }
+}
@@ -0,0 +1,48 @@
+package source.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns symbol names into dense integer ids, so that per-symbol state can live in arrays indexed by
+ * symbol id instead of maps keyed by strings. Symbols are upper-cased, the form the REST API uses.
+ */
+public class SymbolRegistry {
+    private final Map<String, Integer> symbolIds = new HashMap<>();
+    private final List<String> symbols = new ArrayList<>();
+
+    /**
+     * @return the id of the symbol, assigning the next free id if it is new
+     */
+    public synchronized int intern(String symbol) {
+        String key = symbol.trim().toUpperCase();
+        Integer symbolId = symbolIds.get(key);
+        if (symbolId == null) {
+            symbolId = symbols.size();
+            symbolIds.put(key, symbolId);
+            symbols.add(key);
+        }
+        return symbolId;
+    }
+
+    /**
+     * @return the id of the symbol, or -1 if it was never interned
+     */
+    public synchronized int getSymbolId(String symbol) {
+        Integer symbolId = symbolIds.get(symbol.trim().toUpperCase());
+        return symbolId == null ? -1 : symbolId;
+    }
+
+    public synchronized String getSymbol(int symbolId) {
+        return symbols.get(symbolId);
+    }
+
+    /**
+     * @return the number of symbols interned, i.e. one more than the highest id
+     */
+    public synchronized int size() {
+        return symbols.size();
+    }
+}
@@ -0,0 +1,130 @@
+package source.data;
+
+/**
+ * The best levels of one side of a {@link LocalOrderBook}, kept in two flat arrays in step with the
+ * side as each level is updated, so that reading the top of the book is an array read whatever the
+ * side's own layout.
+ *
+ * An update only touches the cache when its price falls within the cached levels: a quantity change
+ * is patched in place, a new level is shifted in, pushing the last one out, and a removed level is
+ * shifted out, pulling the next level in from the side. The arrays never grow, so a reader racing
+ * the writer through the book's seqlock may see stale levels but never indexes out of bounds.
+ */
+public final class TopLevels implements PriceLevels {
+    private final boolean bid;
+    private final long[] prices;
+    private final long[] quantities;
+    private int size;
+
+    TopLevels(boolean bid, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.bid = bid;
+        this.prices = new long[capacity];
+        this.quantities = new long[capacity];
+    }
+
+    /**
+     * @return the maximum number of levels cached
+     */
+    public int getCapacity() {
+        return prices.length;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param level 0 for the best level, up to {@link #size()} - 1
+     */
+    @Override
+    public long getPrice(int level) {
+        return prices[level];
+    }
+
+    /**
+     * @param level 0 for the best level, up to {@link #size()} - 1
+     */
+    @Override
+    public long getQty(int level) {
+        return quantities[level];
+    }
+
+    /**
+     * @return the best price, zero if the side is empty
+     */
+    long getBestPrice() {
+        return size == 0 ? 0L : prices[0];
+    }
+
+    /**
+     * @return the best quantity, zero if the side is empty
+     */
+    long getBestQty() {
+        return size == 0 ? 0L : quantities[0];
+    }
+
+    /**
+     * Applies a level update that has just been applied to the side.
+     */
+    void update(long price, long qty, OrderBookSide side) {
+        int capacity = prices.length;
+        if (size == capacity && isBetter(prices[capacity - 1], price)) {
+            // Below the cached levels, so nothing cached moves
+            return;
+        }
+        int level = 0;
+        while (level < size && isBetter(prices[level], price)) {
+            level++;
+        }
+        if (level < size && prices[level] == price) {
+            if (qty != 0) {
+                quantities[level] = qty;
+                return;
+            }
+            System.arraycopy(prices, level + 1, prices, level, size - level - 1);
+            System.arraycopy(quantities, level + 1, quantities, level, size - level - 1);
+            size--;
+            if (side.size() > size) {
+                prices[size] = side.getPrice(size);
+                quantities[size] = side.getQty(size);
+                size++;
+            }
+        } else if (qty != 0) {
+            int moved = (size == capacity ? capacity - 1 : size) - level;
+            System.arraycopy(prices, level, prices, level + 1, moved);
+            System.arraycopy(quantities, level, quantities, level + 1, moved);
+            prices[level] = price;
+            quantities[level] = qty;
+            if (size < capacity) {
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Reloads every cached level from the side.
+     */
+    void refresh(OrderBookSide side) {
+        size = side.getLevels(prices, quantities, prices.length);
+    }
+
+    void copyFrom(TopLevels source) {
+        int count = Math.min(source.size, prices.length);
+        System.arraycopy(source.prices, 0, prices, 0, count);
+        System.arraycopy(source.quantities, 0, quantities, 0, count);
+        size = count;
+    }
+
+    private boolean isBetter(long price, long than) {
+        return bid ? price > than : price < than;
+    }
+}
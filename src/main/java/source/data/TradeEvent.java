@@ -0,0 +1,147 @@
+package source.data;
+
+/**
+ * An aggregate trade as published on the event bus, with price and quantity as scaled longs.
+ *
+ * Trade events are preallocated slots of the bus's ring buffer, filled in place for each trade and
+ * reused once every consumer has handled them: a consumer must copy what it needs to keep rather
+ * than hold on to the event.
+ */
+public class TradeEvent {
+    private String symbol;
+    private int symbolId = -1;
+    private int priceScale;
+    private int qtyScale;
+    private long eventTime;
+    private long aggregatedTradeId;
+    private long price;
+    private long qty;
+    private long firstBreakdownTradeId;
+    private long lastBreakdownTradeId;
+    private long tradeTime;
+    private boolean buyerMaker;
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return the id of the symbol in its {@link SymbolRegistry}, or -1 if unknown
+     */
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public void setSymbol(String symbol, int symbolId) {
+        this.symbol = symbol;
+        this.symbolId = symbolId;
+    }
+
+    public int getPriceScale() {
+        return priceScale;
+    }
+
+    public int getQtyScale() {
+        return qtyScale;
+    }
+
+    public void setScales(int priceScale, int qtyScale) {
+        this.priceScale = priceScale;
+        this.qtyScale = qtyScale;
+    }
+
+    public long getEventTime() {
+        return eventTime;
+    }
+
+    public void setEventTime(long eventTime) {
+        this.eventTime = eventTime;
+    }
+
+    public long getAggregatedTradeId() {
+        return aggregatedTradeId;
+    }
+
+    public void setAggregatedTradeId(long aggregatedTradeId) {
+        this.aggregatedTradeId = aggregatedTradeId;
+    }
+
+    /**
+     * @return the scaled price, in the event's price scale
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    public void setPrice(long price) {
+        this.price = price;
+    }
+
+    /**
+     * @return the scaled quantity, in the event's quantity scale
+     */
+    public long getQty() {
+        return qty;
+    }
+
+    public void setQty(long qty) {
+        this.qty = qty;
+    }
+
+    public long getFirstBreakdownTradeId() {
+        return firstBreakdownTradeId;
+    }
+
+    public void setFirstBreakdownTradeId(long firstBreakdownTradeId) {
+        this.firstBreakdownTradeId = firstBreakdownTradeId;
+    }
+
+    public long getLastBreakdownTradeId() {
+        return lastBreakdownTradeId;
+    }
+
+    public void setLastBreakdownTradeId(long lastBreakdownTradeId) {
+        this.lastBreakdownTradeId = lastBreakdownTradeId;
+    }
+
+    public long getTradeTime() {
+        return tradeTime;
+    }
+
+    public void setTradeTime(long tradeTime) {
+        this.tradeTime = tradeTime;
+    }
+
+    public boolean isBuyerMaker() {
+        return buyerMaker;
+    }
+
+    public void setBuyerMaker(boolean buyerMaker) {
+        this.buyerMaker = buyerMaker;
+    }
+
+    public void copyFrom(TradeEvent source) {
+        symbol = source.symbol;
+        symbolId = source.symbolId;
+        priceScale = source.priceScale;
+        qtyScale = source.qtyScale;
+        eventTime = source.eventTime;
+        aggregatedTradeId = source.aggregatedTradeId;
+        price = source.price;
+        qty = source.qty;
+        firstBreakdownTradeId = source.firstBreakdownTradeId;
+        lastBreakdownTradeId = source.lastBreakdownTradeId;
+        tradeTime = source.tradeTime;
+        buyerMaker = source.buyerMaker;
+    }
+
+    @Override
+    public String toString() {
+        return "TradeEvent{symbol=" + symbol
+                + ", aggregatedTradeId=" + aggregatedTradeId
+                + ", price=" + FixedPoint.toBigDecimal(price, priceScale).toPlainString()
+                + ", qty=" + FixedPoint.toBigDecimal(qty, qtyScale).toPlainString()
+                + ", tradeTime=" + tradeTime
+                + ", buyerMaker=" + buyerMaker + "}";
+    }
+}
@@ -0,0 +1,20 @@
+package source.scheduling;
+
+/**
+ * Source of the current time for the scheduler and for time stamps on events. The
+ * {@link SystemClock} follows the wall clock; a {@link SimulatedClock} follows the time of the
+ * market data being replayed, so that timers fire at the same points in the data however fast it is
+ * processed.
+ */
+public interface Clock {
+    /**
+     * @return the current time in nanoseconds, for measuring intervals; only differences between
+     * values are meaningful
+     */
+    long nanoTime();
+
+    /**
+     * @return the current time in milliseconds since the epoch
+     */
+    long currentTimeMillis();
+}
@@ -0,0 +1,409 @@
+package source.scheduling;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel, after Varghese and Lauck: timers are kept in a ring of buckets, one per tick,
+ * and a single worker thread wakes once per tick to run the timers of the current bucket. Scheduling
+ * and cancelling are O(1), and the worker's cost per tick does not depend on how many timers are
+ * scheduled for later, so thousands of periodic timers cost little more than one.
+ *
+ * A timer runs within one tick (plus the scheduler's wake-up latency) after its deadline. Periodic
+ * timers keep a fixed rate: each deadline is the previous one plus the period, so lateness never
+ * accumulates. Tasks run on the worker thread and should only hand work off, e.g. publish an event.
+ *
+ * Time comes from a {@link Clock}. With a {@link SimulatedClock} there is no worker thread: the wheel
+ * turns, with the same semantics, on the thread that advances the clock, and skips straight from one
+ * occupied bucket to the next: a periodic timer costs a step per firing (and per revolution of the
+ * wheel before it), not one per tick.
+ */
+public class HashedWheelTimer {
+    public static final long DEFAULT_TICK_NANOS = TimeUnit.MICROSECONDS.toNanos(250);
+    public static final int DEFAULT_WHEEL_SIZE = 4096;
+
+    private static final int WORKER_INIT = 0;
+    private static final int WORKER_STARTED = 1;
+    private static final int WORKER_SHUTDOWN = 2;
+    private static final AtomicIntegerFieldUpdater<HashedWheelTimer> WORKER_STATE =
+            AtomicIntegerFieldUpdater.newUpdater(HashedWheelTimer.class, "workerState");
+
+    private final Clock clock;
+    private final boolean simulated;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    /**
+     * One bit per bucket, set while the bucket holds timeouts.
+     */
+    private final long[] occupied;
+    private final Thread workerThread;
+    private final Queue<TimeoutEntry> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<TimeoutEntry> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private volatile int workerState = WORKER_INIT;
+    /**
+     * {@link Clock#nanoTime()} when the wheel started turning; deadlines are relative to it.
+     */
+    private volatile long startTime;
+    private volatile boolean startTimeSet;
+    private final Object startLock = new Object();
+    private long tick;
+
+    public HashedWheelTimer() {
+        this(SystemClock.INSTANCE);
+    }
+
+    public HashedWheelTimer(Clock clock) {
+        this(clock, DEFAULT_TICK_NANOS, DEFAULT_WHEEL_SIZE);
+    }
+
+    public HashedWheelTimer(long tickNanos, int wheelSize) {
+        this(SystemClock.INSTANCE, tickNanos, wheelSize);
+    }
+
+    /**
+     * @param tickNanos duration of a tick, the timer's resolution
+     * @param wheelSize number of buckets, a power of two; timers further than a revolution away are
+     *                  skipped over, for a revolution at a time, until their deadline comes round
+     */
+    public HashedWheelTimer(Clock clock, long tickNanos, int wheelSize) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive, got " + tickNanos);
+        }
+        if (wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two, got " + wheelSize);
+        }
+        this.clock = clock;
+        this.simulated = clock instanceof SimulatedClock;
+        this.tickNanos = tickNanos;
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket(i);
+        }
+        this.mask = wheelSize - 1;
+        this.occupied = new long[(wheelSize + 63) / 64];
+        if (simulated) {
+            this.workerThread = null;
+            setStartTime(clock.nanoTime());
+            workerState = WORKER_STARTED;
+            ((SimulatedClock) clock).addListener(this::onTimeAdvanced);
+        } else {
+            this.workerThread = new Thread(this::runWorker, "wheel-timer");
+            workerThread.setDaemon(true);
+        }
+    }
+
+    /**
+     * Runs a task once after a delay.
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        return schedule(task, unit.toNanos(delay), 0L);
+    }
+
+    /**
+     * Runs a task after an initial delay, and then at a fixed rate.
+     */
+    public Timeout schedulePeriodic(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive, got " + period);
+        }
+        return schedule(task, unit.toNanos(initialDelay), unit.toNanos(period));
+    }
+
+    private Timeout schedule(Runnable task, long delayNanos, long periodNanos) {
+        start();
+        TimeoutEntry timeout = new TimeoutEntry(this, task, clock.nanoTime() - startTime + Math.max(delayNanos, 0L),
+                periodNanos);
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Starts the worker thread, which scheduling a task does if needed.
+     */
+    public void start() {
+        if (workerState == WORKER_INIT && WORKER_STATE.compareAndSet(this, WORKER_INIT, WORKER_STARTED)) {
+            workerThread.start();
+        }
+        if (workerState == WORKER_SHUTDOWN) {
+            throw new IllegalStateException("Timer has been stopped");
+        }
+        // Deadlines are relative to the worker's start time, so wait until it is set
+        synchronized (startLock) {
+            while (!startTimeSet) {
+                try {
+                    startLock.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while starting the timer", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the worker thread. Tasks not run yet never run.
+     */
+    public void stop() {
+        if (WORKER_STATE.getAndSet(this, WORKER_SHUTDOWN) == WORKER_STARTED && workerThread != null) {
+            LockSupport.unpark(workerThread);
+        }
+    }
+
+    private void setStartTime(long startTime) {
+        synchronized (startLock) {
+            this.startTime = startTime;
+            startTimeSet = true;
+            startLock.notifyAll();
+        }
+    }
+
+    private void runWorker() {
+        setStartTime(clock.nanoTime());
+        while (workerState == WORKER_STARTED) {
+            long deadline = waitForNextTick();
+            if (deadline < 0) {
+                break;
+            }
+            expireTick(deadline);
+        }
+    }
+
+    /**
+     * Turns the wheel of a simulated clock up to the clock's new time.
+     */
+    private void onTimeAdvanced(long nanoTime) {
+        // Ticks before this one have ended by the clock's new time
+        long endTick = (nanoTime - startTime) / tickNanos;
+        while (workerState == WORKER_STARTED && tick < endTick) {
+            removeCancelledTimeouts();
+            transferPendingTimeouts();
+            // Empty buckets have nothing to run, so skip to the next occupied one
+            tick = Math.min(nextOccupiedTick(), endTick);
+            if (tick < endTick) {
+                expireTick(tickNanos * (tick + 1));
+            }
+        }
+    }
+
+    /**
+     * @return the first tick from the current one whose bucket holds timeouts, or
+     * {@link Long#MAX_VALUE} if none does
+     */
+    private long nextOccupiedTick() {
+        int start = (int) (tick & mask);
+        int wordBits = Math.min(64, wheel.length);
+        int distance = 0;
+        while (distance < wheel.length) {
+            int index = (start + distance) & mask;
+            // Buckets from this one to the end of its word
+            long bits = occupied[index >>> 6] >>> (index & 63);
+            if (bits != 0) {
+                return tick + distance + Long.numberOfTrailingZeros(bits);
+            }
+            distance += wordBits - (index & 63);
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Runs the timeouts of the current tick.
+     *
+     * @param deadline the time, relative to the start time, up to which timeouts are due
+     */
+    private void expireTick(long deadline) {
+        removeCancelledTimeouts();
+        transferPendingTimeouts();
+        wheel[(int) (tick & mask)].expireTimeouts(deadline);
+        tick++;
+    }
+
+    /**
+     * Sleeps until the end of the current tick.
+     *
+     * @return the tick's end, relative to the start time, or -1 if the timer was stopped
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long currentTime = clock.nanoTime() - startTime;
+            long sleepNanos = deadline - currentTime;
+            if (sleepNanos <= 0) {
+                return currentTime;
+            }
+            if (workerState != WORKER_STARTED) {
+                return -1;
+            }
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        TimeoutEntry timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.state == TimeoutEntry.ST_INIT) {
+                insert(timeout, tick);
+            }
+        }
+    }
+
+    /**
+     * Puts a timeout in the bucket of its deadline, or of the earliest tick given if the deadline
+     * has passed.
+     *
+     * @param earliestTick the next tick whose bucket will be expired
+     */
+    private void insert(TimeoutEntry timeout, long earliestTick) {
+        long bucketTick = Math.max(timeout.deadline / tickNanos, earliestTick);
+        timeout.remainingRounds = (bucketTick - earliestTick) / wheel.length;
+        wheel[(int) (bucketTick & mask)].add(timeout);
+    }
+
+    private void removeCancelledTimeouts() {
+        TimeoutEntry timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * Timeouts of one slot of the wheel, in an intrusive doubly linked list so that adding and
+     * removing allocate nothing. Only the worker thread touches buckets.
+     */
+    private final class Bucket {
+        private final int index;
+        private TimeoutEntry head;
+        private TimeoutEntry tail;
+
+        private Bucket(int index) {
+            this.index = index;
+        }
+
+        private void add(TimeoutEntry timeout) {
+            if (head == null) {
+                occupied[index >>> 6] |= 1L << index;
+            }
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        private void remove(TimeoutEntry timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+            if (head == null) {
+                occupied[index >>> 6] &= ~(1L << index);
+            }
+        }
+
+        private void expireTimeouts(long deadline) {
+            TimeoutEntry rescheduled = null;
+            TimeoutEntry timeout = head;
+            while (timeout != null) {
+                TimeoutEntry next = timeout.next;
+                if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                } else if (timeout.deadline <= deadline) {
+                    remove(timeout);
+                    timeout.expire();
+                    if (timeout.periodNanos > 0 && timeout.state == TimeoutEntry.ST_INIT) {
+                        // Re-inserted once the bucket is done, so that it is not visited twice
+                        timeout.deadline += timeout.periodNanos;
+                        timeout.next = rescheduled;
+                        rescheduled = timeout;
+                    }
+                }
+                timeout = next;
+            }
+            while (rescheduled != null) {
+                TimeoutEntry next = rescheduled.next;
+                // A periodic timer running late catches up from the next tick, not a revolution later
+                insert(rescheduled, tick + 1);
+                rescheduled = next;
+            }
+        }
+    }
+
+    private static final class TimeoutEntry implements Timeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<TimeoutEntry> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(TimeoutEntry.class, "state");
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long periodNanos;
+        private long deadline;
+        private long remainingRounds;
+        private volatile int state = ST_INIT;
+        private Bucket bucket;
+        private TimeoutEntry prev;
+        private TimeoutEntry next;
+
+        private TimeoutEntry(HashedWheelTimer timer, Runnable task, long deadline, long periodNanos) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            // Unlinked from its bucket by the worker, which owns the buckets
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        private void expire() {
+            if (periodNanos == 0 ? !STATE.compareAndSet(this, ST_INIT, ST_EXPIRED) : state != ST_INIT) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                System.out.println("Timer task " + task + " failed: " + t);
+                t.printStackTrace();
+            }
+        }
+    }
+}
@@ -1,7 +1,15 @@
 package source.scheduling;
 
+/**
+ * A timer firing. Schedule events are preallocated slots of the event bus, refilled for each firing,
+ * so consumers must not hold on to them.
+ */
 public class ScheduleEvent {
     private String tag;
+    private long time;
+
+    public ScheduleEvent() {
+    }
 
     public ScheduleEvent(String tag) {
         this.tag = tag;
@@ -10,4 +18,25 @@ public class ScheduleEvent {
     public String getTag() {
         return tag;
     }
+
+    public void setTag(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * @return the time the timer fired, in milliseconds since the epoch by the scheduler's
+     * {@link Clock}, i.e. the event time of the data when replaying
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    public void copyFrom(ScheduleEvent source) {
+        tag = source.tag;
+        time = source.time;
+    }
 }
@@ -1,36 +1,44 @@
 package source.scheduling;
 
 import messaging.EventManager;
-import org.quartz.JobBuilder;
-import org.quartz.JobDetail;
-import org.quartz.Scheduler;
-import org.quartz.SchedulerException;
-import org.quartz.SimpleScheduleBuilder;
-import org.quartz.Trigger;
-import org.quartz.TriggerBuilder;
-import org.quartz.impl.StdSchedulerFactory;
 
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emits tagged {@link ScheduleEvent}s into the event bus from an in-process {@link HashedWheelTimer}.
+ * With a {@link SimulatedClock} the timers follow replayed market data instead of the wall clock.
+ */
 public class SchedulerManager {
 
-    private Scheduler scheduler;
+    private HashedWheelTimer timer;
     private EventManager eventManager;
 
-    public SchedulerManager(EventManager eventManager) throws SchedulerException {
-        this.scheduler = StdSchedulerFactory.getDefaultScheduler();
+    public SchedulerManager(EventManager eventManager) {
+        this(eventManager, new HashedWheelTimer());
+    }
+
+    public SchedulerManager(EventManager eventManager, Clock clock) {
+        this(eventManager, new HashedWheelTimer(clock));
+    }
+
+    public SchedulerManager(EventManager eventManager, HashedWheelTimer timer) {
+        this.timer = timer;
         this.eventManager = eventManager;
     }
 
-    public void periodicCallBack(int intervalMillis, String tag) throws SchedulerException {
-        Trigger trigger = TriggerBuilder.newTrigger()
-                .startNow()
-                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
-                        .withIntervalInMilliseconds(intervalMillis)
-                        .repeatForever())
-                .build();
-        JobDetail timer = JobBuilder.newJob(Timer.class).build();
-        timer.getJobDataMap().put("em", eventManager);
-        timer.getJobDataMap().put("tag", tag);
-        scheduler.scheduleJob(timer, trigger);
-        scheduler.start();
+    /**
+     * Publishes a schedule event with the given tag now, and then every interval.
+     *
+     * @return a handle to cancel the callback with
+     */
+    public Timeout periodicCallBack(int intervalMillis, String tag) {
+        return timer.schedulePeriodic(new Timer(eventManager, timer.getClock(), tag), 0L, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops every callback.
+     */
+    public void shutdown() {
+        timer.stop();
     }
 }
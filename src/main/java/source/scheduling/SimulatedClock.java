@@ -0,0 +1,72 @@
+package source.scheduling;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clock that only moves when told to, typically to the event time of each market data event
+ * replayed. Time never goes backwards: advancing to an earlier time is ignored.
+ *
+ * Timers driven by this clock, see {@link HashedWheelTimer#HashedWheelTimer(Clock)}, fire on the
+ * thread that advances it, before {@link #advanceTo(long)} returns, so a replay sees exactly the
+ * timer events that live processing would have seen between two market data events.
+ */
+public class SimulatedClock implements Clock {
+    /**
+     * Called as the clock advances.
+     */
+    public interface Listener {
+        void onTimeAdvanced(long nanoTime);
+    }
+
+    private static final Listener[] NO_LISTENERS = new Listener[0];
+
+    private volatile long nanoTime;
+    private volatile Listener[] listeners = NO_LISTENERS;
+
+    /**
+     * @param startMillis the initial time, in milliseconds since the epoch
+     */
+    public SimulatedClock(long startMillis) {
+        this.nanoTime = TimeUnit.MILLISECONDS.toNanos(startMillis);
+    }
+
+    /**
+     * Nanoseconds since the epoch, so that {@link #nanoTime()} and {@link #currentTimeMillis()} agree.
+     */
+    @Override
+    public long nanoTime() {
+        return nanoTime;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanoTime);
+    }
+
+    /**
+     * Moves the clock forward to a time in nanoseconds since the epoch, firing whatever timers fall due.
+     */
+    public void advanceTo(long nanoTime) {
+        if (nanoTime <= this.nanoTime) {
+            return;
+        }
+        this.nanoTime = nanoTime;
+        for (Listener listener : listeners) {
+            listener.onTimeAdvanced(nanoTime);
+        }
+    }
+
+    /**
+     * Moves the clock forward to a time in milliseconds since the epoch, e.g. an exchange event time.
+     */
+    public void advanceToMillis(long millis) {
+        advanceTo(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    public synchronized void addListener(Listener listener) {
+        Listener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[updated.length - 1] = listener;
+        listeners = updated;
+    }
+}
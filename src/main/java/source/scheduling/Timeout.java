@@ -0,0 +1,21 @@
+package source.scheduling;
+
+/**
+ * Handle on a task scheduled with a {@link HashedWheelTimer}.
+ */
+public interface Timeout {
+    /**
+     * Cancels the task: a one-shot task that has not run yet never runs, and a periodic task runs no
+     * more. Safe to call from any thread, including from the task itself.
+     *
+     * @return false if the task was already cancelled or, for a one-shot task, has already run
+     */
+    boolean cancel();
+
+    boolean isCancelled();
+
+    /**
+     * @return true once a one-shot task has run; never true for a periodic task
+     */
+    boolean isExpired();
+}
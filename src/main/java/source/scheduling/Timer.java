@@ -1,20 +1,34 @@
 package source.scheduling;
 
 import messaging.EventManager;
-import org.quartz.Job;
-import org.quartz.JobExecutionContext;
-import org.quartz.JobExecutionException;
 
-public class Timer implements Job {
+/**
+ * Periodic timer task that publishes a {@link ScheduleEvent} with its tag, stamped with the clock's
+ * time, on every firing. The event is copied into the bus, so the timer reuses a single one.
+ */
+public class Timer implements Runnable {
+    private final EventManager eventManager;
+    private final Clock clock;
+    private final ScheduleEvent event;
+
+    public Timer(EventManager eventManager, Clock clock, String tag) {
+        this.eventManager = eventManager;
+        this.clock = clock;
+        this.event = new ScheduleEvent(tag);
+    }
 
     @Override
-    public void execute(JobExecutionContext jobExecutionContext) throws JobExecutionException {
-        EventManager eventManager = (EventManager) jobExecutionContext.getJobDetail().getJobDataMap().get("em");
-        String tag = (String) jobExecutionContext.getJobDetail().getJobDataMap().get("tag");
+    public void run() {
         try {
-            eventManager.publish(new ScheduleEvent(tag));
+            event.setTime(clock.currentTimeMillis());
+            eventManager.publish(event);
         } catch (InterruptedException ex) {
             ex.printStackTrace();
         }
     }
+
+    @Override
+    public String toString() {
+        return "Timer{" + event.getTag() + "}";
+    }
 }
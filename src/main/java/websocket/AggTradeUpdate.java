@@ -0,0 +1,100 @@
+package websocket;
+
+/**
+ * Reusable flyweight holding one decoded aggregate trade event, with price and quantity as scaled
+ * longs in the scales of the event's stream. The decoder overwrites it with every frame.
+ */
+public class AggTradeUpdate {
+    private int streamIndex;
+    private long eventTime;
+    private long aggregatedTradeId;
+    private long price;
+    private long qty;
+    private long firstBreakdownTradeId;
+    private long lastBreakdownTradeId;
+    private long tradeTime;
+    private boolean buyerMaker;
+
+    public void reset(int streamIndex) {
+        this.streamIndex = streamIndex;
+        this.eventTime = 0L;
+        this.aggregatedTradeId = 0L;
+        this.price = 0L;
+        this.qty = 0L;
+        this.firstBreakdownTradeId = 0L;
+        this.lastBreakdownTradeId = 0L;
+        this.tradeTime = 0L;
+        this.buyerMaker = false;
+    }
+
+    public void setEventTime(long eventTime) {
+        this.eventTime = eventTime;
+    }
+
+    public void setAggregatedTradeId(long aggregatedTradeId) {
+        this.aggregatedTradeId = aggregatedTradeId;
+    }
+
+    public void setPrice(long price) {
+        this.price = price;
+    }
+
+    public void setQty(long qty) {
+        this.qty = qty;
+    }
+
+    public void setFirstBreakdownTradeId(long firstBreakdownTradeId) {
+        this.firstBreakdownTradeId = firstBreakdownTradeId;
+    }
+
+    public void setLastBreakdownTradeId(long lastBreakdownTradeId) {
+        this.lastBreakdownTradeId = lastBreakdownTradeId;
+    }
+
+    public void setTradeTime(long tradeTime) {
+        this.tradeTime = tradeTime;
+    }
+
+    public void setBuyerMaker(boolean buyerMaker) {
+        this.buyerMaker = buyerMaker;
+    }
+
+    /**
+     * @return index of the event's stream in the list its connection was opened with
+     */
+    public int getStreamIndex() {
+        return streamIndex;
+    }
+
+    public long getEventTime() {
+        return eventTime;
+    }
+
+    public long getAggregatedTradeId() {
+        return aggregatedTradeId;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public long getQty() {
+        return qty;
+    }
+
+    public long getFirstBreakdownTradeId() {
+        return firstBreakdownTradeId;
+    }
+
+    public long getLastBreakdownTradeId() {
+        return lastBreakdownTradeId;
+    }
+
+    public long getTradeTime() {
+        return tradeTime;
+    }
+
+    public boolean isBuyerMaker() {
+        return buyerMaker;
+    }
+}
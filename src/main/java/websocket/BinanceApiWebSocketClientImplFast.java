@@ -8,9 +8,11 @@ import com.binance.api.client.impl.BinanceApiWebSocketListener;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
 
 import java.io.Closeable;
 import java.util.Arrays;
+import java.util.List;
 import java.util.stream.Collectors;
 
 public class BinanceApiWebSocketClientImplFast extends BinanceApiWebSocketClientImpl {
@@ -28,8 +30,30 @@ public class BinanceApiWebSocketClientImplFast extends BinanceApiWebSocketClient
         return this.createNewWebSocket(channel, new BinanceApiWebSocketListener(callback, DepthEvent.class));
     }
 
+    /**
+     * Opens one connection carrying all the given streams (e.g. "btcusdt@depth@100ms",
+     * "btcusdt@aggTrade"), using Binance's combined stream endpoint. Frames are decoded by the given
+     * decoder, which must have been built for the same list of streams, and handed to the handler.
+     */
+    public Closeable onMarketDataStreams(List<String> streams, MarketDataDecoder decoder, MarketDataHandler handler) {
+        String streamingUrl = String.format("%s?streams=%s", combinedStreamBaseUrl(), String.join("/", streams));
+        return this.openWebSocket(streamingUrl, new MarketDataWebSocketListener(decoder, handler));
+    }
+
+    /**
+     * @return the combined stream endpoint, a sibling of the raw stream endpoint ".../ws"
+     */
+    private static String combinedStreamBaseUrl() {
+        String baseUrl = BinanceApiConstants.WS_API_BASE_URL;
+        return baseUrl.substring(0, baseUrl.lastIndexOf('/')) + "/stream";
+    }
+
     private Closeable createNewWebSocket(String channel, BinanceApiWebSocketListener<?> listener) {
         String streamingUrl = String.format("%s/%s", BinanceApiConstants.WS_API_BASE_URL, channel);
+        return this.openWebSocket(streamingUrl, listener);
+    }
+
+    private Closeable openWebSocket(String streamingUrl, WebSocketListener listener) {
         Request request = (new Request.Builder()).url(streamingUrl).build();
         WebSocket webSocket = this.client.newWebSocket(request, listener);
         return () -> {
@@ -0,0 +1,131 @@
+package websocket;
+
+import java.util.Arrays;
+
+/**
+ * Reusable flyweight holding one decoded diff depth event, with prices and quantities as scaled
+ * longs in the scales of the event's stream. The decoder overwrites it with every frame, so handlers
+ * must copy anything they need to keep.
+ */
+public class DepthUpdate {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int streamIndex;
+    private long eventTime;
+    private long firstUpdateId;
+    private long finalUpdateId;
+
+    private long[] bidPrices = new long[INITIAL_CAPACITY];
+    private long[] bidQtys = new long[INITIAL_CAPACITY];
+    private int bidCount;
+    private long[] askPrices = new long[INITIAL_CAPACITY];
+    private long[] askQtys = new long[INITIAL_CAPACITY];
+    private int askCount;
+
+    /**
+     * Starts a new event, discarding all levels.
+     */
+    public void reset(int streamIndex, long eventTime, long firstUpdateId, long finalUpdateId) {
+        this.streamIndex = streamIndex;
+        this.eventTime = eventTime;
+        this.firstUpdateId = firstUpdateId;
+        this.finalUpdateId = finalUpdateId;
+        this.bidCount = 0;
+        this.askCount = 0;
+    }
+
+    public void addBid(long price, long qty) {
+        if (bidCount == bidPrices.length) {
+            bidPrices = Arrays.copyOf(bidPrices, bidCount * 2);
+            bidQtys = Arrays.copyOf(bidQtys, bidCount * 2);
+        }
+        bidPrices[bidCount] = price;
+        bidQtys[bidCount] = qty;
+        bidCount++;
+    }
+
+    public void addAsk(long price, long qty) {
+        if (askCount == askPrices.length) {
+            askPrices = Arrays.copyOf(askPrices, askCount * 2);
+            askQtys = Arrays.copyOf(askQtys, askCount * 2);
+        }
+        askPrices[askCount] = price;
+        askQtys[askCount] = qty;
+        askCount++;
+    }
+
+    public void copyFrom(DepthUpdate other) {
+        reset(other.streamIndex, other.eventTime, other.firstUpdateId, other.finalUpdateId);
+        for (int i = 0; i < other.bidCount; i++) {
+            addBid(other.bidPrices[i], other.bidQtys[i]);
+        }
+        for (int i = 0; i < other.askCount; i++) {
+            addAsk(other.askPrices[i], other.askQtys[i]);
+        }
+    }
+
+    void setStreamIndex(int streamIndex) {
+        this.streamIndex = streamIndex;
+    }
+
+    void setEventTime(long eventTime) {
+        this.eventTime = eventTime;
+    }
+
+    void setFirstUpdateId(long firstUpdateId) {
+        this.firstUpdateId = firstUpdateId;
+    }
+
+    void setFinalUpdateId(long finalUpdateId) {
+        this.finalUpdateId = finalUpdateId;
+    }
+
+    /**
+     * @return index of the event's stream in the list its connection was opened with
+     */
+    public int getStreamIndex() {
+        return streamIndex;
+    }
+
+    public long getEventTime() {
+        return eventTime;
+    }
+
+    /**
+     * @return the first update id in the event (U)
+     */
+    public long getFirstUpdateId() {
+        return firstUpdateId;
+    }
+
+    /**
+     * @return the final update id in the event (u)
+     */
+    public long getFinalUpdateId() {
+        return finalUpdateId;
+    }
+
+    public int getBidCount() {
+        return bidCount;
+    }
+
+    public long getBidPrice(int i) {
+        return bidPrices[i];
+    }
+
+    public long getBidQty(int i) {
+        return bidQtys[i];
+    }
+
+    public int getAskCount() {
+        return askCount;
+    }
+
+    public long getAskPrice(int i) {
+        return askPrices[i];
+    }
+
+    public long getAskQty(int i) {
+        return askQtys[i];
+    }
+}
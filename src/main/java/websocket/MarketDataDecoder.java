@@ -0,0 +1,376 @@
+package websocket;
+
+import source.data.FixedPoint;
+
+import java.util.List;
+
+/**
+ * Streaming decoder for Binance diff depth and aggregate trade frames, either raw or wrapped in a
+ * combined stream envelope ({"stream":"btcusdt@depth@100ms","data":{...}}).
+ *
+ * The frame is scanned once, in place: prices and quantities are parsed straight from the frame's
+ * characters into scaled longs and written into a reusable {@link DepthUpdate} or
+ * {@link AggTradeUpdate}, and stream names are resolved to their index through a hash table built
+ * up front. No strings, boxed numbers or intermediate objects are created per frame.
+ *
+ * A decoder holds its parse state in fields, so each connection needs its own instance.
+ */
+public class MarketDataDecoder {
+    private final String[] streams;
+    private final int[] priceScales;
+    private final int[] qtyScales;
+    /**
+     * Open-addressing table of stream index + 1 by stream name hash; zero marks an empty slot.
+     */
+    private final int[] streamTable;
+
+    private final DepthUpdate depthUpdate = new DepthUpdate();
+    private final AggTradeUpdate aggTrade = new AggTradeUpdate();
+
+    private CharSequence text;
+    private int pos;
+    private int end;
+
+    /**
+     * @param streams     stream names, e.g. "btcusdt@depth@100ms", in the order the connection lists them
+     * @param priceScales price scale of each stream
+     * @param qtyScales   quantity scale of each stream
+     */
+    public MarketDataDecoder(List<String> streams, int[] priceScales, int[] qtyScales) {
+        this.streams = streams.toArray(new String[0]);
+        this.priceScales = priceScales.clone();
+        this.qtyScales = qtyScales.clone();
+        int tableSize = Integer.highestOneBit(Math.max(this.streams.length, 1) * 4);
+        this.streamTable = new int[tableSize];
+        for (int i = 0; i < this.streams.length; i++) {
+            int slot = this.streams[i].hashCode() & (tableSize - 1);
+            while (streamTable[slot] != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            streamTable[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Decodes one frame and passes the event it holds to the handler. Frames without a stream
+     * envelope are attributed to stream 0; events of other types are ignored.
+     *
+     * @throws IllegalArgumentException if the frame is malformed or names an unknown stream
+     */
+    public void decode(CharSequence frame, MarketDataHandler handler) {
+        text = frame;
+        pos = 0;
+        end = frame.length();
+        try {
+            expect('{');
+            int keyStart = readStringStart();
+            int keyEnd = readStringEnd();
+            if (!spanEquals(keyStart, keyEnd, "stream")) {
+                // A raw event: rewind and parse the whole frame as the event
+                pos = 0;
+                decodeEvent(0, handler);
+                return;
+            }
+            expect(':');
+            int streamIndex = resolveStream(readStringStart(), readStringEnd());
+            while (true) {
+                expect(',');
+                keyStart = readStringStart();
+                keyEnd = readStringEnd();
+                expect(':');
+                if (spanEquals(keyStart, keyEnd, "data")) {
+                    decodeEvent(streamIndex, handler);
+                    return;
+                }
+                skipValue();
+            }
+        } finally {
+            text = null;
+        }
+    }
+
+    private void decodeEvent(int streamIndex, MarketDataHandler handler) {
+        expect('{');
+        int keyStart = readStringStart();
+        int keyEnd = readStringEnd();
+        if (!spanEquals(keyStart, keyEnd, "e")) {
+            throw malformed("event type first");
+        }
+        expect(':');
+        int typeStart = readStringStart();
+        int typeEnd = readStringEnd();
+        if (spanEquals(typeStart, typeEnd, "depthUpdate")) {
+            decodeDepthUpdate(streamIndex);
+            handler.onDepthUpdate(depthUpdate);
+        } else if (spanEquals(typeStart, typeEnd, "aggTrade")) {
+            decodeAggTrade(streamIndex);
+            handler.onAggTrade(aggTrade);
+        }
+    }
+
+    private void decodeDepthUpdate(int streamIndex) {
+        depthUpdate.reset(streamIndex, 0L, 0L, 0L);
+        int priceScale = priceScales[streamIndex];
+        int qtyScale = qtyScales[streamIndex];
+        while (nextField()) {
+            int keyStart = readStringStart();
+            int keyEnd = readStringEnd();
+            expect(':');
+            char key = keyEnd - keyStart == 1 ? text.charAt(keyStart) : 0;
+            switch (key) {
+                case 'E':
+                    depthUpdate.setEventTime(readLong());
+                    break;
+                case 'U':
+                    depthUpdate.setFirstUpdateId(readLong());
+                    break;
+                case 'u':
+                    depthUpdate.setFinalUpdateId(readLong());
+                    break;
+                case 'b':
+                case 'a':
+                    boolean bids = key == 'b';
+                    expect('[');
+                    if (!peek(']')) {
+                        do {
+                            expect('[');
+                            long price = readDecimal(priceScale);
+                            expect(',');
+                            long qty = readDecimal(qtyScale);
+                            expect(']');
+                            if (bids) {
+                                depthUpdate.addBid(price, qty);
+                            } else {
+                                depthUpdate.addAsk(price, qty);
+                            }
+                        } while (consume(','));
+                    }
+                    expect(']');
+                    break;
+                default:
+                    skipValue();
+            }
+        }
+    }
+
+    private void decodeAggTrade(int streamIndex) {
+        aggTrade.reset(streamIndex);
+        int priceScale = priceScales[streamIndex];
+        int qtyScale = qtyScales[streamIndex];
+        while (nextField()) {
+            int keyStart = readStringStart();
+            int keyEnd = readStringEnd();
+            expect(':');
+            char key = keyEnd - keyStart == 1 ? text.charAt(keyStart) : 0;
+            switch (key) {
+                case 'E':
+                    aggTrade.setEventTime(readLong());
+                    break;
+                case 'a':
+                    aggTrade.setAggregatedTradeId(readLong());
+                    break;
+                case 'p':
+                    aggTrade.setPrice(readDecimal(priceScale));
+                    break;
+                case 'q':
+                    aggTrade.setQty(readDecimal(qtyScale));
+                    break;
+                case 'f':
+                    aggTrade.setFirstBreakdownTradeId(readLong());
+                    break;
+                case 'l':
+                    aggTrade.setLastBreakdownTradeId(readLong());
+                    break;
+                case 'T':
+                    aggTrade.setTradeTime(readLong());
+                    break;
+                case 'm':
+                    aggTrade.setBuyerMaker(readBoolean());
+                    break;
+                default:
+                    skipValue();
+            }
+        }
+    }
+
+    /**
+     * Consumes the separator before the next field of the current object.
+     *
+     * @return false, having consumed the closing brace, if the object has no more fields
+     */
+    private boolean nextField() {
+        if (consume(',')) {
+            return true;
+        }
+        expect('}');
+        return false;
+    }
+
+    private int resolveStream(int start, int stop) {
+        int hash = 0;
+        for (int i = start; i < stop; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        int mask = streamTable.length - 1;
+        for (int slot = hash & mask; streamTable[slot] != 0; slot = (slot + 1) & mask) {
+            int streamIndex = streamTable[slot] - 1;
+            if (spanEquals(start, stop, streams[streamIndex])) {
+                return streamIndex;
+            }
+        }
+        throw new IllegalArgumentException("Unknown stream " + text.subSequence(start, stop));
+    }
+
+    /**
+     * Reads the opening quote of a string.
+     *
+     * @return the index of the string's first character
+     */
+    private int readStringStart() {
+        expect('"');
+        return pos;
+    }
+
+    /**
+     * Reads up to and including the closing quote of a string. Binance never escapes characters in
+     * the fields decoded here, so escapes are not interpreted.
+     *
+     * @return the index just after the string's last character
+     */
+    private int readStringEnd() {
+        while (pos < end) {
+            char c = text.charAt(pos++);
+            if (c == '\\') {
+                pos++;
+            } else if (c == '"') {
+                return pos - 1;
+            }
+        }
+        throw malformed("closing quote");
+    }
+
+    private long readDecimal(int scale) {
+        int start = readStringStart();
+        int stop = readStringEnd();
+        return FixedPoint.parse(text, start, stop, scale);
+    }
+
+    private long readLong() {
+        skipWhitespace();
+        boolean negative = pos < end && text.charAt(pos) == '-';
+        if (negative) {
+            pos++;
+        }
+        int start = pos;
+        long value = 0L;
+        while (pos < end) {
+            int digit = text.charAt(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            pos++;
+        }
+        if (pos == start) {
+            throw malformed("number");
+        }
+        return negative ? -value : value;
+    }
+
+    private boolean readBoolean() {
+        skipWhitespace();
+        if (regionMatches(pos, "true")) {
+            pos += 4;
+            return true;
+        }
+        if (regionMatches(pos, "false")) {
+            pos += 5;
+            return false;
+        }
+        throw malformed("boolean");
+    }
+
+    /**
+     * Skips over any JSON value without interpreting it.
+     */
+    private void skipValue() {
+        skipWhitespace();
+        if (pos >= end) {
+            throw malformed("value");
+        }
+        char c = text.charAt(pos);
+        if (c == '"') {
+            pos++;
+            readStringEnd();
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                c = text.charAt(pos);
+                if (c == '"') {
+                    pos++;
+                    readStringEnd();
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+                pos++;
+            } while (depth > 0 && pos < end);
+        } else {
+            while (pos < end) {
+                c = text.charAt(pos);
+                if (c == ',' || c == '}' || c == ']' || c == ' ') {
+                    break;
+                }
+                pos++;
+            }
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && text.charAt(pos) <= ' ') {
+            pos++;
+        }
+    }
+
+    private void expect(char expected) {
+        if (!consume(expected)) {
+            throw malformed("'" + expected + "'");
+        }
+    }
+
+    private boolean consume(char expected) {
+        if (peek(expected)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean peek(char expected) {
+        skipWhitespace();
+        return pos < end && text.charAt(pos) == expected;
+    }
+
+    private boolean spanEquals(int start, int stop, String value) {
+        return stop - start == value.length() && regionMatches(start, value);
+    }
+
+    private boolean regionMatches(int start, String value) {
+        if (end - start < value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (text.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private IllegalArgumentException malformed(String expected) {
+        return new IllegalArgumentException("Malformed frame, expected " + expected + " at " + pos + ": " + text);
+    }
+}
@@ -0,0 +1,11 @@
+package websocket;
+
+/**
+ * Receives the events decoded by a {@link MarketDataDecoder}. The flyweights passed in are reused
+ * for the next frame as soon as the call returns.
+ */
+public interface MarketDataHandler {
+    void onDepthUpdate(DepthUpdate depthUpdate);
+
+    void onAggTrade(AggTradeUpdate aggTrade);
+}
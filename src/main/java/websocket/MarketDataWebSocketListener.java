@@ -0,0 +1,33 @@
+package websocket;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * Listener that decodes every frame of a connection with a {@link MarketDataDecoder}, bypassing the
+ * Jackson deserialization of the library's listeners.
+ */
+public class MarketDataWebSocketListener extends WebSocketListener {
+    private final MarketDataDecoder decoder;
+    private final MarketDataHandler handler;
+
+    public MarketDataWebSocketListener(MarketDataDecoder decoder, MarketDataHandler handler) {
+        this.decoder = decoder;
+        this.handler = handler;
+    }
+
+    @Override
+    public void onMessage(WebSocket webSocket, String text) {
+        try {
+            decoder.decode(text, handler);
+        } catch (IllegalArgumentException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    @Override
+    public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+        t.printStackTrace();
+    }
+}
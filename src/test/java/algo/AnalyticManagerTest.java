@@ -1,4 +1,74 @@
 package algo;
 
+import messaging.EventManager;
+import org.junit.Assert;
+import org.junit.Test;
+import source.data.TradeEvent;
+import source.scheduling.SchedulerManager;
+import source.scheduling.SimulatedClock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 public class AnalyticManagerTest {
+    private final EventManager eventManager = new EventManager();
+    // Timers on a clock that never moves, so that none fires
+    private final AnalyticManager analyticManager = new AnalyticManager(eventManager,
+            new SchedulerManager(eventManager, new SimulatedClock(0L)), 2, 3);
+
+    @Test
+    public void handleEvent_test_tradesFeedVwap() {
+        IndicatorGraph indicators = analyticManager.getIndicators();
+        indicators.compile();
+        int vwap = indicators.getId("vwap");
+
+        analyticManager.handleEvent(trade(100_00, 1_000));
+        analyticManager.handleEvent(trade(110_00, 3_000));
+        Assert.assertTrue(indicators.isUpdated(vwap));
+        Assert.assertEquals(indicators.getValue(indicators.getId(AnalyticManager.TRADE_PRICE)), 110.0, 1e-12);
+        Assert.assertEquals(indicators.getValue(indicators.getId(AnalyticManager.TRADE_QTY)), 3.0, 1e-12);
+        Assert.assertEquals(indicators.getValue(vwap), (100.0 * 1.0 + 110.0 * 3.0) / 4.0, 1e-12);
+    }
+
+    @Test
+    public void handleEvent_test_unusedTradeInputsNotComputed() {
+        int[] computed = new int[1];
+        analyticManager.addTradePrice("notional", trade -> {
+            computed[0]++;
+            return trade.getPrice() * (double) trade.getQty();
+        });
+        analyticManager.getIndicators().compile();
+
+        analyticManager.handleEvent(trade(100_00, 1_000));
+        Assert.assertEquals(computed[0], 0);
+    }
+
+    @Test
+    public void run_test_handlesPublishedTrades() throws InterruptedException {
+        CountDownLatch handled = new CountDownLatch(2);
+        analyticManager.addTradePrice("count", trade -> {
+            handled.countDown();
+            return handled.getCount();
+        });
+        analyticManager.getIndicators().addIndicator("countSma", new SimpleMovingAverage(2), "count");
+        Thread thread = new Thread(analyticManager);
+        thread.start();
+
+        eventManager.publish(trade(100_00, 1_000));
+        eventManager.publish(trade(101_00, 2_000));
+        Assert.assertTrue(handled.await(1, TimeUnit.SECONDS));
+        analyticManager.stop();
+        thread.join(1000);
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertEquals(analyticManager.getTradeLatency().getCount(), 2L);
+    }
+
+    private static TradeEvent trade(long price, long qty) {
+        TradeEvent trade = new TradeEvent();
+        trade.setSymbol("BTCUSDT", 0);
+        trade.setScales(2, 3);
+        trade.setPrice(price);
+        trade.setQty(qty);
+        return trade;
+    }
 }
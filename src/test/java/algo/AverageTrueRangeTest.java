@@ -0,0 +1,33 @@
+package algo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AverageTrueRangeTest {
+    @Test
+    public void getValue_test_gapsStretchTrueRange() {
+        AverageTrueRange atr = new AverageTrueRange(2);
+        atr.addBar(12.0, 10.0, 11.0);
+        Assert.assertFalse(atr.isReady());
+        // Gapped up: the range reaches back to the previous close
+        atr.addBar(16.0, 15.0, 15.0);
+
+        Assert.assertEquals(atr.getValue(), (2.0 + 5.0) / 2.0, 1e-12);
+        atr.addBar(15.5, 14.5, 15.0);
+        Assert.assertEquals(atr.getValue(), 3.5 + (1.0 - 3.5) / 2.0, 1e-12);
+    }
+
+    @Test
+    public void addValue_test_absoluteChanges() {
+        AverageTrueRange atr = new AverageTrueRange(3);
+        atr.addValue(10.0);
+        atr.addValue(13.0);
+        atr.addValue(12.0);
+        // The first value has no range, so three ranges take four values
+        Assert.assertFalse(atr.isReady());
+        atr.addValue(14.0);
+        Assert.assertEquals(atr.getValue(), (3.0 + 1.0 + 2.0) / 3.0, 1e-12);
+        atr.addValue(13.0);
+        Assert.assertEquals(atr.getValue(), 2.0 + (1.0 - 2.0) / 3.0, 1e-12);
+    }
+}
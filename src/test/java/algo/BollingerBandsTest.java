@@ -0,0 +1,35 @@
+package algo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BollingerBandsTest {
+    @Test
+    public void getUpper_test_kStandardDeviations() {
+        BollingerBands bands = new BollingerBands(4, 2.0);
+        for (double value : new double[]{2.0, 4.0, 4.0, 6.0}) {
+            bands.addValue(value);
+        }
+
+        // Mean 4, population standard deviation sqrt(2)
+        Assert.assertEquals(bands.getValue(), 4.0, 1e-12);
+        Assert.assertEquals(bands.getUpper(), 4.0 + 2.0 * java.lang.Math.sqrt(2.0), 1e-12);
+        Assert.assertEquals(bands.getLower(), 4.0 - 2.0 * java.lang.Math.sqrt(2.0), 1e-12);
+        Assert.assertEquals(bands.getPercentB(4.0), 0.5, 1e-12);
+        Assert.assertEquals(bands.getPercentB(bands.getUpper()), 1.0, 1e-12);
+    }
+
+    @Test
+    public void getPercentB_test_nanUntilReady() {
+        BollingerBands bands = new BollingerBands(4, 2.0);
+        bands.addValue(1.0);
+        Assert.assertFalse(bands.isReady());
+        Assert.assertTrue(Double.isNaN(bands.getPercentB(1.0)));
+
+        // A full window of equal values has bands of no width
+        for (int i = 0; i < 3; i++) {
+            bands.addValue(1.0);
+        }
+        Assert.assertEquals(bands.getPercentB(1.0), 0.5, 1e-12);
+    }
+}
@@ -0,0 +1,32 @@
+package algo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExponentialMovingAverageTest {
+    @Test
+    public void getValue_test_smoothsFromFirstValue() {
+        ExponentialMovingAverage ema = new ExponentialMovingAverage(3);
+        ema.addValue(10.0);
+        ema.addValue(20.0);
+        Assert.assertFalse(ema.isReady());
+        Assert.assertTrue(Double.isNaN(ema.getValue()));
+        ema.addValue(30.0);
+
+        // alpha = 0.5: 10, 15, 22.5
+        Assert.assertTrue(ema.isReady());
+        Assert.assertEquals(ema.getValue(), 22.5, 1e-12);
+        ema.addValue(22.5);
+        Assert.assertEquals(ema.getValue(), 22.5, 1e-12);
+    }
+
+    @Test
+    public void reset_test_forgetsValues() {
+        ExponentialMovingAverage ema = new ExponentialMovingAverage(1);
+        ema.addValue(5.0);
+        ema.reset();
+        Assert.assertFalse(ema.isReady());
+        ema.addValue(7.0);
+        Assert.assertEquals(ema.getValue(), 7.0, 0.0);
+    }
+}
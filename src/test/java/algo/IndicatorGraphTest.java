@@ -0,0 +1,106 @@
+package algo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IndicatorGraphTest {
+    @Test
+    public void compile_test_forwardReferences() {
+        IndicatorGraph graph = new IndicatorGraph();
+        // Declared before the nodes it depends on
+        int spread = graph.addFunction("spread", (fast, slow) -> fast - slow, "fast", "slow");
+        int fast = graph.addIndicator("fast", new SimpleMovingAverage(2), "price");
+        int slow = graph.addIndicator("slow", new SimpleMovingAverage(3), "price");
+        int price = graph.addInput("price");
+        graph.compile();
+
+        for (double value : new double[]{1.0, 2.0, 3.0}) {
+            graph.set(price, value);
+            graph.update();
+        }
+        Assert.assertEquals(graph.getValue(fast), 2.5, 1e-12);
+        Assert.assertEquals(graph.getValue(slow), 2.0, 1e-12);
+        Assert.assertTrue(graph.hasValue(spread));
+        Assert.assertEquals(graph.getValue(spread), 0.5, 1e-12);
+    }
+
+    @Test
+    public void update_test_recomputesOnlyDependents() {
+        IndicatorGraph graph = new IndicatorGraph();
+        int a = graph.addInput("a");
+        int b = graph.addInput("b");
+        for (int i = 0; i < 100; i++) {
+            graph.addIndicator("emaA" + i, new ExponentialMovingAverage(1 + i), "a");
+        }
+        int emaB = graph.addIndicator("emaB", new ExponentialMovingAverage(2), "b");
+        int maxB = graph.addIndicator("maxB", new RollingMaximum(1), "emaB");
+        graph.compile();
+
+        graph.set(b, 5.0);
+        Assert.assertEquals(graph.update(), 1);
+        // maxB only gets a value, and so a recompute of its own, once emaB passes one on
+        graph.set(b, 7.0);
+        Assert.assertEquals(graph.update(), 2);
+        Assert.assertEquals(graph.getValue(maxB), 5.0 + 2.0 / 3.0 * 2.0, 1e-12);
+        Assert.assertTrue(graph.isUpdated(emaB));
+        Assert.assertFalse(graph.isUpdated(graph.getId("emaA0")));
+
+        graph.set(a, 1.0);
+        Assert.assertEquals(graph.update(), 100);
+        Assert.assertEquals(graph.update(), 0);
+    }
+
+    @Test
+    public void update_test_weightedIndicator() {
+        IndicatorGraph graph = new IndicatorGraph();
+        int vwap = graph.addIndicator("vwap", new VolumeWeightedAveragePrice(), "price", "qty");
+        int price = graph.addInput("price");
+        int qty = graph.addInput("qty");
+        graph.compile();
+
+        // Not fed until both inputs have values
+        graph.set(price, 100.0);
+        Assert.assertEquals(graph.update(), 1);
+        Assert.assertFalse(graph.hasValue(vwap));
+        // Fed once per update, whichever inputs changed
+        graph.set(qty, 1.0);
+        graph.update();
+        graph.set(price, 110.0);
+        graph.set(qty, 3.0);
+        Assert.assertEquals(graph.update(), 1);
+        Assert.assertEquals(graph.getValue(vwap), (100.0 + 330.0) / 4.0, 1e-12);
+    }
+
+    @Test
+    public void update_test_indicatorWaitsUntilReady() {
+        IndicatorGraph graph = new IndicatorGraph();
+        int price = graph.addInput("price");
+        int sma = graph.addIndicator("sma", new SimpleMovingAverage(2), "price");
+        int doubled = graph.addFunction("doubled", (x, y) -> x + y, "sma", "sma");
+        graph.compile();
+
+        graph.set(price, 4.0);
+        Assert.assertEquals(graph.update(), 1);
+        Assert.assertFalse(graph.hasValue(sma));
+        Assert.assertFalse(graph.hasValue(doubled));
+        graph.set(price, 6.0);
+        graph.update();
+        Assert.assertEquals(graph.getValue(doubled), 10.0, 1e-12);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void compile_test_cycle() {
+        IndicatorGraph graph = new IndicatorGraph();
+        graph.addInput("price");
+        graph.addFunction("x", Double::sum, "price", "y");
+        graph.addIndicator("y", new SimpleMovingAverage(2), "x");
+        graph.compile();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void compile_test_undeclaredInput() {
+        IndicatorGraph graph = new IndicatorGraph();
+        graph.addIndicator("sma", new SimpleMovingAverage(2), "price");
+        graph.compile();
+    }
+}
@@ -1,4 +1,111 @@
 package algo;
 
+import org.junit.Assert;
+import org.junit.Test;
+import source.data.LocalOrderBook;
+
 public class MathTest {
+    @Test
+    public void weightedAverage_test_bestLevels() {
+        LocalOrderBook orderBook = new LocalOrderBook(2, 0);
+        orderBook.updateAsk(10100, 1);
+        orderBook.updateAsk(10200, 5);
+        orderBook.updateBid(9900, 3);
+        Assert.assertEquals(Math.weightedAverage(orderBook), (101.0 * 1 + 99.0 * 3) / 4, 1e-9);
+    }
+
+    @Test
+    public void weightedAverage_test_consistentWhileWriterUpdates() throws InterruptedException {
+        // The writer always moves both sides together, so a consistent read averages to exactly 100
+        LocalOrderBook orderBook = new LocalOrderBook(0, 0);
+        orderBook.updateAsk(101, 1);
+        orderBook.updateBid(99, 1);
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i < 200000; i++) {
+                long stamp = orderBook.beginUpdate();
+                orderBook.updateAsk(100 + i, 1);
+                orderBook.updateAsk(100 + i - 1, 0);
+                orderBook.updateBid(100 - i, 1);
+                orderBook.updateBid(100 - i + 1, 0);
+                orderBook.endUpdate(stamp);
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            Assert.assertEquals(Math.weightedAverage(orderBook), 100.0, 1e-9);
+        }
+        writer.join();
+    }
+
+    @Test
+    public void microprice_test_leansTowardsThinSide() {
+        LocalOrderBook orderBook = new LocalOrderBook(2, 0);
+        orderBook.updateAsk(10100, 1);
+        orderBook.updateBid(9900, 3);
+        Assert.assertEquals(Math.microprice(orderBook), (101.0 * 3 + 99.0 * 1) / 4, 1e-9);
+        Assert.assertEquals(Math.mid(orderBook), 100.0, 1e-9);
+    }
+
+    @Test
+    public void vwap_test_levelsBeyondDepth() {
+        LocalOrderBook orderBook = new LocalOrderBook(2, 0);
+        orderBook.updateAsk(10100, 1);
+        orderBook.updateAsk(10200, 3);
+        orderBook.updateAsk(10300, 100);
+        orderBook.updateBid(9900, 2);
+        Assert.assertEquals(Math.askVwap(orderBook, 1), 101.0, 1e-9);
+        Assert.assertEquals(Math.askVwap(orderBook, 2), (101.0 * 1 + 102.0 * 3) / 4, 1e-9);
+        Assert.assertEquals(Math.bidVwap(orderBook, 10), 99.0, 1e-9);
+        Assert.assertTrue(Double.isNaN(Math.bidVwap(new LocalOrderBook(2, 0), 5)));
+    }
+
+    @Test
+    public void depthWeightedMid_test_oppositeNotionalWeights() {
+        LocalOrderBook orderBook = new LocalOrderBook(0, 0);
+        orderBook.updateAsk(110, 1);
+        orderBook.updateAsk(120, 1);
+        orderBook.updateBid(90, 2);
+        orderBook.updateBid(80, 1);
+        double askVwap = 115.0;
+        double bidVwap = (90.0 * 2 + 80.0) / 3;
+        double askNotional = 230.0;
+        double bidNotional = 260.0;
+        Assert.assertEquals(Math.depthWeightedMid(orderBook, 2),
+                (askVwap * bidNotional + bidVwap * askNotional) / (askNotional + bidNotional), 1e-9);
+        Assert.assertTrue(Double.isNaN(Math.depthWeightedMid(new LocalOrderBook(0, 0), 2)));
+    }
+
+    @Test
+    public void imbalance_test_levels() {
+        LocalOrderBook orderBook = new LocalOrderBook(0, 0);
+        orderBook.updateAsk(101, 1);
+        orderBook.updateAsk(102, 5);
+        orderBook.updateBid(99, 3);
+        Assert.assertEquals(Math.imbalance(orderBook, 1), 0.5, 1e-9);
+        Assert.assertEquals(Math.imbalance(orderBook, 2), -1.0 / 3, 1e-9);
+    }
+
+    @Test
+    public void imbalance_test_consistentWhileWriterUpdates() throws InterruptedException {
+        // The writer keeps as many bid as ask levels of equal size, growing and shrinking both sides
+        // together, so every consistent read is balanced
+        LocalOrderBook orderBook = new LocalOrderBook(0, 0);
+        orderBook.updateAsk(101, 1);
+        orderBook.updateBid(99, 1);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200000; i++) {
+                int level = i % 50;
+                long qty = i % 100 < 50 ? 1 : 0;
+                long stamp = orderBook.beginUpdate();
+                orderBook.updateAsk(102 + level, qty);
+                orderBook.updateBid(98 - level, qty);
+                orderBook.endUpdate(stamp);
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            Assert.assertEquals(Math.imbalance(orderBook, 20), 0.0, 1e-9);
+        }
+        writer.join();
+    }
 }
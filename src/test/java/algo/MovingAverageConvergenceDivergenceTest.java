@@ -0,0 +1,28 @@
+package algo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MovingAverageConvergenceDivergenceTest {
+    @Test
+    public void getValue_test_matchesComponentAverages() {
+        MovingAverageConvergenceDivergence macd = new MovingAverageConvergenceDivergence(3, 6, 4);
+        ExponentialMovingAverage fast = new ExponentialMovingAverage(3);
+        ExponentialMovingAverage slow = new ExponentialMovingAverage(6);
+        ExponentialMovingAverage signal = new ExponentialMovingAverage(4);
+        for (int i = 0; i < 40; i++) {
+            double value = 100.0 + 10.0 * java.lang.Math.sin(i / 4.0);
+            macd.addValue(value);
+            fast.addValue(value);
+            slow.addValue(value);
+            if (slow.isReady()) {
+                signal.addValue(fast.getValue() - slow.getValue());
+            }
+            // Ready once the signal line has seen 4 values, from the 6th value on
+            Assert.assertEquals(macd.isReady(), i >= 8);
+        }
+        Assert.assertEquals(macd.getValue(), fast.getValue() - slow.getValue(), 1e-12);
+        Assert.assertEquals(macd.getSignal(), signal.getValue(), 1e-12);
+        Assert.assertEquals(macd.getHistogram(), macd.getValue() - signal.getValue(), 1e-12);
+    }
+}
@@ -0,0 +1,31 @@
+package algo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RelativeStrengthIndexTest {
+    @Test
+    public void getValue_test_wilderSmoothing() {
+        RelativeStrengthIndex rsi = new RelativeStrengthIndex(2);
+        rsi.addValue(10.0);
+        rsi.addValue(12.0);
+        Assert.assertFalse(rsi.isReady());
+        rsi.addValue(11.0);
+
+        // Average gain 1, average loss 0.5
+        Assert.assertTrue(rsi.isReady());
+        Assert.assertEquals(rsi.getValue(), 100.0 - 100.0 / 3.0, 1e-9);
+        rsi.addValue(14.0);
+        // Average gain 1 + (3 - 1) / 2, average loss 0.5 + (0 - 0.5) / 2
+        Assert.assertEquals(rsi.getValue(), 100.0 - 100.0 / 9.0, 1e-9);
+    }
+
+    @Test
+    public void getValue_test_onlyGains() {
+        RelativeStrengthIndex rsi = new RelativeStrengthIndex(3);
+        for (int i = 0; i < 10; i++) {
+            rsi.addValue(i);
+        }
+        Assert.assertEquals(rsi.getValue(), 100.0, 0.0);
+    }
+}
@@ -0,0 +1,44 @@
+package algo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RollingMaximumTest {
+    @Test
+    public void getValue_test_matchesWindowScan() {
+        int period = 17;
+        RollingMaximum maximum = new RollingMaximum(period);
+        RollingMinimum minimum = new RollingMinimum(period);
+        double[] values = new double[5000];
+        Random random = new Random(5);
+        for (int i = 0; i < values.length; i++) {
+            // Few distinct values, so that ties are common
+            values[i] = random.nextInt(20);
+            maximum.addValue(values[i]);
+            minimum.addValue(values[i]);
+            Assert.assertEquals(maximum.isReady(), i + 1 >= period);
+            if (maximum.isReady()) {
+                double max = Double.NEGATIVE_INFINITY;
+                double min = Double.POSITIVE_INFINITY;
+                for (int j = i - period + 1; j <= i; j++) {
+                    max = java.lang.Math.max(max, values[j]);
+                    min = java.lang.Math.min(min, values[j]);
+                }
+                Assert.assertEquals(maximum.getValue(), max, 0.0);
+                Assert.assertEquals(minimum.getValue(), min, 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void getValue_test_monotonicSeries() {
+        RollingMaximum maximum = new RollingMaximum(3);
+        for (int i = 10; i > 0; i--) {
+            maximum.addValue(i);
+        }
+        // A falling series keeps every value in the deque until it expires
+        Assert.assertEquals(maximum.getValue(), 3.0, 0.0);
+    }
+}
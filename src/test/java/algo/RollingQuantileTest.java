@@ -0,0 +1,75 @@
+package algo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class RollingQuantileTest {
+    @Test
+    public void getQuantile_test_withinRankError() {
+        QuantileSketch sketch = new QuantileSketch(128, 1_000_000);
+        double[] values = new double[1_000_000];
+        Random random = new Random(13);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian();
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (double quantile : new double[]{0.01, 0.1, 0.5, 0.9, 0.99}) {
+            double estimate = sketch.getQuantile(quantile);
+            int rank = Arrays.binarySearch(values, estimate);
+            Assert.assertEquals((double) rank / values.length, quantile, 0.02);
+        }
+        Assert.assertEquals(sketch.getQuantile(0.0), values[0], 0.0);
+        Assert.assertEquals(sketch.getQuantile(1.0), values[values.length - 1], 0.0);
+    }
+
+    @Test
+    public void merge_test_sameAsOneSketch() {
+        QuantileSketch left = new QuantileSketch(64, 10_000);
+        QuantileSketch right = new QuantileSketch(64, 10_000);
+        for (int i = 0; i < 10_000; i++) {
+            left.add(i);
+            right.add(10_000 + i);
+        }
+        left.merge(right);
+
+        Assert.assertEquals(left.getCount(), 20_000L);
+        Assert.assertEquals(left.getQuantile(0.5), 10_000.0, 400.0);
+        Assert.assertEquals(left.getQuantile(0.25), 5_000.0, 400.0);
+        Assert.assertEquals(left.getMax(), 19_999.0, 0.0);
+    }
+
+    @Test
+    public void getValue_test_forgetsValuesLeavingWindow() {
+        RollingQuantile median = new RollingQuantile(10_000, 0.5);
+        Random random = new Random(17);
+        for (int i = 0; i < 50_000; i++) {
+            median.addValue(random.nextDouble());
+        }
+        Assert.assertEquals(median.getValue(), 0.5, 0.03);
+        for (int i = 0; i < 20_000; i++) {
+            median.addValue(10.0 + random.nextDouble());
+        }
+        Assert.assertEquals(median.getValue(), 10.5, 0.03);
+        Assert.assertEquals(median.getQuantile(0.0), 10.0, 0.01);
+        Assert.assertEquals(median.getQuantile(0.9), 10.9, 0.03);
+    }
+
+    @Test
+    public void getQuantile_test_windowWithinOneBlockOfPeriod() {
+        // 8 blocks do not divide 100: blocks of 13 and 12 values
+        RollingQuantile quantile = new RollingQuantile(100, 0.5, 128, 8);
+        for (int i = 0; i < 1000; i++) {
+            quantile.addValue(i);
+            if (i >= 100) {
+                // The oldest value retained is at most one block of 13 older than the window
+                double span = i + 1 - quantile.getQuantile(0.0);
+                Assert.assertTrue("Window of " + span + " values after " + (i + 1), span >= 100 && span <= 113);
+            }
+        }
+        Assert.assertEquals(quantile.getQuantile(0.0), 888.0, 0.0);
+    }
+}
@@ -0,0 +1,46 @@
+package algo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RollingVarianceTest {
+    @Test
+    public void getVariance_test_matchesTwoPassOverWindow() {
+        int period = 20;
+        RollingVariance variance = new RollingVariance(period);
+        double[] values = new double[100_000];
+        Random random = new Random(11);
+        for (int i = 0; i < values.length; i++) {
+            // A large offset makes sum-of-squares formulas lose every significant digit
+            values[i] = 1e8 + random.nextGaussian();
+            variance.addValue(values[i]);
+        }
+        double mean = 0.0;
+        for (int i = values.length - period; i < values.length; i++) {
+            mean += values[i] - 1e8;
+        }
+        mean /= period;
+        double m2 = 0.0;
+        for (int i = values.length - period; i < values.length; i++) {
+            double deviation = values[i] - 1e8 - mean;
+            m2 += deviation * deviation;
+        }
+
+        Assert.assertEquals(variance.getMean(), 1e8 + mean, 1e-6);
+        Assert.assertEquals(variance.getVariance(), m2 / period, 1e-6);
+        Assert.assertEquals(variance.getSampleVariance(), m2 / (period - 1), 1e-6);
+    }
+
+    @Test
+    public void getVariance_test_notReadyUntilFull() {
+        RollingVariance variance = new RollingVariance(3);
+        variance.addValue(1.0);
+        variance.addValue(2.0);
+        Assert.assertTrue(Double.isNaN(variance.getVariance()));
+        variance.addValue(3.0);
+        Assert.assertEquals(variance.getVariance(), 2.0 / 3.0, 1e-12);
+        Assert.assertEquals(variance.getStandardDeviation(), java.lang.Math.sqrt(2.0 / 3.0), 1e-12);
+    }
+}
@@ -0,0 +1,78 @@
+package algo;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of adding a value and reading the average, for the ring buffer against the
+ * DescriptiveStatistics window SimpleMovingAverage used to delegate to, whose mean walks the whole
+ * window. Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=algo.SimpleMovingAverageBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimpleMovingAverageBenchmark {
+    @Param({"5", "100", "1000", "10000", "100000"})
+    private int period;
+
+    private final double[] values = new double[4096];
+    private int next;
+    private SimpleMovingAverage ringBuffer;
+    private DescriptiveStatistics descriptiveStatistics;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 60000.0 + random.nextGaussian() * 100.0;
+        }
+        ringBuffer = new SimpleMovingAverage(period);
+        descriptiveStatistics = new DescriptiveStatistics(period);
+        // Start with full windows, the steady state
+        for (int i = 0; i < period; i++) {
+            ringBuffer.addValue(nextValue());
+            descriptiveStatistics.addValue(nextValue());
+        }
+    }
+
+    @Benchmark
+    public double ringBuffer() {
+        ringBuffer.addValue(nextValue());
+        return ringBuffer.getMovingAverage();
+    }
+
+    @Benchmark
+    public double descriptiveStatistics() {
+        descriptiveStatistics.addValue(nextValue());
+        return descriptiveStatistics.getMean();
+    }
+
+    private double nextValue() {
+        next = (next + 1) & (values.length - 1);
+        return values[next];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SimpleMovingAverageBenchmark.class.getSimpleName()).build()).run();
+    }
+}
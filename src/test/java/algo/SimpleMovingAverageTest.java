@@ -3,6 +3,9 @@ package algo;
 import org.junit.Test;
 import org.junit.Assert;
 
+import java.math.BigDecimal;
+import java.util.Random;
+
 public class SimpleMovingAverageTest {
     @Test
     public void getMovingAverage_test_period1() {
@@ -25,4 +28,24 @@ public class SimpleMovingAverageTest {
         simpleMovingAverage.addValue(5.0);
         Assert.assertEquals(simpleMovingAverage.getMovingAverage(), 4, 0.00001);
     }
+
+    @Test
+    public void getMovingAverage_test_noDriftOverLongRun() {
+        int period = 50;
+        SimpleMovingAverage simpleMovingAverage = new SimpleMovingAverage(period);
+        double[] values = new double[1_000_000];
+        Random random = new Random(7);
+        for (int i = 0; i < values.length; i++) {
+            // Large prices with small increments lose low-order bits in a plain running sum
+            values[i] = 1e9 * random.nextInt(100) + random.nextDouble();
+            simpleMovingAverage.addValue(values[i]);
+        }
+        BigDecimal expected = BigDecimal.ZERO;
+        for (int i = values.length - period; i < values.length; i++) {
+            expected = expected.add(new BigDecimal(values[i]));
+        }
+        // Within a few ulps of the exact average; an uncompensated sum drifts by almost 1e-3 here
+        Assert.assertEquals(simpleMovingAverage.getMovingAverage(),
+                expected.divide(BigDecimal.valueOf(period)).doubleValue(), 1e-4);
+    }
 }
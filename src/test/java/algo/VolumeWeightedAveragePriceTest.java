@@ -0,0 +1,30 @@
+package algo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VolumeWeightedAveragePriceTest {
+    @Test
+    public void getValue_test_cumulative() {
+        VolumeWeightedAveragePrice vwap = new VolumeWeightedAveragePrice();
+        Assert.assertFalse(vwap.isReady());
+        vwap.addValue(100.0, 1.0);
+        vwap.addValue(110.0, 3.0);
+
+        Assert.assertEquals(vwap.getValue(), 107.5, 1e-12);
+        Assert.assertEquals(vwap.getVolume(), 4.0, 1e-12);
+    }
+
+    @Test
+    public void getValue_test_rollingWindow() {
+        VolumeWeightedAveragePrice vwap = new VolumeWeightedAveragePrice(2);
+        vwap.addValue(100.0, 1.0);
+        Assert.assertFalse(vwap.isReady());
+        vwap.addValue(110.0, 3.0);
+        vwap.addValue(90.0, 1.0);
+
+        // The first print has left the window
+        Assert.assertEquals(vwap.getValue(), 105.0, 1e-12);
+        Assert.assertEquals(vwap.getVolume(), 4.0, 1e-12);
+    }
+}
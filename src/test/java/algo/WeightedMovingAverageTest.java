@@ -0,0 +1,30 @@
+package algo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class WeightedMovingAverageTest {
+    @Test
+    public void getValue_test_matchesDirectWeights() {
+        int period = 7;
+        WeightedMovingAverage wma = new WeightedMovingAverage(period);
+        double[] values = new double[500];
+        Random random = new Random(3);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100.0 + random.nextGaussian();
+            wma.addValue(values[i]);
+            Assert.assertEquals(wma.isReady(), i + 1 >= period);
+            if (wma.isReady()) {
+                double weighted = 0.0;
+                double weights = 0.0;
+                for (int weight = 1; weight <= period; weight++) {
+                    weighted += weight * values[i - period + weight];
+                    weights += weight;
+                }
+                Assert.assertEquals(wma.getValue(), weighted / weights, 1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package algo.backtest;
+
+import org.junit.Assert;
+import org.junit.Test;
+import source.data.DepthSnapshot;
+import source.data.JournalAppender;
+import source.data.JournalRecorder;
+import source.data.LocalOrderBook;
+import source.data.TempJournal;
+import websocket.DepthUpdate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BacktestEngineTest {
+    private static final long EVENT_INTERVAL_MILLIS = 100L;
+
+    @Test
+    public void run_test_timersFireInEventTime() throws Exception {
+        try (TempJournal journal = recordJournal(new long[]{100, 100, 100, 100, 100, 100, 100, 100, 100, 100, 100})) {
+            AtomicInteger samples = new AtomicInteger();
+            BacktestEngine engine = engine(journal);
+            BacktestResult result = engine.run(context ->
+                    context.schedulePeriodic(samples::incrementAndGet, 250, TimeUnit.MILLISECONDS));
+
+            // Events span 1000ms of event time: the timer fires at 250, 500 and 750ms, while the one due
+            // at 1000ms would fire within the tick after it, which no event reaches
+            Assert.assertEquals(samples.get(), 3);
+            // The snapshot the book is seeded from, then the depth events
+            Assert.assertEquals(result.getEventCount(), 12L);
+            Assert.assertEquals(result.getTradeCount(), 0);
+        }
+    }
+
+    @Test
+    public void run_test_crossoverFollowsTrend() throws Exception {
+        long[] mids = new long[61];
+        for (int i = 0; i < mids.length; i++) {
+            mids[i] = 1000 + 10 * (i <= 30 ? i : 60 - i);
+        }
+        try (TempJournal journal = recordJournal(mids)) {
+            BacktestResult result = engine(journal).run(new SmaCrossoverStrategy(2, 5, EVENT_INTERVAL_MILLIS, 1.0));
+
+            // Bought on the way up, sold on the way down
+            Assert.assertEquals(result.getTradeCount(), 2);
+            Assert.assertEquals(result.getFinalPosition(), 0.0, 1e-9);
+            Assert.assertTrue(result.getPnl() > 0.0);
+            Assert.assertTrue(result.getTurnover() > 2 * 1000.0);
+            Assert.assertEquals(result.getStrategy(), "SMA(2/5)");
+        }
+    }
+
+    @Test
+    public void sweep_test_matchesSequentialRuns() throws Exception {
+        long[] mids = new long[200];
+        for (int i = 0; i < mids.length; i++) {
+            mids[i] = 1000 + (long) (50 * java.lang.Math.sin(i / 7.0)) + (i * 37 % 11);
+        }
+        try (TempJournal journal = recordJournal(mids)) {
+            BacktestEngine engine = engine(journal);
+            int[] period1s = {2, 3, 5};
+            int[] period2s = {3, 8, 13};
+            BacktestResult[][] results = new ParameterSweep(engine,
+                    (period1, period2) -> new SmaCrossoverStrategy(period1, period2, EVENT_INTERVAL_MILLIS, 1.0))
+                    .run(period1s, period2s, new ForkJoinPool(4));
+
+            for (int i = 0; i < period1s.length; i++) {
+                for (int j = 0; j < period2s.length; j++) {
+                    if (period1s[i] >= period2s[j]) {
+                        Assert.assertNull(results[i][j]);
+                        continue;
+                    }
+                    BacktestResult expected = engine.run(
+                            new SmaCrossoverStrategy(period1s[i], period2s[j], EVENT_INTERVAL_MILLIS, 1.0));
+                    Assert.assertEquals(results[i][j].getPnl(), expected.getPnl(), 0.0);
+                    Assert.assertEquals(results[i][j].getTradeCount(), expected.getTradeCount());
+                    Assert.assertEquals(results[i][j].getMaxDrawdown(), expected.getMaxDrawdown(), 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void load_test_columnsHoldEveryLevel() throws Exception {
+        try (TempJournal journal = recordJournal(new long[]{100, 100, 105})) {
+            MarketDataSet marketData = MarketDataSet.load(journal.getFiles(), 0);
+
+            Assert.assertEquals(marketData.getSymbol(), "BTCUSDT");
+            Assert.assertEquals(marketData.getEventCount(), 4);
+            // The snapshot comes first, at the time of the first event applied on top of it
+            Assert.assertTrue(marketData.isSnapshot(0));
+            Assert.assertEquals(marketData.getEventTime(0), 0L);
+            Assert.assertEquals(marketData.getPrice(0), 50L);
+            Assert.assertEquals(marketData.getQty(0), 1000L);
+            Assert.assertFalse(marketData.isSnapshot(1));
+            Assert.assertEquals(marketData.getEventTime(3), 2 * EVENT_INTERVAL_MILLIS);
+            Assert.assertEquals(marketData.getLevelOffset(3), 6);
+            Assert.assertEquals(marketData.getLevelOffset(4), 10);
+            // The last event removes the previous bid, adds the new one, then does the same for asks
+            Assert.assertEquals(marketData.getBidCount(3), 2);
+            Assert.assertEquals(marketData.getPrice(6), 99L);
+            Assert.assertEquals(marketData.getQty(6), 0L);
+            Assert.assertEquals(marketData.getPrice(9), 106L);
+            Assert.assertEquals(marketData.getQty(9), 10L);
+        }
+    }
+
+    @Test
+    public void run_test_bookSeededFromSnapshot() throws Exception {
+        try (TempJournal journal = recordJournal(new long[]{100, 101, 102})) {
+            List<Long> deepBids = new ArrayList<>();
+            engine(journal).run(new Strategy() {
+                @Override
+                public void start(StrategyContext context) {
+                }
+
+                @Override
+                public void onOrderBook(LocalOrderBook orderBook, StrategyContext context) {
+                    deepBids.add(orderBook.getBids().getQtyAt(50L));
+                }
+            });
+            // The snapshot's far level, never touched by an event, rests in the book throughout
+            Assert.assertEquals(deepBids.toString(), "[1000, 1000, 1000, 1000]");
+        }
+    }
+
+    private static BacktestEngine engine(TempJournal journal) throws IOException {
+        return new BacktestEngine(MarketDataSet.load(journal.getFiles(), 0), new FillSimulator(0.0), 1L);
+    }
+
+    /**
+     * Records the snapshot the book starts from, with a level a side far from the touch that no event
+     * ever changes, then one depth event per mid price, {@link #EVENT_INTERVAL_MILLIS} apart in event
+     * time, each moving a one-tick-wide book of 10 lots a side to the new mid.
+     */
+    private static TempJournal recordJournal(long[] mids) throws Exception {
+        TempJournal journal = new TempJournal();
+        JournalRecorder recorder = journal.newRecorder(new String[]{"BTCUSDT"},
+                new int[]{0}, new int[]{0}, 1024 * 1024, 64 * 1024);
+        JournalAppender appender = recorder.newAppender();
+        DepthSnapshot snapshot = new DepthSnapshot();
+        snapshot.reset(-1L);
+        snapshot.addBid(mids[0] - 50, 1000L);
+        snapshot.addAsk(mids[0] + 50, 1000L);
+        Assert.assertTrue(appender.appendSnapshot(0, snapshot));
+        DepthUpdate depthUpdate = new DepthUpdate();
+        for (int i = 0; i < mids.length; i++) {
+            depthUpdate.reset(0, i * EVENT_INTERVAL_MILLIS, i, i);
+            if (i > 0 && mids[i - 1] != mids[i]) {
+                depthUpdate.addBid(mids[i - 1] - 1, 0L);
+                depthUpdate.addAsk(mids[i - 1] + 1, 0L);
+            }
+            depthUpdate.addBid(mids[i] - 1, 10L);
+            depthUpdate.addAsk(mids[i] + 1, 10L);
+            TempJournal.appendFully(appender, 0, depthUpdate);
+        }
+        recorder.close();
+        return journal;
+    }
+}
@@ -0,0 +1,53 @@
+package algo.backtest;
+
+import org.junit.Assert;
+import org.junit.Test;
+import source.data.LocalOrderBook;
+
+public class FillSimulatorTest {
+    @Test
+    public void fill_test_walksLevels() {
+        LocalOrderBook orderBook = new LocalOrderBook(2, 0);
+        orderBook.updateAsk(10000, 2);
+        orderBook.updateAsk(10100, 3);
+        orderBook.updateBid(9900, 1);
+        Portfolio portfolio = new Portfolio();
+        FillSimulator fillSimulator = new FillSimulator(0.001);
+
+        Assert.assertEquals(fillSimulator.fill(orderBook, 4.0, portfolio), 4.0, 1e-9);
+        Assert.assertEquals(portfolio.getPosition(), 4.0, 1e-9);
+        // 2 @ 100.00 + 2 @ 101.00, plus 10 bp
+        Assert.assertEquals(portfolio.getTurnover(), 402.0, 1e-9);
+        Assert.assertEquals(portfolio.getFees(), 0.402, 1e-9);
+        Assert.assertEquals(portfolio.getCash(), -402.402, 1e-9);
+        // The book is left as it was
+        Assert.assertEquals(orderBook.getBestAskQty(), 2L);
+    }
+
+    @Test
+    public void fill_test_partialWhenBookThin() {
+        LocalOrderBook orderBook = new LocalOrderBook(2, 0);
+        orderBook.updateAsk(10000, 2);
+        orderBook.updateBid(9900, 1);
+        orderBook.updateBid(9800, 1);
+        Portfolio portfolio = new Portfolio();
+        FillSimulator fillSimulator = new FillSimulator(0.0);
+
+        Assert.assertEquals(fillSimulator.fill(orderBook, -5.0, portfolio), -2.0, 1e-9);
+        Assert.assertEquals(portfolio.getPosition(), -2.0, 1e-9);
+        Assert.assertEquals(portfolio.getCash(), 197.0, 1e-9);
+        Assert.assertEquals(portfolio.getTradeCount(), 1);
+    }
+
+    @Test
+    public void mark_test_drawdownFromPeak() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.onFill(1.0, 100.0, 0.0);
+        portfolio.mark(110.0);
+        portfolio.mark(95.0);
+        portfolio.mark(105.0);
+
+        Assert.assertEquals(portfolio.getEquity(), 5.0, 1e-9);
+        Assert.assertEquals(portfolio.getMaxDrawdown(), 15.0, 1e-9);
+    }
+}
@@ -0,0 +1,274 @@
+package messaging;
+
+import org.junit.Assert;
+import org.junit.Test;
+import source.data.LocalOrderBook;
+import source.data.OrderBookSnapshotPool;
+import source.data.TradeEvent;
+import source.scheduling.ScheduleEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EventBrokerTest {
+    @Test
+    public void get_test_publishOrder() throws InterruptedException {
+        EventBroker<Integer> broker = new EventBroker<>(4, new BusySpinWaitStrategy());
+        EventCursor<Integer> cursor = broker.newCursor();
+        for (int i = 0; i < 10; i++) {
+            broker.addEvent(i);
+            Assert.assertEquals((int) cursor.get(), i);
+        }
+        Assert.assertEquals(cursor.getBacklog(), 0L);
+    }
+
+    @Test
+    public void poll_test_batchEndsOnLastEvent() throws InterruptedException {
+        EventBroker<Integer> broker = new EventBroker<>();
+        EventCursor<Integer> cursor = broker.newCursor();
+        Assert.assertEquals(cursor.poll((event, sequence, endOfBatch) -> Assert.fail()), 0);
+        broker.addEvent(1);
+        broker.addEvent(2);
+        broker.addEvent(3);
+        List<Integer> events = new ArrayList<>();
+        List<Boolean> endOfBatches = new ArrayList<>();
+        int handled = cursor.poll((event, sequence, endOfBatch) -> {
+            events.add(event);
+            endOfBatches.add(endOfBatch);
+        });
+        Assert.assertEquals(handled, 3);
+        Assert.assertEquals(events.toString(), "[1, 2, 3]");
+        Assert.assertEquals(endOfBatches.toString(), "[false, false, true]");
+    }
+
+    @Test
+    public void addEvent_test_producersWaitForConsumer() throws InterruptedException {
+        // Two producers push many times the ring's size through it; every event arrives exactly once
+        // and each producer's events arrive in order, whichever wait strategy the consumer uses
+        WaitStrategy[] waitStrategies = {new BusySpinWaitStrategy(), new YieldingWaitStrategy(),
+                new ParkingWaitStrategy(1000L), new BlockingWaitStrategy()};
+        for (WaitStrategy waitStrategy : waitStrategies) {
+            EventBroker<Long> broker = new EventBroker<>(8, waitStrategy);
+            EventCursor<Long> cursor = broker.newCursor();
+            int eventsPerProducer = 20000;
+            Thread[] producers = new Thread[2];
+            for (int p = 0; p < producers.length; p++) {
+                long producer = p;
+                producers[p] = new Thread(() -> {
+                    try {
+                        for (long i = 0; i < eventsPerProducer; i++) {
+                            broker.addEvent(producer << 32 | i);
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                producers[p].start();
+            }
+            long[] expected = new long[producers.length];
+            int received = 0;
+            while (received < producers.length * eventsPerProducer) {
+                received += cursor.consumeBatch((event, sequence, endOfBatch) -> {
+                    int producer = (int) (event >>> 32);
+                    Assert.assertEquals(event & 0xFFFFFFFFL, expected[producer]);
+                    expected[producer]++;
+                });
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            Assert.assertEquals(expected[0] + expected[1], 2L * eventsPerProducer);
+        }
+    }
+
+    @Test
+    public void newCursor_test_everyCursorSeesEveryEvent() throws InterruptedException {
+        EventBroker<Integer> broker = new EventBroker<>(4, new BusySpinWaitStrategy());
+        EventCursor<Integer> fast = broker.newCursor();
+        EventCursor<Integer> slow = broker.newCursor();
+        for (int i = 0; i < 4; i++) {
+            broker.addEvent(i);
+            Assert.assertEquals((int) fast.get(), i);
+        }
+        // The ring is full until the slow cursor catches up
+        Assert.assertEquals(slow.getBacklog(), 4L);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals((int) slow.get(), i);
+        }
+        slow.close();
+        for (int i = 4; i < 12; i++) {
+            broker.addEvent(i);
+            Assert.assertEquals((int) fast.get(), i);
+        }
+    }
+
+    @Test
+    public void addListener_test_listenersSeeWholeStream() throws InterruptedException {
+        // Both listeners share each pooled snapshot, so one releasing it early would let the pool
+        // overwrite it while the other still reads it
+        EventManager eventManager = new EventManager(16, new BlockingWaitStrategy());
+        UpdateIdListener first = new UpdateIdListener();
+        UpdateIdListener second = new UpdateIdListener();
+        eventManager.addListener(first);
+        eventManager.addListener(second);
+        OrderBookSnapshotPool pool = new OrderBookSnapshotPool();
+        LocalOrderBook orderBook = new LocalOrderBook();
+        for (int i = 1; i <= 1000; i++) {
+            orderBook.setLastUpdateId(i);
+            eventManager.publish(pool.snapshot(orderBook));
+        }
+        first.awaitUpdateId(1000);
+        second.awaitUpdateId(1000);
+        eventManager.removeListener(first);
+        eventManager.removeListener(second);
+        Assert.assertEquals(first.outOfOrder, 0);
+        Assert.assertEquals(second.outOfOrder, 0);
+    }
+
+    @Test
+    public void conflating_test_latestEventPerKey() throws InterruptedException {
+        EventBroker<long[]> broker = EventBroker.conflating(3, event -> (int) event[0], new BusySpinWaitStrategy());
+        EventCursor<long[]> cursor = broker.newCursor();
+        // Far more events than keys never block the producer
+        for (long i = 0; i < 10000; i++) {
+            broker.addEvent(new long[]{i % 2 == 0 ? 2 : 0, i});
+        }
+        broker.addEvent(new long[]{1, 10000});
+        Assert.assertEquals(cursor.getBacklog(), 3L);
+
+        List<String> events = new ArrayList<>();
+        cursor.poll((event, sequence, endOfBatch) -> events.add(event[0] + ":" + event[1]));
+        // Keys come in the order they first became pending, each with its latest event
+        Assert.assertEquals(events.toString(), "[2:9998, 0:9999, 1:10000]");
+        Assert.assertEquals(cursor.poll((event, sequence, endOfBatch) -> Assert.fail()), 0);
+
+        broker.addEvent(new long[]{0, 10001});
+        Assert.assertEquals(cursor.get()[1], 10001L);
+    }
+
+    @Test
+    public void conflating_test_releasesReplacedSnapshots() throws InterruptedException {
+        EventBroker<LocalOrderBook> broker = EventBroker.conflating(1, orderBook -> 0, new BusySpinWaitStrategy());
+        EventCursor<LocalOrderBook> cursor = broker.newCursor();
+        OrderBookSnapshotPool pool = new OrderBookSnapshotPool(1);
+        LocalOrderBook orderBook = new LocalOrderBook();
+        LocalOrderBook first = pool.snapshot(orderBook);
+        broker.addEvent(first);
+        broker.addEvent(pool.snapshot(orderBook));
+        // The first snapshot was never consumed, so it went back to the pool when replaced
+        Assert.assertSame(pool.snapshot(orderBook), first);
+        Assert.assertNotSame(cursor.get(), first);
+    }
+
+    @Test
+    public void sendToListeners_test_boundToEventType() throws InterruptedException {
+        EventManager eventManager = new EventManager();
+        List<String> received = new ArrayList<>();
+        EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(LocalOrderBook orderBook) {
+                received.add("book");
+            }
+
+            @Override
+            public void handleEvent(ScheduleEvent timer) {
+                received.add(timer.getTag());
+            }
+
+            @Override
+            public void handleEvent(TradeEvent trade) {
+                received.add("trade " + trade.getAggregatedTradeId());
+            }
+        };
+        eventManager.getOrderBookBroker().addListener(listener);
+        eventManager.getAggTradeBroker().addListener(listener);
+        eventManager.getScheduleEventBroker().addListener(listener);
+
+        TradeEvent trade = new TradeEvent();
+        trade.setAggregatedTradeId(42L);
+        eventManager.getAggTradeBroker().sendToListeners(trade);
+        eventManager.getScheduleEventBroker().sendToListeners(new ScheduleEvent("sma1"));
+        eventManager.getOrderBookBroker().sendToListeners(new LocalOrderBook());
+        Assert.assertEquals(received.toString(), "[trade 42, sma1, book]");
+    }
+
+    @Test
+    public void publishEvent_test_slotsReused() throws InterruptedException {
+        EventManager eventManager = new EventManager(4, new BusySpinWaitStrategy());
+        EventCursor<ScheduleEvent> cursor = eventManager.getScheduleEventBroker().newCursor();
+        ScheduleEvent[] slots = new ScheduleEvent[4];
+        for (int i = 0; i < 12; i++) {
+            eventManager.publish(new ScheduleEvent("tag" + i));
+            ScheduleEvent timer = cursor.get();
+            Assert.assertEquals(timer.getTag(), "tag" + i);
+            if (i < 4) {
+                slots[i] = timer;
+            } else {
+                // Each firing is written into the same preallocated event as four firings before
+                Assert.assertSame(timer, slots[i % 4]);
+            }
+        }
+    }
+
+    @Test
+    public void get_test_slotHeldUntilNextGet() throws InterruptedException {
+        EventManager eventManager = new EventManager(4, new BusySpinWaitStrategy());
+        EventCursor<ScheduleEvent> cursor = eventManager.getScheduleEventBroker().newCursor();
+        eventManager.publish(new ScheduleEvent("tag0"));
+        ScheduleEvent timer = cursor.get();
+
+        AtomicInteger published = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 1; i <= 4; i++) {
+                    eventManager.publish(new ScheduleEvent("tag" + i));
+                    published.incrementAndGet();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        Thread.sleep(100);
+        // The fourth event would wrap onto the slot still being read
+        Assert.assertEquals(published.get(), 3);
+        Assert.assertEquals(timer.getTag(), "tag0");
+
+        Assert.assertEquals(cursor.get().getTag(), "tag1");
+        producer.join(5000);
+        Assert.assertEquals(published.get(), 4);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void addEvent_test_preallocatedBroker() throws InterruptedException {
+        new EventManager().getScheduleEventBroker().addEvent(new ScheduleEvent("sma1"));
+    }
+
+    private static class UpdateIdListener implements EventListener {
+        private volatile long lastUpdateId;
+        private volatile int outOfOrder;
+
+        @Override
+        public void handleEvent(LocalOrderBook orderBook) {
+            long updateId = orderBook.getLastUpdateId();
+            // Give the other listener time to release the snapshot, if it does so too early
+            Thread.yield();
+            if (updateId != lastUpdateId + 1 || orderBook.getLastUpdateId() != updateId) {
+                outOfOrder++;
+            }
+            lastUpdateId = updateId;
+            orderBook.release();
+        }
+
+        @Override
+        public void handleEvent(ScheduleEvent timer) {
+        }
+
+        private void awaitUpdateId(long updateId) throws InterruptedException {
+            while (lastUpdateId < updateId) {
+                Thread.sleep(1);
+            }
+        }
+    }
+}
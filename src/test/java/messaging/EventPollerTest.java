@@ -0,0 +1,45 @@
+package messaging;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EventPollerTest {
+    @Test
+    public void poll_test_drainsEveryCursor() throws InterruptedException {
+        EventBroker<String> books = new EventBroker<>();
+        EventBroker<String> timers = new EventBroker<>();
+        EventPoller poller = new EventPoller();
+        List<String> handled = new ArrayList<>();
+        LatencyHistogram bookLatency = poller.add(books.newCursor(), (event, sequence, endOfBatch) -> handled.add(event));
+        LatencyHistogram timerLatency = poller.add(timers.newCursor(), (event, sequence, endOfBatch) -> handled.add(event));
+
+        // A timer is handled without waiting for a book, and vice versa
+        timers.addEvent("timer1");
+        Assert.assertEquals(poller.poll(), 1);
+        books.addEvent("book1");
+        books.addEvent("book2");
+        timers.addEvent("timer2");
+        Assert.assertEquals(poller.poll(), 3);
+        Assert.assertEquals(poller.poll(), 0);
+
+        Assert.assertEquals(handled.toString(), "[timer1, book1, book2, timer2]");
+        Assert.assertEquals(bookLatency.getCount(), 2L);
+        Assert.assertEquals(timerLatency.getCount(), 2L);
+        Assert.assertTrue(timerLatency.getMaxNanos() >= timerLatency.getPercentileNanos(50));
+    }
+
+    @Test
+    public void getPercentileNanos_test_withinBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000L);
+        }
+        // The 50th percentile is 50000ns, which lies in the [32768, 65536) bucket
+        Assert.assertEquals(histogram.getPercentileNanos(50), 65535L);
+        Assert.assertEquals(histogram.getPercentileNanos(100), 100000L);
+        Assert.assertEquals(histogram.getMeanNanos(), 50500.0, 1e-9);
+    }
+}
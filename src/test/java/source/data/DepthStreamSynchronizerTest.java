@@ -0,0 +1,112 @@
+package source.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+import websocket.DepthUpdate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+public class DepthStreamSynchronizerTest {
+    private final Queue<Runnable> pendingFetches = new ArrayDeque<>();
+    private final Queue<DepthSnapshot> snapshots = new ArrayDeque<>();
+    private final List<String> applied = new ArrayList<>();
+
+    private final DepthStreamSynchronizer synchronizer = new DepthStreamSynchronizer("BTCUSDT", snapshots::poll,
+            pendingFetches::add, new DepthStreamSynchronizer.Listener() {
+        @Override
+        public void onSnapshot(DepthSnapshot snapshot) {
+            applied.add("snapshot " + snapshot.getLastUpdateId());
+        }
+
+        @Override
+        public void onDepthEvent(DepthUpdate event) {
+            applied.add(event.getFirstUpdateId() + "-" + event.getFinalUpdateId());
+        }
+
+        @Override
+        public void onBookUpdated() {
+        }
+    });
+
+    @Test
+    public void onDepthEvent_test_initialSyncReplaysBufferedEvents() {
+        synchronizer.start();
+        synchronizer.onDepthEvent(depthEvent(95, 99));
+        synchronizer.onDepthEvent(depthEvent(100, 104));
+        synchronizer.onDepthEvent(depthEvent(105, 107));
+        Assert.assertTrue(applied.isEmpty());
+
+        completeFetch(snapshot(101));
+        Assert.assertEquals(applied.toString(), "[snapshot 101, 100-104, 105-107]");
+        Assert.assertTrue(synchronizer.isLive());
+
+        synchronizer.onDepthEvent(depthEvent(108, 110));
+        Assert.assertEquals(synchronizer.getLastUpdateId(), 110L);
+    }
+
+    @Test
+    public void onDepthEvent_test_gapTriggersResync() {
+        synchronizer.start();
+        completeFetch(snapshot(100));
+        synchronizer.onDepthEvent(depthEvent(101, 105));
+        // 106-108 is lost
+        synchronizer.onDepthEvent(depthEvent(109, 112));
+        synchronizer.onDepthEvent(depthEvent(113, 115));
+        Assert.assertEquals(synchronizer.getResyncCount(), 1L);
+        Assert.assertFalse(synchronizer.isLive());
+        Assert.assertEquals(pendingFetches.size(), 1);
+
+        completeFetch(snapshot(110));
+        Assert.assertEquals(applied.toString(), "[snapshot 100, 101-105, snapshot 110, 109-112, 113-115]");
+        Assert.assertEquals(synchronizer.getLastUpdateId(), 115L);
+    }
+
+    @Test
+    public void onDepthEvent_test_staleSnapshotResyncsAgain() {
+        synchronizer.start();
+        synchronizer.onDepthEvent(depthEvent(120, 125));
+        completeFetch(snapshot(100));
+        Assert.assertEquals(synchronizer.getResyncCount(), 1L);
+
+        completeFetch(snapshot(122));
+        Assert.assertEquals(applied.toString(), "[snapshot 100, snapshot 122, 120-125]");
+        Assert.assertTrue(synchronizer.isLive());
+    }
+
+    @Test
+    public void onSnapshot_test_staleSnapshotKeepsBufferedEvents() {
+        synchronizer.start();
+        synchronizer.onDepthEvent(depthEvent(120, 125));
+        synchronizer.onDepthEvent(depthEvent(126, 130));
+        synchronizer.onDepthEvent(depthEvent(131, 133));
+        completeFetch(snapshot(100));
+        Assert.assertFalse(synchronizer.isLive());
+        synchronizer.onDepthEvent(depthEvent(134, 136));
+
+        // The events buffered before the stale snapshot are still there to replay on the next one
+        completeFetch(snapshot(127));
+        Assert.assertEquals(applied.toString(), "[snapshot 100, snapshot 127, 126-130, 131-133, 134-136]");
+        Assert.assertEquals(synchronizer.getResyncCount(), 1L);
+        Assert.assertTrue(synchronizer.isLive());
+    }
+
+    private void completeFetch(DepthSnapshot snapshot) {
+        snapshots.add(snapshot);
+        pendingFetches.poll().run();
+    }
+
+    private static DepthSnapshot snapshot(long lastUpdateId) {
+        DepthSnapshot snapshot = new DepthSnapshot();
+        snapshot.reset(lastUpdateId);
+        return snapshot;
+    }
+
+    private static DepthUpdate depthEvent(long firstUpdateId, long finalUpdateId) {
+        DepthUpdate event = new DepthUpdate();
+        event.reset(0, 0L, firstUpdateId, finalUpdateId);
+        return event;
+    }
+}
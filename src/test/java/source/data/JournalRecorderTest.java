@@ -0,0 +1,179 @@
+package source.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+import websocket.AggTradeUpdate;
+import websocket.DepthUpdate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class JournalRecorderTest {
+    private static final String[] SYMBOLS = {"BTCUSDT", "ETHUSDT"};
+
+    @Test
+    public void readNext_test_recordsRoundTripAcrossFiles() throws Exception {
+        try (TempJournal journal = new TempJournal()) {
+            // Small files, so that the journal rolls several times
+            JournalRecorder recorder = journal.newRecorder(SYMBOLS, new int[]{2, 5},
+                    new int[]{8, 6}, 16 * 1024, 4 * 1024);
+            JournalAppender depthAppender = recorder.newAppender();
+            JournalAppender tradeAppender = recorder.newAppender();
+            DepthUpdate depthUpdate = new DepthUpdate();
+            AggTradeUpdate aggTrade = new AggTradeUpdate();
+            int count = 2000;
+            for (int i = 0; i < count; i++) {
+                depthUpdate.reset(0, 1000L + i, 10L * i + 1, 10L * i + 10);
+                for (int level = 0; level < i % 4; level++) {
+                    depthUpdate.addBid(100L - level, i);
+                }
+                depthUpdate.addAsk(101L, i);
+                TempJournal.appendFully(depthAppender, 1, depthUpdate);
+
+                aggTrade.reset(0);
+                aggTrade.setAggregatedTradeId(i);
+                aggTrade.setPrice(5000L + i);
+                aggTrade.setQty(7L);
+                aggTrade.setBuyerMaker(i % 2 == 0);
+                while (!tradeAppender.appendAggTrade(0, aggTrade)) {
+                    Thread.yield();
+                }
+            }
+            recorder.close();
+            Assert.assertTrue(journal.getFiles().size() > 1);
+
+            List<DepthUpdate> depthUpdates = new ArrayList<>();
+            List<Long> tradeIds = new ArrayList<>();
+            long[] lastReceiveNanos = new long[1];
+            // Depth and trades come from different appenders, and are merged in receive order
+            long[] previousReceiveNanos = new long[1];
+            JournalReader reader = journal.newReader();
+            JournalReader.Handler handler = new JournalReader.Handler() {
+                @Override
+                public void onDepthUpdate(long receiveNanos, int symbolId, DepthUpdate update) {
+                    Assert.assertEquals(symbolId, 1);
+                    Assert.assertTrue(receiveNanos >= previousReceiveNanos[0]);
+                    previousReceiveNanos[0] = receiveNanos;
+                    DepthUpdate copy = new DepthUpdate();
+                    copy.copyFrom(update);
+                    depthUpdates.add(copy);
+                    lastReceiveNanos[0] = receiveNanos;
+                }
+
+                @Override
+                public void onAggTrade(long receiveNanos, int symbolId, AggTradeUpdate trade) {
+                    Assert.assertEquals(symbolId, 0);
+                    Assert.assertTrue(receiveNanos >= previousReceiveNanos[0]);
+                    previousReceiveNanos[0] = receiveNanos;
+                    Assert.assertEquals(trade.getPrice(), 5000L + trade.getAggregatedTradeId());
+                    Assert.assertEquals(trade.isBuyerMaker(), trade.getAggregatedTradeId() % 2 == 0);
+                    tradeIds.add(trade.getAggregatedTradeId());
+                }
+
+                @Override
+                public void onSnapshot(long receiveNanos, int symbolId, DepthSnapshot snapshot) {
+                    Assert.fail();
+                }
+            };
+            while (reader.readNext(handler)) {
+            }
+
+            Assert.assertArrayEquals(reader.getSymbols(), SYMBOLS);
+            Assert.assertEquals(reader.getPriceScale(1), 5);
+            Assert.assertEquals(reader.getQtyScale(0), 8);
+            Assert.assertEquals(depthUpdates.size(), count);
+            Assert.assertEquals(tradeIds.size(), count);
+            for (int i = 0; i < count; i++) {
+                DepthUpdate update = depthUpdates.get(i);
+                Assert.assertEquals(update.getEventTime(), 1000L + i);
+                Assert.assertEquals(update.getFirstUpdateId(), 10L * i + 1);
+                Assert.assertEquals(update.getBidCount(), i % 4);
+                Assert.assertEquals(update.getAskCount(), 1);
+                Assert.assertEquals(update.getAskQty(0), (long) i);
+                Assert.assertEquals((long) tradeIds.get(i), (long) i);
+            }
+            long nowNanos = System.currentTimeMillis() * 1_000_000L;
+            Assert.assertTrue(Math.abs(nowNanos - lastReceiveNanos[0]) < 60_000_000_000L);
+        }
+    }
+
+    @Test
+    public void newRecorder_test_continuesAfterExistingFiles() throws Exception {
+        try (TempJournal journal = new TempJournal()) {
+            DepthUpdate depthUpdate = new DepthUpdate();
+            for (int session = 0; session < 2; session++) {
+                JournalRecorder recorder = journal.newRecorder(SYMBOLS, new int[]{2, 5},
+                        new int[]{8, 6}, 16 * 1024, 4 * 1024);
+                depthUpdate.reset(0, session, session, session);
+                TempJournal.appendFully(recorder.newAppender(), 0, depthUpdate);
+                recorder.close();
+            }
+            Assert.assertEquals(journal.getFiles().size(), 2);
+
+            List<Long> eventTimes = new ArrayList<>();
+            JournalReader reader = journal.newReader();
+            JournalReader.Handler handler = new JournalReader.Handler() {
+                @Override
+                public void onDepthUpdate(long receiveNanos, int symbolId, DepthUpdate update) {
+                    eventTimes.add(update.getEventTime());
+                }
+
+                @Override
+                public void onAggTrade(long receiveNanos, int symbolId, AggTradeUpdate trade) {
+                    Assert.fail();
+                }
+
+                @Override
+                public void onSnapshot(long receiveNanos, int symbolId, DepthSnapshot snapshot) {
+                    Assert.fail();
+                }
+            };
+            while (reader.readNext(handler)) {
+            }
+            Assert.assertEquals(eventTimes.size(), 2);
+            Assert.assertEquals((long) eventTimes.get(0), 0L);
+            Assert.assertEquals((long) eventTimes.get(1), 1L);
+        }
+    }
+
+    @Test
+    public void readNext_test_snapshotRoundTrip() throws Exception {
+        try (TempJournal journal = new TempJournal()) {
+            JournalRecorder recorder = journal.newRecorder(SYMBOLS, new int[]{2, 5},
+                    new int[]{8, 6}, 16 * 1024, 4 * 1024);
+            JournalAppender appender = recorder.newAppender();
+            DepthSnapshot snapshot = new DepthSnapshot();
+            snapshot.reset(100L);
+            snapshot.addBid(99L, 3L);
+            snapshot.addBid(98L, 4L);
+            snapshot.addAsk(101L, 5L);
+            Assert.assertTrue(appender.appendSnapshot(1, snapshot));
+            recorder.close();
+
+            List<String> records = new ArrayList<>();
+            JournalReader reader = journal.newReader();
+            JournalReader.Handler handler = new JournalReader.Handler() {
+                @Override
+                public void onDepthUpdate(long receiveNanos, int symbolId, DepthUpdate update) {
+                    Assert.fail();
+                }
+
+                @Override
+                public void onAggTrade(long receiveNanos, int symbolId, AggTradeUpdate trade) {
+                    Assert.fail();
+                }
+
+                @Override
+                public void onSnapshot(long receiveNanos, int symbolId, DepthSnapshot read) {
+                    records.add(symbolId + ":" + read.getLastUpdateId() + " bids " + read.getBidPrice(0) + "x"
+                            + read.getBidQty(0) + "," + read.getBidPrice(1) + "x" + read.getBidQty(1)
+                            + " asks " + read.getAskCount() + ":" + read.getAskPrice(0) + "x" + read.getAskQty(0));
+                }
+            };
+            while (reader.readNext(handler)) {
+            }
+            Assert.assertEquals(records.toString(), "[1:100 bids 99x3,98x4 asks 1:101x5]");
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package source.data;
+
+import messaging.BusySpinWaitStrategy;
+import messaging.EventCursor;
+import messaging.EventManager;
+import org.junit.Assert;
+import org.junit.Test;
+import source.scheduling.SimulatedClock;
+import websocket.AggTradeUpdate;
+import websocket.DepthUpdate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class JournalReplayerTest {
+    private static final long GAP_MILLIS = 40L;
+
+    @Test
+    public void run_test_publishesBooksAndTrades() throws Exception {
+        try (TempJournal journal = recordJournal(true)) {
+            EventManager eventManager = new EventManager(64, new BusySpinWaitStrategy());
+            EventCursor<LocalOrderBook> books = eventManager.getOrderBookBroker().newCursor();
+            EventCursor<TradeEvent> trades = eventManager.getAggTradeBroker().newCursor();
+            SimulatedClock clock = new SimulatedClock(0L);
+            JournalReplayer replayer = new JournalReplayer(journal.newReader(), eventManager,
+                    JournalReplayer.MAX_SPEED, clock);
+            replayer.run();
+
+            Assert.assertEquals(replayer.getReplayedCount(), 5L);
+            List<Long> bestBids = new ArrayList<>();
+            books.poll((book, sequence, endOfBatch) -> {
+                Assert.assertEquals(book.getSymbol(), "ETHUSDT");
+                Assert.assertEquals(book.getSymbolId(), 1);
+                // The snapshot's ask at 105 is never touched by a diff, and rests in every book
+                Assert.assertEquals(book.getAsks().getQtyAt(105L), 1L);
+                bestBids.add(book.getBestBidPrice());
+                book.release();
+            });
+            Assert.assertEquals(bestBids.size(), 4);
+            Assert.assertEquals((long) bestBids.get(0), 99L);
+            Assert.assertEquals((long) bestBids.get(1), 100L);
+            Assert.assertEquals((long) bestBids.get(2), 101L);
+            // The second level was removed again
+            Assert.assertEquals((long) bestBids.get(3), 100L);
+            Assert.assertEquals(replayer.getBinanceGateway(1).getDepthCache().getPriceScale(), 5);
+
+            List<Long> prices = new ArrayList<>();
+            trades.poll((trade, sequence, endOfBatch) -> {
+                Assert.assertEquals(trade.getSymbolId(), 0);
+                prices.add(trade.getPrice());
+            });
+            Assert.assertEquals(prices.size(), 1);
+            Assert.assertEquals((long) prices.get(0), 5000L);
+            Assert.assertTrue(clock.currentTimeMillis() > System.currentTimeMillis() - 60_000L);
+        }
+    }
+
+    @Test
+    public void run_test_noBooksWithoutSnapshot() throws Exception {
+        try (TempJournal journal = recordJournal(false)) {
+            EventManager eventManager = new EventManager(64, new BusySpinWaitStrategy());
+            EventCursor<LocalOrderBook> books = eventManager.getOrderBookBroker().newCursor();
+            JournalReplayer replayer = new JournalReplayer(journal.newReader(), eventManager,
+                    JournalReplayer.MAX_SPEED);
+            replayer.run();
+
+            Assert.assertEquals(replayer.getReplayedCount(), 4L);
+            Assert.assertEquals(books.poll((book, sequence, endOfBatch) -> Assert.fail()), 0);
+            Assert.assertTrue(replayer.getBinanceGateway(1).getDepthCache().getBids().isEmpty());
+        }
+    }
+
+    @Test
+    public void run_test_gapWaitsForRecordedResyncSnapshot() throws Exception {
+        try (TempJournal journal = new TempJournal()) {
+            JournalRecorder recorder = journal.newRecorder(new String[]{"BTCUSDT"},
+                    new int[]{0}, new int[]{0}, 64 * 1024, 4 * 1024);
+            JournalAppender appender = recorder.newAppender();
+            DepthSnapshot snapshot = new DepthSnapshot();
+            snapshot.reset(10L);
+            snapshot.addBid(100L, 1L);
+            Assert.assertTrue(appender.appendSnapshot(0, snapshot));
+            DepthUpdate depthUpdate = new DepthUpdate();
+            depthUpdate.reset(0, 1L, 11L, 11L);
+            depthUpdate.addBid(101L, 1L);
+            Assert.assertTrue(appender.appendDepth(0, depthUpdate));
+            // 12 is lost: the book resyncs, and stays put until the resync snapshot
+            depthUpdate.reset(0, 2L, 13L, 13L);
+            depthUpdate.addBid(103L, 1L);
+            Assert.assertTrue(appender.appendDepth(0, depthUpdate));
+            snapshot.reset(12L);
+            snapshot.addBid(102L, 1L);
+            Assert.assertTrue(appender.appendSnapshot(0, snapshot));
+            recorder.close();
+
+            EventManager eventManager = new EventManager(64, new BusySpinWaitStrategy());
+            EventCursor<LocalOrderBook> books = eventManager.getOrderBookBroker().newCursor();
+            JournalReplayer replayer = new JournalReplayer(journal.newReader(), eventManager,
+                    JournalReplayer.MAX_SPEED);
+            replayer.run();
+
+            List<Long> bestBids = new ArrayList<>();
+            books.poll((book, sequence, endOfBatch) -> {
+                bestBids.add(book.getBestBidPrice());
+                book.release();
+            });
+            // The buffered event 13 is applied on top of the resync snapshot
+            Assert.assertEquals(bestBids.toString(), "[100, 101, 103]");
+            Assert.assertEquals(replayer.getBinanceGateway(0).getDepthCache().getLastUpdateId(), 13L);
+            Assert.assertEquals(replayer.getBinanceGateway(0).getDepthCache().getBids().size(), 2);
+        }
+    }
+
+    @Test
+    public void run_test_pacedBySpeed() throws Exception {
+        try (TempJournal journal = recordJournal(true)) {
+            long span = 3 * GAP_MILLIS * 1_000_000L;
+            long realTime = timeReplay(journal, 1.0);
+            long doubleSpeed = timeReplay(journal, 2.0);
+            long maxSpeed = timeReplay(journal, JournalReplayer.MAX_SPEED);
+
+            Assert.assertTrue(realTime >= span);
+            Assert.assertTrue(doubleSpeed >= span / 2);
+            Assert.assertTrue(maxSpeed < span / 2);
+        }
+    }
+
+    private static long timeReplay(TempJournal journal, double speed) throws IOException {
+        EventManager eventManager = new EventManager(64, new BusySpinWaitStrategy());
+        JournalReplayer replayer = new JournalReplayer(journal.newReader(), eventManager, speed);
+        long start = System.nanoTime();
+        replayer.run();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Records three depth events for ETHUSDT and a trade for BTCUSDT, received at least
+     * {@link #GAP_MILLIS} apart, optionally after the snapshot of ETHUSDT they apply to.
+     */
+    private static TempJournal recordJournal(boolean withSnapshot) throws Exception {
+        TempJournal journal = new TempJournal();
+        JournalRecorder recorder = journal.newRecorder(new String[]{"BTCUSDT", "ETHUSDT"},
+                new int[]{2, 5}, new int[]{8, 6}, 64 * 1024, 4 * 1024);
+        JournalAppender appender = recorder.newAppender();
+        if (withSnapshot) {
+            DepthSnapshot snapshot = new DepthSnapshot();
+            snapshot.reset(0L);
+            snapshot.addBid(99L, 1L);
+            snapshot.addAsk(105L, 1L);
+            Assert.assertTrue(appender.appendSnapshot(1, snapshot));
+        }
+        DepthUpdate depthUpdate = new DepthUpdate();
+        depthUpdate.reset(0, 1L, 1L, 1L);
+        depthUpdate.addBid(100L, 10L);
+        depthUpdate.addAsk(102L, 10L);
+        Assert.assertTrue(appender.appendDepth(1, depthUpdate));
+        Thread.sleep(GAP_MILLIS);
+        depthUpdate.reset(0, 2L, 2L, 2L);
+        depthUpdate.addBid(101L, 5L);
+        Assert.assertTrue(appender.appendDepth(1, depthUpdate));
+        Thread.sleep(GAP_MILLIS);
+        AggTradeUpdate aggTrade = new AggTradeUpdate();
+        aggTrade.reset(0);
+        aggTrade.setPrice(5000L);
+        Assert.assertTrue(appender.appendAggTrade(0, aggTrade));
+        Thread.sleep(GAP_MILLIS);
+        depthUpdate.reset(0, 3L, 3L, 3L);
+        depthUpdate.addBid(101L, 0L);
+        Assert.assertTrue(appender.appendDepth(1, depthUpdate));
+        recorder.close();
+        return journal;
+    }
+}
@@ -0,0 +1,204 @@
+package source.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+public class LocalOrderBookTest {
+    @Test
+    public void parse_test_scaledDecimals() {
+        Assert.assertEquals(FixedPoint.parse("63000.01000000", 8), 6300001000000L);
+        Assert.assertEquals(FixedPoint.parse("0.5", 2), 50L);
+        Assert.assertEquals(FixedPoint.parse("12", 3), 12000L);
+        Assert.assertEquals(FixedPoint.parse("-1.25", 2), -125L);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parse_test_precisionLoss() {
+        FixedPoint.parse("0.123", 2);
+    }
+
+    @Test
+    public void update_test_bestLevels() {
+        LocalOrderBook orderBook = new LocalOrderBook(2, 3);
+        orderBook.updateAsk(10100, 1000);
+        orderBook.updateAsk(10050, 2000);
+        orderBook.updateAsk(10200, 3000);
+        orderBook.updateBid(9900, 4000);
+        orderBook.updateBid(9950, 5000);
+
+        Assert.assertEquals(orderBook.getBestAskPrice(), 10050L);
+        Assert.assertEquals(orderBook.getBestAskQty(), 2000L);
+        Assert.assertEquals(orderBook.getBestBidPrice(), 9950L);
+        Assert.assertEquals(orderBook.getAsks().getPrice(2), 10200L);
+        Assert.assertEquals(orderBook.getBids().getPrice(1), 9900L);
+    }
+
+    @Test
+    public void update_test_zeroQtyRemovesLevel() {
+        LocalOrderBook orderBook = new LocalOrderBook(2, 3);
+        orderBook.updateBid(9900, 4000);
+        orderBook.updateBid(9950, 5000);
+        orderBook.updateBid(9950, 0);
+        orderBook.updateBid(9800, 0);
+
+        Assert.assertEquals(orderBook.getBids().size(), 1);
+        Assert.assertEquals(orderBook.getBestBidPrice(), 9900L);
+    }
+
+    @Test
+    public void getBestAsk_test_bigDecimalAdapter() {
+        LocalOrderBook orderBook = new LocalOrderBook(2, 3);
+        orderBook.updateAsk(10100, 1500);
+        orderBook.updateBid(9900, 4000);
+        orderBook.updateBid(9950, 5000);
+
+        Assert.assertEquals(orderBook.getBestAsk().getKey(), new BigDecimal("101.00"));
+        Assert.assertEquals(orderBook.getBestAsk().getValue(), new BigDecimal("1.500"));
+        Assert.assertEquals(orderBook.getSecondBestBid().getKey(), new BigDecimal("99.00"));
+        Assert.assertNull(orderBook.getSecondBestAsk());
+    }
+
+    @Test
+    public void update_test_ladderRecentersAroundTouch() {
+        LadderBookSide asks = new LadderBookSide(false, 10, 64);
+        asks.update(1000, 1);
+        asks.update(1200, 2);
+        asks.update(5000, 3);
+        Assert.assertEquals(asks.getBestPrice(), 1000L);
+        Assert.assertEquals(asks.getPrice(2), 5000L);
+
+        // Touch improves well past the better edge of the ladder
+        asks.update(100, 4);
+        Assert.assertEquals(asks.getBestPrice(), 100L);
+        Assert.assertEquals(asks.getPrice(1), 1000L);
+
+        // Touch moves back out and the ladder pulls levels back in from overflow
+        asks.update(100, 0);
+        asks.update(1000, 0);
+        asks.update(1200, 0);
+        Assert.assertEquals(asks.size(), 1);
+        Assert.assertEquals(asks.getBestPrice(), 5000L);
+        Assert.assertEquals(asks.getQtyAt(5000), 3L);
+    }
+
+    @Test
+    public void update_test_ladderMatchesSortedArray() {
+        Random random = new Random(42);
+        for (boolean bid : new boolean[]{true, false}) {
+            OrderBookSide expected = new SortedArrayBookSide(bid, 4);
+            OrderBookSide actual = new LadderBookSide(bid, 5, 128);
+            long mid = 100000;
+            for (int i = 0; i < 20000; i++) {
+                mid += (random.nextInt(21) - 10) * 5;
+                long price = mid + (bid ? -1 : 1) * random.nextInt(300) * 5;
+                long qty = random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(100);
+                expected.update(price, qty);
+                actual.update(price, qty);
+
+                Assert.assertEquals(actual.size(), expected.size());
+                if (!expected.isEmpty()) {
+                    Assert.assertEquals(actual.getBestPrice(), expected.getBestPrice());
+                    Assert.assertEquals(actual.getBestQty(), expected.getBestQty());
+                    int level = random.nextInt(expected.size());
+                    Assert.assertEquals(actual.getPrice(level), expected.getPrice(level));
+                    Assert.assertEquals(actual.getQty(level), expected.getQty(level));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void update_test_topLevelsMatchSide() {
+        Random random = new Random(7);
+        for (LocalOrderBook orderBook : new LocalOrderBook[]{new LocalOrderBook(0, 0),
+                LocalOrderBook.ladder(0, 0, 5, 64)}) {
+            long mid = 100000;
+            for (int i = 0; i < 20000; i++) {
+                mid += (random.nextInt(11) - 5) * 5;
+                long qty = random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(100);
+                if (random.nextBoolean()) {
+                    orderBook.updateAsk(mid + random.nextInt(40) * 5, qty);
+                } else {
+                    orderBook.updateBid(mid - random.nextInt(40) * 5, qty);
+                }
+                if (i % 5000 == 4999) {
+                    orderBook.clear();
+                }
+                assertTopLevels(orderBook.getTopAsks(), orderBook.getAsks());
+                assertTopLevels(orderBook.getTopBids(), orderBook.getBids());
+            }
+        }
+    }
+
+    private static void assertTopLevels(TopLevels top, OrderBookSide side) {
+        Assert.assertEquals(top.size(), java.lang.Math.min(side.size(), LocalOrderBook.TOP_LEVELS));
+        for (int level = 0; level < top.size(); level++) {
+            Assert.assertEquals(top.getPrice(level), side.getPrice(level));
+            Assert.assertEquals(top.getQty(level), side.getQty(level));
+        }
+    }
+
+    @Test
+    public void snapshot_test_copiesTopLevels() {
+        LocalOrderBook orderBook = new LocalOrderBook(2, 3);
+        for (int level = 0; level < 12; level++) {
+            orderBook.updateAsk(10100 + level, 1000 + level);
+        }
+        LocalOrderBook snapshot = new OrderBookSnapshotPool(1).snapshot(orderBook);
+        orderBook.updateAsk(10100, 0);
+
+        Assert.assertEquals(snapshot.getTopAsks().size(), LocalOrderBook.TOP_LEVELS);
+        Assert.assertEquals(snapshot.getTopAsks().getPrice(9), 10109L);
+        Assert.assertEquals(orderBook.getTopAsks().getPrice(9), 10110L);
+        Assert.assertEquals(snapshot.getSecondBestAsk().getKey(), new BigDecimal("101.01"));
+        Assert.assertEquals(orderBook.getSecondBestAsk().getKey(), new BigDecimal("101.02"));
+    }
+
+    @Test
+    public void snapshot_test_unaffectedByLaterUpdates() {
+        OrderBookSnapshotPool pool = new OrderBookSnapshotPool(1);
+        LocalOrderBook orderBook = LocalOrderBook.ladder(2, 3, 1, 64);
+        orderBook.updateAsk(10100, 1000);
+        orderBook.updateAsk(10050, 2000);
+        orderBook.updateBid(9950, 5000);
+        orderBook.setLastUpdateId(7);
+
+        LocalOrderBook snapshot = pool.snapshot(orderBook);
+        orderBook.updateAsk(10050, 0);
+        orderBook.updateBid(9990, 1);
+
+        Assert.assertTrue(snapshot.isSnapshot());
+        Assert.assertEquals(snapshot.getLastUpdateId(), 7L);
+        Assert.assertEquals(snapshot.getBestAskPrice(), 10050L);
+        Assert.assertEquals(snapshot.getAsks().getPrice(1), 10100L);
+        Assert.assertEquals(snapshot.getBestBidPrice(), 9950L);
+
+        snapshot.release();
+        Assert.assertSame(pool.snapshot(orderBook), snapshot);
+        Assert.assertEquals(snapshot.getBestAskPrice(), 10100L);
+        Assert.assertEquals(snapshot.getBestBidPrice(), 9990L);
+    }
+
+    @Test
+    public void release_test_recycledAfterLastReference() {
+        OrderBookSnapshotPool pool = new OrderBookSnapshotPool(1);
+        LocalOrderBook orderBook = new LocalOrderBook();
+        LocalOrderBook snapshot = pool.snapshot(orderBook);
+        snapshot.retain(1);
+
+        snapshot.release();
+        Assert.assertNotSame(pool.snapshot(orderBook), snapshot);
+        snapshot.release();
+        snapshot.release();
+        Assert.assertSame(pool.snapshot(orderBook), snapshot);
+        Assert.assertNotSame(pool.snapshot(orderBook), snapshot);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshot_test_immutable() {
+        new OrderBookSnapshotPool().snapshot(new LocalOrderBook()).updateAsk(1, 1);
+    }
+}
@@ -0,0 +1,63 @@
+package source.data;
+
+import websocket.DepthUpdate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A journal directory for tests, created empty in the temporary directory and deleted, with every
+ * file recorded in it, on close.
+ */
+public class TempJournal implements AutoCloseable {
+    public static final String PREFIX = "md";
+
+    private final Path directory;
+
+    public TempJournal() throws IOException {
+        this.directory = Files.createTempDirectory("journal");
+    }
+
+    /**
+     * @return a recorder of the journal; several may record into it one after another
+     */
+    public JournalRecorder newRecorder(String[] symbols, int[] priceScales, int[] qtyScales, long fileSize,
+                                       int appenderCapacity) throws IOException {
+        return new JournalRecorder(directory, PREFIX, symbols, priceScales, qtyScales, fileSize, appenderCapacity);
+    }
+
+    public JournalReader newReader() throws IOException {
+        return new JournalReader(directory, PREFIX);
+    }
+
+    public List<Path> getFiles() throws IOException {
+        return JournalReader.journalFiles(directory, PREFIX);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Appends a depth event, waiting for the writer to make room in the appender's ring rather than
+     * dropping it.
+     */
+    public static void appendFully(JournalAppender appender, int symbolId, DepthUpdate depthUpdate) {
+        while (!appender.appendDepth(symbolId, depthUpdate)) {
+            Thread.yield();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
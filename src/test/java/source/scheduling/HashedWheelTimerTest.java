@@ -0,0 +1,123 @@
+package source.scheduling;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HashedWheelTimerTest {
+    @Test
+    public void newTimeout_test_runsOnceAfterDelay() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(TimeUnit.MILLISECONDS.toNanos(1), 8);
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        // Longer than a revolution of the wheel, so it has to skip rounds
+        Timeout timeout = timer.newTimeout(fired::countDown, 20, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(fired.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        Assert.assertTrue(timeout.isExpired());
+        Assert.assertFalse(timeout.cancel());
+        timer.stop();
+    }
+
+    @Test
+    public void schedulePeriodic_test_cancelStopsTask() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch fiveRuns = new CountDownLatch(5);
+        Timeout timeout = timer.schedulePeriodic(() -> {
+            runs.incrementAndGet();
+            fiveRuns.countDown();
+        }, 0, 2, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(fiveRuns.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(timeout.cancel());
+        Assert.assertTrue(timeout.isCancelled());
+        // Allow a firing already in progress to finish
+        Thread.sleep(5);
+        int runsAtCancel = runs.get();
+        Thread.sleep(20);
+        Assert.assertEquals(runs.get(), runsAtCancel);
+        Assert.assertFalse(timeout.isExpired());
+        timer.stop();
+    }
+
+    @Test
+    public void schedulePeriodic_test_thousandsOfTimers() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer();
+        int timers = 5000;
+        CountDownLatch allFiredTwice = new CountDownLatch(timers);
+        for (int i = 0; i < timers; i++) {
+            AtomicInteger runs = new AtomicInteger();
+            timer.schedulePeriodic(() -> {
+                if (runs.incrementAndGet() == 2) {
+                    allFiredTwice.countDown();
+                }
+            }, i % 10, 10, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertTrue(allFiredTwice.await(2, TimeUnit.SECONDS));
+        timer.stop();
+    }
+
+    @Test
+    public void simulatedClock_test_dayOfTimersFiresOnAdvance() {
+        SimulatedClock clock = new SimulatedClock(1_600_000_000_000L);
+        HashedWheelTimer timer = new HashedWheelTimer(clock);
+        long[] lastFiring = new long[1];
+        int[] firings = new int[1];
+        timer.schedulePeriodic(() -> {
+            firings[0]++;
+            lastFiring[0] = clock.currentTimeMillis();
+        }, 0, 500, TimeUnit.MILLISECONDS);
+
+        // Timers only fire as the clock moves, on the thread that moves it
+        Assert.assertEquals(firings[0], 0);
+        clock.advanceToMillis(1_600_000_000_000L + 1);
+        Assert.assertEquals(firings[0], 1);
+
+        // One event per second, for a day of data
+        for (long second = 1; second <= 86400; second++) {
+            clock.advanceToMillis(1_600_000_000_000L + second * 1000);
+        }
+        // Due at 0, 500, ..., 86399500; the firing due at 86400000 waits for the clock to pass its tick
+        Assert.assertEquals(firings[0], 86400 * 2);
+        // Timers see the time the clock was advanced to
+        Assert.assertEquals(lastFiring[0], 1_600_000_000_000L + 86400 * 1000);
+    }
+
+    @Test
+    public void simulatedClock_test_periodicTimerSkipsEmptyTicks() {
+        SimulatedClock clock = new SimulatedClock(0L);
+        HashedWheelTimer timer = new HashedWheelTimer(clock);
+        int[] firings = new int[2];
+        timer.schedulePeriodic(() -> firings[0]++, 0, 1, TimeUnit.SECONDS);
+        timer.schedulePeriodic(() -> firings[1]++, 0, 1, TimeUnit.HOURS);
+
+        // A day in one step, then a day a second at a time: 691,200,000 ticks of 250us
+        long start = System.nanoTime();
+        clock.advanceToMillis(TimeUnit.DAYS.toMillis(1));
+        for (long second = 1; second <= 86400; second++) {
+            clock.advanceToMillis(TimeUnit.DAYS.toMillis(1) + second * 1000);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Assert.assertEquals(firings[0], 2 * 86400);
+        Assert.assertEquals(firings[1], 2 * 24);
+        Assert.assertTrue("Took " + elapsed / 1_000_000 + "ms", elapsed < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    public void simulatedClock_test_skipsIdleTime() {
+        SimulatedClock clock = new SimulatedClock(0L);
+        HashedWheelTimer timer = new HashedWheelTimer(clock);
+        // A year with nothing scheduled is skipped at once
+        clock.advanceToMillis(TimeUnit.DAYS.toMillis(365));
+        int[] firings = new int[1];
+        timer.newTimeout(() -> firings[0]++, 10, TimeUnit.MILLISECONDS);
+        clock.advanceToMillis(TimeUnit.DAYS.toMillis(365) + 9);
+        Assert.assertEquals(firings[0], 0);
+        clock.advanceToMillis(TimeUnit.DAYS.toMillis(365) + 11);
+        Assert.assertEquals(firings[0], 1);
+    }
+}
@@ -0,0 +1,72 @@
+package websocket;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class MarketDataDecoderTest {
+    private final RecordingHandler handler = new RecordingHandler();
+
+    @Test
+    public void decode_test_combinedDepthUpdate() {
+        MarketDataDecoder decoder = new MarketDataDecoder(
+                Arrays.asList("btcusdt@depth@100ms", "ethusdt@depth@100ms"), new int[]{8, 2}, new int[]{8, 3});
+        decoder.decode("{\"stream\":\"ethusdt@depth@100ms\",\"data\":{\"e\":\"depthUpdate\",\"E\":1700000000123,"
+                + "\"s\":\"ETHUSDT\",\"U\":157,\"u\":160,\"b\":[[\"2000.01000000\",\"1.50000000\"]],"
+                + "\"a\":[[\"2000.02000000\",\"0.00000000\"],[\"2000.05000000\",\"3.25000000\"]]}}", handler);
+
+        DepthUpdate depthUpdate = handler.depthUpdate;
+        Assert.assertEquals(depthUpdate.getStreamIndex(), 1);
+        Assert.assertEquals(depthUpdate.getEventTime(), 1700000000123L);
+        Assert.assertEquals(depthUpdate.getFirstUpdateId(), 157L);
+        Assert.assertEquals(depthUpdate.getFinalUpdateId(), 160L);
+        Assert.assertEquals(depthUpdate.getBidCount(), 1);
+        Assert.assertEquals(depthUpdate.getBidPrice(0), 200001L);
+        Assert.assertEquals(depthUpdate.getBidQty(0), 1500L);
+        Assert.assertEquals(depthUpdate.getAskCount(), 2);
+        Assert.assertEquals(depthUpdate.getAskQty(0), 0L);
+        Assert.assertEquals(depthUpdate.getAskPrice(1), 200005L);
+        Assert.assertEquals(depthUpdate.getAskQty(1), 3250L);
+    }
+
+    @Test
+    public void decode_test_rawAggTrade() {
+        MarketDataDecoder decoder = new MarketDataDecoder(
+                Arrays.asList("btcusdt@aggTrade"), new int[]{2}, new int[]{8});
+        decoder.decode("{\"e\":\"aggTrade\",\"E\":123456789,\"s\":\"BTCUSDT\",\"a\":12345,\"p\":\"63000.10\","
+                + "\"q\":\"0.00100000\",\"f\":100,\"l\":105,\"T\":123456785,\"m\":true,\"M\":true}", handler);
+
+        AggTradeUpdate aggTrade = handler.aggTrade;
+        Assert.assertEquals(aggTrade.getStreamIndex(), 0);
+        Assert.assertEquals(aggTrade.getAggregatedTradeId(), 12345L);
+        Assert.assertEquals(aggTrade.getPrice(), 6300010L);
+        Assert.assertEquals(aggTrade.getQty(), 100000L);
+        Assert.assertEquals(aggTrade.getFirstBreakdownTradeId(), 100L);
+        Assert.assertEquals(aggTrade.getLastBreakdownTradeId(), 105L);
+        Assert.assertEquals(aggTrade.getTradeTime(), 123456785L);
+        Assert.assertTrue(aggTrade.isBuyerMaker());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_test_unknownStream() {
+        MarketDataDecoder decoder = new MarketDataDecoder(
+                Arrays.asList("btcusdt@aggTrade"), new int[]{2}, new int[]{8});
+        decoder.decode("{\"stream\":\"xrpusdt@aggTrade\",\"data\":{\"e\":\"aggTrade\"}}", handler);
+    }
+
+    private static class RecordingHandler implements MarketDataHandler {
+        private DepthUpdate depthUpdate;
+        private AggTradeUpdate aggTrade;
+
+        @Override
+        public void onDepthUpdate(DepthUpdate depthUpdate) {
+            this.depthUpdate = depthUpdate;
+        }
+
+        @Override
+        public void onAggTrade(AggTradeUpdate aggTrade) {
+            this.aggTrade = aggTrade;
+        }
+    }
+}